@@ -0,0 +1,48 @@
+package com.googlecode.prolog_cafe.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of the benchmark jar.
+ * <p>
+ * Accepts the usual JMH command line. Unless another profiler is requested
+ * with {@code -prof}, the GC profiler is attached so that every benchmark
+ * reports its allocation rate next to its throughput. A first argument of
+ * {@code macro} runs the {@link MacroBenchmark} program suite instead, and
+ * {@code scaling} runs the multi-engine {@link ScalingBenchmark}.
+ * <pre>
+ *   % java -jar benchmarks/target/benchmarks.jar Unify
+ *   % java -jar benchmarks/target/benchmarks.jar macro nrev tak
+ *   % java -jar benchmarks/target/benchmarks.jar scaling --threads 1,2,4,8
+ * </pre>
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] argv) throws Exception {
+		if (argv.length > 0 && argv[0].equals("macro")) {
+			MacroBenchmark.main(Arrays.copyOfRange(argv, 1, argv.length));
+			return;
+		}
+		if (argv.length > 0 && argv[0].equals("scaling")) {
+			ScalingBenchmark.main(Arrays.copyOfRange(argv, 1, argv.length));
+			return;
+		}
+		CommandLineOptions cmd = new CommandLineOptions(argv);
+		if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers()
+				|| cmd.shouldListResultFormats() || cmd.shouldListWithParams()) {
+			org.openjdk.jmh.Main.main(argv);
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		if (cmd.getProfilers().isEmpty()) {
+			options.addProfiler(GCProfiler.class);
+		}
+		new Runner(options.build()).run();
+	}
+}
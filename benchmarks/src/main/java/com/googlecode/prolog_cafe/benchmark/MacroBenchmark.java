@@ -0,0 +1,399 @@
+package com.googlecode.prolog_cafe.benchmark;
+
+import com.googlecode.prolog_cafe.compiler.Compiler;
+import com.googlecode.prolog_cafe.lang.BufferingPrologControl;
+import com.googlecode.prolog_cafe.lang.PrologClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs classic Prolog programs end to end.
+ * <p>
+ * Every program is translated with {@link Compiler}, compiled with the system
+ * Java compiler and executed through a {@link BufferingPrologControl}, once per
+ * requested combination of {@link Compiler.Option}s. Each run reports the wall
+ * time, inferences per second as counted by the engine, the bytes allocated
+ * by the running thread, and the deepest trail and choice point stack seen. Results can be saved as a baseline and later runs
+ * compared against it:
+ * <pre>
+ *   % java -jar benchmarks/target/benchmarks.jar macro --options all --save-baseline base.csv
+ *   % java -jar benchmarks/target/benchmarks.jar macro --options all --baseline base.csv
+ * </pre>
+ */
+public class MacroBenchmark {
+	/** A benchmark program, loaded from {@code /programs/<name>.pl}. */
+	static final class Program {
+		final String name;
+
+		Program(String name) {
+			this.name = name;
+		}
+
+		String pkg() {
+			return "com.googlecode.prolog_cafe.benchmark." + name;
+		}
+	}
+
+	static final List<Program> PROGRAMS = Arrays.asList(
+			new Program("nrev"),
+			new Program("queens"),
+			new Program("zebra"),
+			new Program("crypt"),
+			new Program("deriv"),
+			new Program("tak"),
+			new Program("boyer"),
+			new Program("browse"),
+			new Program("chat_parser"),
+			new Program("poly"));
+
+	/** Measurements of one program under one option set. */
+	static final class Result {
+		final String program;
+		final String options;
+		final double wallMillis;
+		final long inferences;
+		final long allocatedBytes;
+		final int trailPeak;
+		final int choicePointPeak;
+
+		Result(String program, String options, double wallMillis, long inferences,
+				long allocatedBytes, int trailPeak, int choicePointPeak) {
+			this.program = program;
+			this.options = options;
+			this.wallMillis = wallMillis;
+			this.inferences = inferences;
+			this.allocatedBytes = allocatedBytes;
+			this.trailPeak = trailPeak;
+			this.choicePointPeak = choicePointPeak;
+		}
+
+		String key() {
+			return program + ',' + options;
+		}
+	}
+
+	/** Exposes the stack high-water marks of the engine after a run. */
+	private static final class MeasuringControl extends BufferingPrologControl {
+		int trailPeak() {
+			return engine.trail.peak();
+		}
+
+		int choicePointPeak() {
+			return engine.stack.peak();
+		}
+	}
+
+	private final List<Program> programs = new ArrayList<>();
+	private final List<EnumSet<Compiler.Option>> optionSets = new ArrayList<>();
+	private int warmup = 5;
+	private int runs = 10;
+	private double threshold = 5.0;
+	private Path baseline;
+	private Path saveBaseline;
+
+	private final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] argv) throws Exception {
+		MacroBenchmark bench = new MacroBenchmark();
+		bench.parse(argv);
+		System.exit(bench.run() ? 0 : 1);
+	}
+
+	private void parse(String[] argv) {
+		for (int i = 0; i < argv.length; i++) {
+			String a = argv[i];
+			if (a.equals("--options")) {
+				addOptions(value(argv, ++i));
+			} else if (a.equals("--warmup")) {
+				warmup = Integer.parseInt(value(argv, ++i));
+			} else if (a.equals("--runs")) {
+				runs = Integer.parseInt(value(argv, ++i));
+			} else if (a.equals("--threshold")) {
+				threshold = Double.parseDouble(value(argv, ++i));
+			} else if (a.equals("--baseline")) {
+				baseline = new File(value(argv, ++i)).toPath();
+			} else if (a.equals("--save-baseline")) {
+				saveBaseline = new File(value(argv, ++i)).toPath();
+			} else if (a.startsWith("-")) {
+				usage();
+			} else {
+				programs.add(findProgram(a));
+			}
+		}
+		if (programs.isEmpty())
+			programs.addAll(PROGRAMS);
+		if (optionSets.isEmpty())
+			addOptions("default");
+		if (runs < 1)
+			usage();
+	}
+
+	private static String value(String[] argv, int i) {
+		if (i >= argv.length)
+			usage();
+		return argv[i];
+	}
+
+	private static Program findProgram(String name) {
+		for (Program p : PROGRAMS) {
+			if (p.name.equals(name))
+				return p;
+		}
+		System.err.println("unknown program " + name);
+		usage();
+		return null;
+	}
+
+	private void addOptions(String spec) {
+		Compiler.Option[] all = Compiler.Option.values();
+		if (spec.equals("all")) {
+			for (int mask = 0; mask < 1 << all.length; mask++) {
+				EnumSet<Compiler.Option> set = EnumSet.noneOf(Compiler.Option.class);
+				for (int i = 0; i < all.length; i++) {
+					if ((mask & (1 << i)) != 0)
+						set.add(all[i]);
+				}
+				optionSets.add(set);
+			}
+		} else if (spec.equals("default")) {
+			Compiler comp = new Compiler();
+			EnumSet<Compiler.Option> set = EnumSet.noneOf(Compiler.Option.class);
+			for (Compiler.Option opt : all) {
+				if (comp.isEnabled(opt))
+					set.add(opt);
+			}
+			optionSets.add(set);
+		} else if (spec.equals("none")) {
+			optionSets.add(EnumSet.noneOf(Compiler.Option.class));
+		} else {
+			EnumSet<Compiler.Option> set = EnumSet.noneOf(Compiler.Option.class);
+			for (String name : spec.split(",")) {
+				set.add(findOption(name.trim()));
+			}
+			optionSets.add(set);
+		}
+	}
+
+	private static Compiler.Option findOption(String name) {
+		for (Compiler.Option opt : Compiler.Option.values()) {
+			if (opt.shortName().equals(name) || opt.name().equals(name))
+				return opt;
+		}
+		System.err.println("unknown option " + name);
+		usage();
+		return null;
+	}
+
+	private static String describe(EnumSet<Compiler.Option> set) {
+		if (set.isEmpty())
+			return "none";
+		return set.stream().map(Compiler.Option::shortName).collect(Collectors.joining("+"));
+	}
+
+	private static void usage() {
+		System.err.println("usage: macro [options] [program ...]");
+		System.err.println("  --options default|all|none|ed,ac,...  compiler options to test, may be repeated");
+		System.err.println("  --warmup N           untimed runs per program (default 5)");
+		System.err.println("  --runs N             timed runs per program (default 10)");
+		System.err.println("  --baseline FILE      compare against a saved baseline");
+		System.err.println("  --save-baseline FILE write the results as a new baseline");
+		System.err.println("  --threshold PCT      slowdown reported as regression (default 5)");
+		System.err.print("programs:");
+		for (Program p : PROGRAMS)
+			System.err.print(" " + p.name);
+		System.err.println();
+		System.exit(2);
+	}
+
+	private boolean run() throws Exception {
+		List<Result> results = new ArrayList<>();
+		System.out.format("%-12s %-20s %10s %10s %14s %10s %10s%n",
+				"program", "options", "wall ms", "LIPS", "alloc/run", "trail", "choicepts");
+		for (EnumSet<Compiler.Option> options : optionSets) {
+			Path work = Files.createTempDirectory("macro-bench");
+			try {
+				ClassLoader loader = compile(options, work);
+				for (Program p : programs) {
+					Result r = measure(p, options, loader);
+					results.add(r);
+					print(r);
+				}
+				if (loader instanceof URLClassLoader)
+					((URLClassLoader) loader).close();
+			} finally {
+				delete(work);
+			}
+		}
+
+		if (saveBaseline != null)
+			save(results, saveBaseline);
+		if (baseline != null)
+			return compare(results, load(baseline));
+		return true;
+	}
+
+	/** Translates and compiles all selected programs with the given options. */
+	private ClassLoader compile(EnumSet<Compiler.Option> options, Path work)
+			throws Exception {
+		Path src = Files.createDirectories(work.resolve("src"));
+		Path classes = Files.createDirectories(work.resolve("classes"));
+
+		Compiler comp = new Compiler();
+		for (Compiler.Option opt : Compiler.Option.values())
+			comp.setEnabled(opt, options.contains(opt));
+
+		for (Program p : programs) {
+			Path pl = work.resolve(p.name + ".pl");
+			try (InputStream in = MacroBenchmark.class.getResourceAsStream("/programs/" + p.name + ".pl")) {
+				if (in == null)
+					throw new IOException("missing program " + p.name);
+				Files.copy(in, pl, StandardCopyOption.REPLACE_EXISTING);
+			}
+			comp.prologToJavaSource(pl.toString(), src.toString());
+		}
+
+		JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		if (javac == null)
+			throw new IllegalStateException("a JDK is required to compile the programs");
+		List<File> files;
+		try (Stream<Path> s = Files.walk(src)) {
+			files = s.filter(f -> f.toString().endsWith(".java")).map(Path::toFile)
+					.collect(Collectors.toList());
+		}
+		try (StandardJavaFileManager fm = javac.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			List<String> args = Arrays.asList(
+					"-nowarn",
+					"-classpath", System.getProperty("java.class.path"),
+					"-d", classes.toString());
+			PrintWriter err = new PrintWriter(System.err);
+			if (!javac.getTask(err, fm, null, args, null, fm.getJavaFileObjectsFromFiles(files)).call())
+				throw new IllegalStateException("javac failed for options " + describe(options));
+		}
+		return new URLClassLoader(new URL[] {classes.toUri().toURL()},
+				MacroBenchmark.class.getClassLoader());
+	}
+
+	private Result measure(Program p, EnumSet<Compiler.Option> options, ClassLoader loader) {
+		MeasuringControl control = new MeasuringControl();
+		control.setPrologClassLoader(new PrologClassLoader(loader));
+
+		for (int i = 0; i < warmup; i++)
+			runOnce(control, p);
+
+		long[] wall = new long[runs];
+		long inferences = 0;
+		long allocated = 0;
+		int trailPeak = 0;
+		int choicePointPeak = 0;
+		long thread = Thread.currentThread().getId();
+		for (int i = 0; i < runs; i++) {
+			long bytes = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			runOnce(control, p);
+			wall[i] = System.nanoTime() - start;
+			allocated += threads.getThreadAllocatedBytes(thread) - bytes;
+			inferences += control.getInferences();
+			trailPeak = Math.max(trailPeak, control.trailPeak());
+			choicePointPeak = Math.max(choicePointPeak, control.choicePointPeak());
+		}
+		Arrays.sort(wall);
+		double median = wall[runs / 2] / 1e6;
+		return new Result(p.name, describe(options), median, inferences / runs,
+				allocated / runs, trailPeak, choicePointPeak);
+	}
+
+	private static void runOnce(BufferingPrologControl control, Program p) {
+		if (!control.execute(p.pkg(), "top"))
+			throw new IllegalStateException(p.name + " failed");
+	}
+
+	private static void print(Result r) {
+		System.out.format("%-12s %-20s %10.3f %10.0f %14d %10d %10d%n",
+				r.program, r.options, r.wallMillis, r.inferences / (r.wallMillis / 1000),
+				r.allocatedBytes, r.trailPeak, r.choicePointPeak);
+	}
+
+	private static void save(List<Result> results, Path file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("program,options,wall_ms,inferences,alloc_bytes,trail_peak,choicepoint_peak");
+		for (Result r : results) {
+			lines.add(String.format("%s,%s,%.6f,%d,%d,%d,%d", r.program, r.options,
+					r.wallMillis, r.inferences, r.allocatedBytes, r.trailPeak, r.choicePointPeak));
+		}
+		Files.write(file, lines, StandardCharsets.UTF_8);
+	}
+
+	private static Map<String, Result> load(Path file) throws IOException {
+		Map<String, Result> m = new LinkedHashMap<>();
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			in.readLine(); // header
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				String[] f = line.split(",");
+				Result r = new Result(f[0], f[1], Double.parseDouble(f[2]), Long.parseLong(f[3]),
+						Long.parseLong(f[4]), Integer.parseInt(f[5]), Integer.parseInt(f[6]));
+				m.put(r.key(), r);
+			}
+		}
+		return m;
+	}
+
+	/** Prints the change against the baseline; false if anything regressed. */
+	private boolean compare(List<Result> results, Map<String, Result> base) {
+		boolean ok = true;
+		System.out.println();
+		System.out.format("%-12s %-20s %10s %10s%n", "program", "options", "wall", "alloc");
+		for (Result r : results) {
+			Result b = base.get(r.key());
+			if (b == null) {
+				System.out.format("%-12s %-20s %10s %10s%n", r.program, r.options, "new", "new");
+				continue;
+			}
+			double wall = change(b.wallMillis, r.wallMillis);
+			double alloc = change(b.allocatedBytes, r.allocatedBytes);
+			boolean regressed = wall > threshold || alloc > threshold;
+			System.out.format("%-12s %-20s %+9.1f%% %+9.1f%%%s%n", r.program, r.options,
+					wall, alloc, regressed ? "  REGRESSION" : "");
+			ok &= !regressed;
+		}
+		return ok;
+	}
+
+	private static double change(double before, double after) {
+		if (before == 0)
+			return after == 0 ? 0 : 100;
+		return (after - before) * 100 / before;
+	}
+
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> s = Files.walk(dir)) {
+			for (Path p : s.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList()))
+				Files.deleteIfExists(p);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package com.googlecode.prolog_cafe.benchmark;
+
+import com.googlecode.prolog_cafe.lang.BufferingPrologControl;
+import com.googlecode.prolog_cafe.lang.IntegerTerm;
+import com.googlecode.prolog_cafe.lang.Prolog;
+import com.googlecode.prolog_cafe.lang.PrologEnginePool;
+import com.googlecode.prolog_cafe.lang.PrologMachineCopy;
+import com.googlecode.prolog_cafe.lang.StructureTerm;
+import com.googlecode.prolog_cafe.lang.SymbolTerm;
+import com.googlecode.prolog_cafe.lang.Term;
+import com.googlecode.prolog_cafe.lang.VariableTerm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how query throughput scales with the number of engines.
+ * <p>
+ * A shared rule base ({@code /programs/rulebase.pl}) is consulted once and
+ * saved as a {@link PrologMachineCopy}. For each thread count, that many
+ * threads then issue queries concurrently, each query running in a
+ * {@link BufferingPrologControl} restored from the copy, kept per thread, or
+ * borrowed from a {@link PrologEnginePool}. Queries per second
+ * and the p50/p99 latency are printed per thread count, and optionally
+ * written as CSV for plotting. Contention on shared engine state, such as
+ * the symbol table, named mutexes or the predicate cache, shows up as
+ * throughput that stops growing with the thread count.
+ * <pre>
+ *   % java -jar benchmarks/target/benchmarks.jar scaling --query mixed --csv scaling.csv
+ * </pre>
+ */
+public class ScalingBenchmark {
+	private static final String[] QUERIES = {"search", "atoms", "locked", "mixed"};
+
+	private final TreeSet<Integer> threadCounts = new TreeSet<>();
+	private String query = "mixed";
+	private double warmupSeconds = 5;
+	private double durationSeconds = 10;
+	private boolean reuse;
+	private boolean pooled;
+	private Path csv;
+
+	private PrologMachineCopy rules;
+	private PrologEnginePool pool;
+	private volatile boolean measuring;
+	private volatile boolean stopped;
+
+	public static void main(String[] argv) throws Exception {
+		ScalingBenchmark bench = new ScalingBenchmark();
+		bench.parse(argv);
+		bench.run();
+	}
+
+	private void parse(String[] argv) {
+		for (int i = 0; i < argv.length; i++) {
+			String a = argv[i];
+			if (a.equals("--threads")) {
+				for (String n : value(argv, ++i).split(","))
+					threadCounts.add(Integer.parseInt(n.trim()));
+			} else if (a.equals("--query")) {
+				query = value(argv, ++i);
+				if (!Arrays.asList(QUERIES).contains(query))
+					usage();
+			} else if (a.equals("--warmup")) {
+				warmupSeconds = Double.parseDouble(value(argv, ++i));
+			} else if (a.equals("--duration")) {
+				durationSeconds = Double.parseDouble(value(argv, ++i));
+			} else if (a.equals("--reuse")) {
+				reuse = true;
+			} else if (a.equals("--pool")) {
+				pooled = true;
+			} else if (a.equals("--csv")) {
+				csv = new File(value(argv, ++i)).toPath();
+			} else {
+				usage();
+			}
+		}
+		if (threadCounts.isEmpty()) {
+			int cores = Runtime.getRuntime().availableProcessors();
+			for (int n = 1; n < cores; n <<= 1)
+				threadCounts.add(n);
+			threadCounts.add(cores);
+		}
+		if (threadCounts.first() < 1 || durationSeconds <= 0)
+			usage();
+	}
+
+	private static String value(String[] argv, int i) {
+		if (i >= argv.length)
+			usage();
+		return argv[i];
+	}
+
+	private static void usage() {
+		System.err.println("usage: scaling [options]");
+		System.err.println("  --threads N,M,...   thread counts to run (default 1, 2, 4, ... up to all cores)");
+		System.err.println("  --query NAME        search, atoms, locked or mixed (default mixed)");
+		System.err.println("  --warmup SECONDS    unmeasured time per thread count (default 5)");
+		System.err.println("  --duration SECONDS  measured time per thread count (default 10)");
+		System.err.println("  --reuse             keep one engine per thread instead of restoring per query");
+		System.err.println("  --pool              borrow engines from a PrologEnginePool instead of restoring per query");
+		System.err.println("  --csv FILE          also write the results as CSV");
+		System.exit(2);
+	}
+
+	private void run() throws Exception {
+		rules = loadRules();
+
+		List<String> rows = new ArrayList<>();
+		rows.add("threads,qps,p50_us,p99_us");
+		System.out.format("%8s %12s %10s %10s %10s%n", "threads", "qps", "p50 us", "p99 us", "scaling");
+		double single = 0;
+		for (int threads : threadCounts) {
+			long[] latencies = runStep(threads);
+			double qps = latencies.length / durationSeconds;
+			if (single == 0)
+				single = qps / threads;
+			double p50 = percentile(latencies, 0.50) / 1e3;
+			double p99 = percentile(latencies, 0.99) / 1e3;
+			System.out.format("%8d %12.0f %10.1f %10.1f %9.2fx%n",
+					threads, qps, p50, p99, qps / single);
+			rows.add(String.format("%d,%.1f,%.3f,%.3f", threads, qps, p50, p99));
+		}
+		if (csv != null)
+			Files.write(csv, rows);
+	}
+
+	private static PrologMachineCopy loadRules() throws IOException {
+		Path pl = Files.createTempFile("rulebase", ".pl");
+		try {
+			try (InputStream in = ScalingBenchmark.class.getResourceAsStream("/programs/rulebase.pl")) {
+				if (in == null)
+					throw new IOException("missing rulebase.pl");
+				Files.copy(in, pl, StandardCopyOption.REPLACE_EXISTING);
+			}
+			BufferingPrologControl control = new BufferingPrologControl();
+			control.setUserError(new PrintStream(new NullOutputStream()));
+			if (!control.execute(Prolog.BUILTIN, "consult", SymbolTerm.create(pl.toString())))
+				throw new IllegalStateException("cannot consult " + pl);
+			return PrologMachineCopy.save(control);
+		} finally {
+			Files.deleteIfExists(pl);
+		}
+	}
+
+	/** Runs one thread count and returns the sorted latencies, in nanoseconds. */
+	private long[] runStep(int threads) throws InterruptedException {
+		measuring = false;
+		stopped = false;
+		if (pooled)
+			pool = new PrologEnginePool(rules, threads);
+		Worker[] workers = new Worker[threads];
+		CountDownLatch started = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i, threads, started);
+			workers[i].start();
+		}
+		started.await();
+		Thread.sleep((long) (warmupSeconds * 1000));
+		measuring = true;
+		Thread.sleep((long) (durationSeconds * 1000));
+		stopped = true;
+
+		int total = 0;
+		for (Worker w : workers) {
+			w.join();
+			if (w.failure != null)
+				throw new IllegalStateException("query failed", w.failure);
+			total += w.count;
+		}
+		long[] all = new long[total];
+		int n = 0;
+		for (Worker w : workers) {
+			System.arraycopy(w.latencies, 0, all, n, w.count);
+			n += w.count;
+		}
+		Arrays.sort(all);
+		if (pool != null) {
+			System.out.format("pool: %d engines created, %d of %d borrows waited%n",
+					pool.getCreatedCount(), pool.getWaitCount(), pool.getBorrowCount());
+			pool.close();
+		}
+		return all;
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0)
+			return 0;
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+	}
+
+	private final class Worker extends Thread {
+		private final int id;
+		private final int stride;
+		private final CountDownLatch started;
+		long[] latencies = new long[1 << 16];
+		int count;
+		Throwable failure;
+
+		Worker(int id, int stride, CountDownLatch started) {
+			super("scaling-" + id);
+			this.id = id;
+			this.stride = stride;
+			this.started = started;
+		}
+
+		@Override
+		public void run() {
+			try {
+				BufferingPrologControl control = reuse ? new BufferingPrologControl(rules) : null;
+				int seed = id;
+				started.countDown();
+				while (!stopped) {
+					long start = System.nanoTime();
+					if (pooled)
+						control = pool.borrow();
+					else if (!reuse)
+						control = new BufferingPrologControl(rules);
+					Term goal = new StructureTerm(query, new IntegerTerm(seed), new VariableTerm());
+					seed += stride;
+					if (control.once(Prolog.BUILTIN, "call", goal) == null)
+						throw new IllegalStateException(query + " failed");
+					if (pooled)
+						pool.release(control);
+					long elapsed = System.nanoTime() - start;
+					if (measuring)
+						record(elapsed);
+				}
+			} catch (Throwable t) {
+				failure = t;
+				started.countDown();
+			}
+		}
+
+		private void record(long elapsed) {
+			if (count == latencies.length)
+				latencies = Arrays.copyOf(latencies, count << 1);
+			latencies[count++] = elapsed;
+		}
+	}
+
+	private static final class NullOutputStream extends java.io.OutputStream {
+		@Override
+		public void write(int b) {
+		}
+	}
+}
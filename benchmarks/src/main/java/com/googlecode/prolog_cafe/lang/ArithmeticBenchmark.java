@@ -0,0 +1,81 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Arithmetic#evaluate(Term)} on integer, float and deeply
+ * nested expressions, as evaluated by <code>is/2</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArithmeticBenchmark {
+
+	private Term integerExpression;
+	private Term floatExpression;
+	private Term sum;
+	private Term counter;
+
+	@Setup
+	public void setup() {
+		Trail trail = new Trail();
+		VariableTerm x = new VariableTerm();
+		x.bind(new IntegerTerm(7), trail);
+
+		// (X * 3 + 4) // 2 - 1
+		integerExpression = op("-",
+				op("//", op("+", op("*", x, new IntegerTerm(3)), new IntegerTerm(4)), new IntegerTerm(2)),
+				new IntegerTerm(1));
+		// sqrt(X * 1.5 + 2.0) / pi
+		floatExpression = op("/",
+				new StructureTerm(SymbolTerm.intern("sqrt", 1),
+						op("+", op("*", x, new DoubleTerm(1.5)), new DoubleTerm(2.0))),
+				SymbolTerm.intern("pi"));
+		// 1 + 2 + ... + 64, left nested as produced by the reader
+		Term s = new IntegerTerm(1);
+		for (int i = 2; i <= 64; i++) {
+			s = op("+", s, new IntegerTerm(i));
+		}
+		sum = s;
+		// N + 1, the step of every counting loop
+		counter = op("+", x, new IntegerTerm(1));
+	}
+
+	private static Term op(String name, Term a, Term b) {
+		return new StructureTerm(SymbolTerm.intern(name, 2), a, b);
+	}
+
+	@Benchmark
+	public NumberTerm integerExpression() {
+		return Arithmetic.evaluate(integerExpression);
+	}
+
+	@Benchmark
+	public NumberTerm floatExpression() {
+		return Arithmetic.evaluate(floatExpression);
+	}
+
+	@Benchmark
+	public NumberTerm nestedSum() {
+		return Arithmetic.evaluate(sum);
+	}
+
+	@Benchmark
+	public NumberTerm increment() {
+		return Arithmetic.evaluate(counter);
+	}
+}
@@ -0,0 +1,152 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link ChoicePointStack} push variants together with the
+ * matching restore and the final delete, i.e. the work done by a
+ * <code>try</code>/<code>trust</code> pair of a predicate of the given arity.
+ * <p>
+ * The <code>deep</code> benchmarks push {@link #depth} frames before
+ * discarding them, either by backtracking into every frame or by a single
+ * cut, as in deep recursion through nondeterministic predicates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChoicePointStackBenchmark {
+
+	private static final int WIDE_ARITY = 16;
+
+	@Param({"1000"})
+	public int depth;
+
+	private Prolog engine;
+	private ChoicePointStack stack;
+	private Operation next;
+
+	@Setup
+	public void setup() {
+		BufferingPrologControl control = new BufferingPrologControl();
+		control.setMaxArity(WIDE_ARITY);
+		engine = control.engine;
+		engine.init(System.in, System.out, System.err);
+		stack = engine.stack;
+		next = Failure.FAIL_0;
+
+		engine.areg1 = SymbolTerm.intern("a1");
+		engine.areg2 = SymbolTerm.intern("a2");
+		engine.areg3 = SymbolTerm.intern("a3");
+		engine.areg4 = SymbolTerm.intern("a4");
+		engine.areg5 = SymbolTerm.intern("a5");
+		engine.areg6 = SymbolTerm.intern("a6");
+		engine.areg7 = SymbolTerm.intern("a7");
+		engine.areg8 = SymbolTerm.intern("a8");
+		for (int i = 0; i < engine.aregs.length; i++) {
+			engine.aregs[i] = new IntegerTerm(i + 9);
+		}
+	}
+
+	private Operation restoreAndDelete(ChoicePointFrame frame) {
+		stack.restore(engine);
+		stack.delete();
+		return engine.cont;
+	}
+
+	@Benchmark
+	public Operation push0() {
+		return restoreAndDelete(stack.push(engine, next));
+	}
+
+	@Benchmark
+	public Operation push1() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, next));
+	}
+
+	@Benchmark
+	public Operation push2() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, e.areg2, next));
+	}
+
+	@Benchmark
+	public Operation push3() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, e.areg2, e.areg3, next));
+	}
+
+	@Benchmark
+	public Operation push4() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, e.areg2, e.areg3, e.areg4, next));
+	}
+
+	@Benchmark
+	public Operation push5() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, e.areg2, e.areg3, e.areg4, e.areg5, next));
+	}
+
+	@Benchmark
+	public Operation push6() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, e.areg2, e.areg3, e.areg4, e.areg5, e.areg6, next));
+	}
+
+	@Benchmark
+	public Operation push7() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, e.areg2, e.areg3, e.areg4, e.areg5, e.areg6, e.areg7, next));
+	}
+
+	@Benchmark
+	public Operation push8() {
+		Prolog e = engine;
+		return restoreAndDelete(stack.push(e, e.areg1, e.areg2, e.areg3, e.areg4, e.areg5, e.areg6, e.areg7, e.areg8, next));
+	}
+
+	@Benchmark
+	public Operation pushWide() {
+		return restoreAndDelete(stack.push(engine, WIDE_ARITY, next));
+	}
+
+	@Benchmark
+	public Operation deepBacktrack() {
+		Prolog e = engine;
+		int base = stack.top();
+		for (int i = 0; i < depth; i++) {
+			stack.push(e, e.areg1, e.areg2, e.areg3, next);
+		}
+		while (stack.top() > base) {
+			restoreAndDelete(stack.top);
+		}
+		return e.cont;
+	}
+
+	@Benchmark
+	public Operation deepCut() {
+		Prolog e = engine;
+		int base = stack.top();
+		for (int i = 0; i < depth; i++) {
+			stack.push(e, WIDE_ARITY, next);
+		}
+		stack.cut(base);
+		return e.cont;
+	}
+}
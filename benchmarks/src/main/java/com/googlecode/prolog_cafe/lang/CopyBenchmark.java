@@ -0,0 +1,78 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Prolog#copy(Term)}, the deep copy used for solutions,
+ * exceptions and the internal database.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CopyBenchmark {
+
+	@Param({"8", "256"})
+	public int size;
+
+	private Prolog engine;
+	private Term ground;
+	private Term openList;
+	private Term shared;
+
+	@Setup
+	public void setup() {
+		engine = new BufferingPrologControl().engine;
+
+		SymbolTerm item = SymbolTerm.intern("item", 2);
+		Term g = Prolog.Nil;
+		Term o = new VariableTerm();
+		for (int i = 0; i < size; i++) {
+			g = new ListTerm(new StructureTerm(item, new IntegerTerm(i), SymbolTerm.intern("x")), g);
+			o = new ListTerm(new StructureTerm(item, new IntegerTerm(i), new VariableTerm()), o);
+		}
+		ground = g;
+		openList = o;
+
+		// f(X, g(X, Y), [Y, Z | T]) repeated: exercises the variable map
+		VariableTerm x = new VariableTerm();
+		VariableTerm y = new VariableTerm();
+		Term s = Prolog.Nil;
+		for (int i = 0; i < size; i++) {
+			s = new ListTerm(new StructureTerm(SymbolTerm.intern("f", 3),
+					x,
+					new StructureTerm(SymbolTerm.intern("g", 2), x, y),
+					new ListTerm(y, new VariableTerm())), s);
+		}
+		shared = s;
+	}
+
+	@Benchmark
+	public Term groundTerm() {
+		return engine.copy(ground);
+	}
+
+	@Benchmark
+	public Term openList() {
+		return engine.copy(openList);
+	}
+
+	@Benchmark
+	public Term sharedVariables() {
+		return engine.copy(shared);
+	}
+}
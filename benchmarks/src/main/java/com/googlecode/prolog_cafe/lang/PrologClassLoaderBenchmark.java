@@ -0,0 +1,59 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PrologClassLoader#predicate(String, String, Term...)} once
+ * the predicate class is in the constructor cache, i.e. the per query cost
+ * of {@link PrologControl#setPredicate(String, String, Term...)}, against
+ * {@link PreparedQuery#predicate(Operation, Term...)} on a query resolved
+ * ahead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrologClassLoaderBenchmark {
+
+	private PrologClassLoader pcl;
+	private Term atom;
+	private Term length;
+	private PreparedQuery prepared;
+
+	@Setup
+	public void setup() {
+		pcl = new PrologClassLoader();
+		atom = SymbolTerm.intern("project_owner");
+		length = new VariableTerm();
+		pcl.predicate(Prolog.BUILTIN, "atom_length", atom, length);
+		prepared = pcl.prepare(Prolog.BUILTIN, "atom_length", 2);
+	}
+
+	@Benchmark
+	public Predicate predicate() {
+		return pcl.predicate(Prolog.BUILTIN, "atom_length", atom, length);
+	}
+
+	@Benchmark
+	public Predicate prepared() {
+		return prepared.predicate(Success.SUCCESS, atom, length);
+	}
+
+	@Benchmark
+	public boolean definedPredicate() {
+		return pcl.definedPredicate(Prolog.BUILTIN, "atom_length", 2);
+	}
+}
@@ -0,0 +1,60 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the global symbol table behind {@link SymbolTerm#intern(String, int)}.
+ * <p>
+ * {@code internHit} looks up an atom that is kept alive by the benchmark,
+ * {@code internMiss} always interns a name that has not been seen before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SymbolTermBenchmark {
+
+	private String name;
+	/** Keeps the looked up atom reachable, so it is never reclaimed. */
+	private SymbolTerm held;
+	private long sequence;
+
+	@Setup
+	public void setup() {
+		name = "project_owner";
+		held = SymbolTerm.intern(name);
+	}
+
+	@Benchmark
+	public SymbolTerm internHit() {
+		return SymbolTerm.intern(name);
+	}
+
+	@Benchmark
+	public SymbolTerm internFunctorHit() {
+		return SymbolTerm.intern(name, 2);
+	}
+
+	@Benchmark
+	public SymbolTerm internMiss() {
+		return SymbolTerm.intern(Long.toString(sequence++));
+	}
+
+	@Benchmark
+	public SymbolTerm create() {
+		return SymbolTerm.create(name);
+	}
+}
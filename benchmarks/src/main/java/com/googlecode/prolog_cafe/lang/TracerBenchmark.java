@@ -0,0 +1,115 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the main execution loop with and without the stack-tracking
+ * {@link PrologLogger} as {@link PrologTracer}.
+ * <p>
+ * The program is a hand-compiled nondeterministic predicate in the shape
+ * produced by am2j:
+ * <pre>
+ *   count(0).
+ *   count(N) :- N &gt; 0, N1 is N - 1, count(N1).
+ * </pre>
+ * so every call creates a choice point, fails its first clause, and trusts
+ * the second one. The score is calls of <code>count/1</code> per microsecond.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TracerBenchmark {
+
+	private static final int CALLS = 10000;
+
+	@Param({"none", "logger"})
+	public String tracer;
+
+	private LoopControl control;
+
+	@Setup
+	public void setup() {
+		control = new LoopControl();
+		if (tracer.equals("logger"))
+			control.setTracer(control.engine.getLogger());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CALLS)
+	public long count() {
+		control.setPredicate(new Count(new IntegerTerm(CALLS)));
+		control.executePredicate();
+		return control.getInferences();
+	}
+
+	private static final class LoopControl extends PrologControl {
+		@Override
+		protected void success() {
+			throw new StopEngineException("success");
+		}
+
+		@Override
+		protected void fail() {
+			throw new StopEngineException("failure");
+		}
+
+		@Override
+		public boolean isEngineStopped() {
+			return false;
+		}
+	}
+
+	/** <code>count/1</code>: try the first clause, keep the second. */
+	private static final class Count extends Predicate.P1 {
+		private static final Operation CLAUSE_1 = Count::clause1;
+		private static final Operation SUB_1 = e -> e.trust(Count::clause2);
+
+		Count(Term a1) {
+			arg1 = a1;
+		}
+
+		Count(Term a1, Operation cont) {
+			arg1 = a1;
+			this.cont = cont;
+		}
+
+		@Override
+		public Operation exec(Prolog engine) {
+			engine.setB0();
+			engine.areg1 = arg1;
+			engine.cont = cont;
+			return engine.jtry1(CLAUSE_1, SUB_1);
+		}
+
+		/** <code>count(0).</code> */
+		private static Operation clause1(Prolog engine) {
+			if (((IntegerTerm) engine.areg1.dereference()).intValue() != 0)
+				return engine.fail();
+			return engine.cont;
+		}
+
+		/** <code>count(N) :- N &gt; 0, N1 is N - 1, count(N1).</code> */
+		private static Operation clause2(Prolog engine) {
+			int n = ((IntegerTerm) engine.areg1.dereference()).intValue();
+			if (n <= 0)
+				return engine.fail();
+			return new Count(IntegerTerm.valueOf(n - 1), engine.cont);
+		}
+	}
+}
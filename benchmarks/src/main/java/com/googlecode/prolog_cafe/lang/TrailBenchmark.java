@@ -0,0 +1,64 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Trail#push(Undoable)} and {@link Trail#unwind(int)}.
+ * <p>
+ * Sizes above the default page size of 2048 entries include the cost of
+ * adding and dropping trail pages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrailBenchmark {
+
+	private static final Undoable NOOP = () -> {};
+
+	@Param({"16", "1024", "8192"})
+	public int entries;
+
+	private Trail trail;
+
+	@Setup
+	public void setup() {
+		trail = new Trail();
+	}
+
+	@Benchmark
+	public int pushUnwind() {
+		for (int i = 0; i < entries; i++) {
+			trail.push(NOOP);
+		}
+		int top = trail.top();
+		trail.unwind(-1);
+		return top;
+	}
+
+	@Benchmark
+	public int pushPop() {
+		for (int i = 0; i < entries; i++) {
+			trail.push(NOOP);
+		}
+		int top = trail.top();
+		while (!trail.empty()) {
+			trail.pop();
+		}
+		return top;
+	}
+}
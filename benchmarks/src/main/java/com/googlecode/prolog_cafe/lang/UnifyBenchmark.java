@@ -0,0 +1,159 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Term#unify(Term, Trail)} for every term class.
+ * <p>
+ * Benchmarks that bind variables unwind the trail before returning, so every
+ * invocation starts from the same unbound state.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UnifyBenchmark {
+
+	private Trail trail;
+
+	private Term interned, internedSame;
+	private Term dynamic, dynamicOther;
+	private Term partial, partialOther;
+	private Term integer, integerOther;
+	private Term longTerm, longOther;
+	private Term doubleTerm, doubleOther;
+	private Term list, listOther;
+	private Term structure, structureOther;
+	private Term openStructure;
+	private Term javaObject, javaObjectOther;
+	private VariableTerm variable;
+
+	@Setup
+	public void setup() {
+		trail = new Trail();
+
+		interned = SymbolTerm.intern("project_owner");
+		internedSame = SymbolTerm.intern("project_owner");
+		// create() does not intern: each atom looks up its canonical atom on its
+		// first unification, and compares by reference after that
+		dynamic = SymbolTerm.create(new String("project_owner"));
+		dynamicOther = SymbolTerm.create(new String("project_owner"));
+		partial = SymbolTerm.create("label:project_owner").subsymbol(6);
+		partialOther = SymbolTerm.create("role:project_owner").subsymbol(5);
+
+		integer = new IntegerTerm(4711);
+		integerOther = new IntegerTerm(4711);
+		longTerm = new LongTerm(1L << 40);
+		longOther = new LongTerm(1L << 40);
+		doubleTerm = new DoubleTerm(3.25);
+		doubleOther = new DoubleTerm(3.25);
+
+		list = intList(32);
+		listOther = intList(32);
+
+		structure = sampleStructure();
+		structureOther = sampleStructure();
+		openStructure = new StructureTerm(SymbolTerm.intern("f", 4),
+				new VariableTerm(), new VariableTerm(), new VariableTerm(), new VariableTerm());
+
+		Object o = new Object();
+		javaObject = new JavaObjectTerm(o);
+		javaObjectOther = new JavaObjectTerm(o);
+
+		variable = new VariableTerm();
+	}
+
+	private static Term intList(int n) {
+		Term t = Prolog.Nil;
+		for (int i = n; i > 0; i--) {
+			t = new ListTerm(new IntegerTerm(i), t);
+		}
+		return t;
+	}
+
+	private static Term sampleStructure() {
+		return new StructureTerm(SymbolTerm.intern("f", 4),
+				SymbolTerm.intern("a"),
+				new IntegerTerm(1),
+				new StructureTerm(SymbolTerm.intern("g", 1), SymbolTerm.intern("b")),
+				new ListTerm(SymbolTerm.intern("x"), Prolog.Nil));
+	}
+
+	@Benchmark
+	public boolean symbolInterned() {
+		return interned.unify(internedSame, trail);
+	}
+
+	@Benchmark
+	public boolean symbolDynamic() {
+		return dynamic.unify(dynamicOther, trail);
+	}
+
+	@Benchmark
+	public boolean symbolPartial() {
+		return partial.unify(partialOther, trail);
+	}
+
+	/** A new atom from create(), paying for its first lookup. */
+	@Benchmark
+	public boolean symbolDynamicFirst() {
+		return SymbolTerm.create("project_owner").unify(interned, trail);
+	}
+
+	@Benchmark
+	public boolean integer() {
+		return integer.unify(integerOther, trail);
+	}
+
+	@Benchmark
+	public boolean longInteger() {
+		return longTerm.unify(longOther, trail);
+	}
+
+	@Benchmark
+	public boolean floatingPoint() {
+		return doubleTerm.unify(doubleOther, trail);
+	}
+
+	@Benchmark
+	public boolean list() {
+		return list.unify(listOther, trail);
+	}
+
+	@Benchmark
+	public boolean structure() {
+		return structure.unify(structureOther, trail);
+	}
+
+	@Benchmark
+	public boolean structureBindingArguments() {
+		boolean r = openStructure.unify(structure, trail);
+		trail.unwind(-1);
+		return r;
+	}
+
+	@Benchmark
+	public boolean javaObject() {
+		return javaObject.unify(javaObjectOther, trail);
+	}
+
+	@Benchmark
+	public boolean variable() {
+		boolean r = variable.unify(interned, trail);
+		trail.unwind(-1);
+		return r;
+	}
+}
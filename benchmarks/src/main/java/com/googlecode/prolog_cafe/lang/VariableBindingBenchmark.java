@@ -0,0 +1,86 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link VariableTerm#bind(Term, Trail)} followed by
+ * {@link VariableTerm#undo()} through {@link Trail#unwind(int)}.
+ * <p>
+ * {@code chain} binds a run of fresh variables to each other before binding
+ * the last one to an atom, which is the pattern produced by difference lists
+ * and DCG translation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VariableBindingBenchmark {
+
+	private Trail trail;
+	private Term atom;
+	private VariableTerm first, second;
+
+	@State(Scope.Thread)
+	public static class Chain {
+		@Param({"2", "8", "32"})
+		public int length;
+
+		VariableTerm[] variables;
+
+		@Setup
+		public void setup() {
+			variables = new VariableTerm[length];
+			for (int i = 0; i < variables.length; i++) {
+				variables[i] = new VariableTerm();
+			}
+		}
+	}
+
+	@Setup
+	public void setup() {
+		trail = new Trail();
+		atom = SymbolTerm.intern("value");
+		first = new VariableTerm();
+		second = new VariableTerm();
+	}
+
+	@Benchmark
+	public boolean bindToAtom() {
+		boolean r = first.bind(atom, trail);
+		trail.unwind(-1);
+		return r;
+	}
+
+	@Benchmark
+	public boolean bindToVariable() {
+		boolean r = first.bind(second, trail);
+		trail.unwind(-1);
+		return r;
+	}
+
+	@Benchmark
+	public Term chain(Chain c) {
+		VariableTerm[] chain = c.variables;
+		for (int i = 1; i < chain.length; i++) {
+			chain[i - 1].unify(chain[i], trail);
+		}
+		chain[chain.length - 1].unify(atom, trail);
+		Term r = chain[0].dereference();
+		trail.unwind(-1);
+		return r;
+	}
+}
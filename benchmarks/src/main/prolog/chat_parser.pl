@@ -0,0 +1,243 @@
+/*
+ * Parses a set of database queries with a definite clause grammar in
+ * the style of the CHAT-80 natural language front end.  The grammar and
+ * lexicon are a reduced version of the original, large enough to keep
+ * the characteristic mix of deep backtracking and lexicon lookups.
+ */
+:- package 'com.googlecode.prolog_cafe.benchmark.chat_parser'.
+
+top :-
+	loop(50).
+
+loop(0) :- !.
+loop(N) :-
+	parse_all,
+	N1 is N - 1,
+	loop(N1).
+
+parse_all :-
+	string(Words),
+	parse(Words, _),
+	fail.
+parse_all.
+
+parse(Words, Tree) :-
+	question(Tree, Words, []), !.
+
+string([what,rivers,are,there,'?']).
+string([does,afghanistan,border,china,'?']).
+string([what,is,the,capital,of,upper_volta,'?']).
+string([where,is,the,largest,country,'?']).
+string([which,countries,are,european,'?']).
+string([which,countries,are,bordered,by,two,seas,'?']).
+string([how,many,countries,does,the,danube,flow,through,'?']).
+string([what,is,the,ocean,that,borders,african,countries,
+	and,that,borders,asian,countries,'?']).
+string([what,are,the,capitals,of,the,countries,bordering,the,baltic,'?']).
+string([which,country,bordering,the,mediterranean,borders,a,country,
+	that,is,bordered,by,a,country,whose,population,exceeds,
+	the,population,of,india,'?']).
+string([is,there,some,ocean,that,does,not,border,any,country,'?']).
+string([what,is,the,average,area,of,the,countries,in,each,continent,'?']).
+string([which,rivers,flow,through,europe,'?']).
+string([what,is,the,population,of,china,and,india,'?']).
+string([does,the,danube,rise,in,germany,'?']).
+
+/* Grammar */
+
+question(Q) -->
+	question1(Q), ['?'].
+
+question1(exist(N)) -->
+	[what], nbar(N, pl), [are,there].
+question1(which(N, VP)) -->
+	[which], nbar(N, _), verb_phrase(VP).
+question1(what(NP)) -->
+	[what], be, np(NP).
+question1(where(NP)) -->
+	[where], be, np(NP).
+question1(how_many(N, S, V, P)) -->
+	[how,many], nbar(N, pl), do, np(S), verb(V, inf), prep(P).
+question1(yes_no(S, VP)) -->
+	do, np(S), verb_phrase_inf(VP).
+question1(there_is(NP)) -->
+	be, [there], np(NP).
+
+np(NP) -->
+	np1(NP1), np_rest(NP1, NP).
+
+np_rest(NP1, and(NP1, NP2)) -->
+	[and], np(NP2).
+np_rest(NP, NP) -->
+	[].
+
+np1(name(N)) -->
+	[W], { word(W, name(N)) }.
+np1(name(N)) -->
+	[the], [W], { word(W, name(N)) }.
+np1(np(D, N)) -->
+	det(D), nbar(N, _).
+np1(np(num(K), N)) -->
+	[W], { word(W, num(K)) }, nbar(N, _).
+np1(np(bare, N)) -->
+	nbar(N, pl).
+
+nbar(nbar(As, N, Ms), Num) -->
+	adjs(As), noun(N, Num), mods(Ms).
+
+adjs([A|As]) -->
+	adj(A), adjs(As).
+adjs([]) -->
+	[].
+
+mods([M|Ms]) -->
+	modifier(M), mods(Ms).
+mods([]) -->
+	[].
+
+modifier(pp(P, NP)) -->
+	prep(P), np(NP).
+modifier(rel(VP)) -->
+	rel, verb_phrase(VP).
+modifier(rel(VP)) -->
+	[and], rel, verb_phrase(VP).
+modifier(reduced(V, NP)) -->
+	verb(V, ing), { trans(V) }, np(NP).
+modifier(whose(N, VP)) -->
+	[whose], nbar(N, _), verb_phrase(VP).
+
+verb_phrase(vp(V, O)) -->
+	verb(V, fin), { trans(V) }, np(O).
+verb_phrase(vp(V, Ms)) -->
+	verb(V, fin), { intrans(V) }, pps(Ms).
+verb_phrase(neg(VP)) -->
+	do, [not], verb_phrase_inf(VP).
+verb_phrase(be(C)) -->
+	be, complement(C).
+
+verb_phrase_inf(vp(V, O)) -->
+	verb(V, inf), { trans(V) }, np(O).
+verb_phrase_inf(vp(V, Ms)) -->
+	verb(V, inf), { intrans(V) }, pps(Ms).
+
+pps([pp(P, NP)|Ms]) -->
+	prep(P), np(NP), pps(Ms).
+pps([]) -->
+	[].
+
+complement(passive(V, A)) -->
+	verb(V, part), [by], np(A).
+complement(adj(A)) -->
+	adj(A).
+complement(pp(P, NP)) -->
+	prep(P), np(NP).
+complement(np(NP)) -->
+	np(NP).
+
+det(D) --> [W], { word(W, det(D)) }.
+noun(N, Num) --> [W], { word(W, noun(N, Num)) }.
+adj(A) --> [W], { word(W, adj(A)) }.
+prep(P) --> [W], { word(W, prep(P)) }.
+verb(V, F) --> [W], { word(W, verb(V, F)) }.
+rel --> [W], { word(W, rel) }.
+do --> [W], { word(W, aux(do)) }.
+be --> [W], { word(W, aux(be)) }.
+
+/* Lexicon */
+
+trans(border).
+trans(contain).
+trans(exceed).
+
+intrans(flow).
+intrans(rise).
+
+word(a, det(a)).
+word(the, det(the)).
+word(each, det(each)).
+word(every, det(every)).
+word(some, det(some)).
+word(any, det(any)).
+word(no, det(no)).
+
+word(one, num(1)).
+word(two, num(2)).
+word(three, num(3)).
+
+word(that, rel).
+word(who, rel).
+
+word(do, aux(do)).
+word(does, aux(do)).
+word(did, aux(do)).
+word(is, aux(be)).
+word(are, aux(be)).
+
+word(of, prep(of)).
+word(in, prep(in)).
+word(through, prep(through)).
+word(into, prep(into)).
+word(from, prep(from)).
+word(by, prep(by)).
+word(with, prep(with)).
+
+word(border, verb(border, inf)).
+word(border, verb(border, fin)).
+word(borders, verb(border, fin)).
+word(bordered, verb(border, part)).
+word(bordering, verb(border, ing)).
+word(contain, verb(contain, inf)).
+word(contain, verb(contain, fin)).
+word(contains, verb(contain, fin)).
+word(contained, verb(contain, part)).
+word(containing, verb(contain, ing)).
+word(exceed, verb(exceed, inf)).
+word(exceeds, verb(exceed, fin)).
+word(exceeding, verb(exceed, ing)).
+word(flow, verb(flow, inf)).
+word(flow, verb(flow, fin)).
+word(flows, verb(flow, fin)).
+word(rise, verb(rise, inf)).
+word(rise, verb(rise, fin)).
+word(rises, verb(rise, fin)).
+
+word(area, noun(area, sg)).
+word(areas, noun(area, pl)).
+word(capital, noun(capital, sg)).
+word(capitals, noun(capital, pl)).
+word(city, noun(city, sg)).
+word(cities, noun(city, pl)).
+word(continent, noun(continent, sg)).
+word(continents, noun(continent, pl)).
+word(country, noun(country, sg)).
+word(countries, noun(country, pl)).
+word(ocean, noun(ocean, sg)).
+word(oceans, noun(ocean, pl)).
+word(population, noun(population, sg)).
+word(river, noun(river, sg)).
+word(rivers, noun(river, pl)).
+word(sea, noun(sea, sg)).
+word(seas, noun(sea, pl)).
+
+word(african, adj(african)).
+word(american, adj(american)).
+word(asian, adj(asian)).
+word(average, adj(average)).
+word(european, adj(european)).
+word(largest, adj(largest)).
+word(smallest, adj(smallest)).
+word(total, adj(total)).
+
+word(afghanistan, name(afghanistan)).
+word(atlantic, name(atlantic)).
+word(baltic, name(baltic)).
+word(black_sea, name(black_sea)).
+word(china, name(china)).
+word(danube, name(danube)).
+word(europe, name(europe)).
+word(france, name(france)).
+word(germany, name(germany)).
+word(india, name(india)).
+word(london, name(london)).
+word(mediterranean, name(mediterranean)).
+word(upper_volta, name(upper_volta)).
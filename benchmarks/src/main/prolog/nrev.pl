@@ -0,0 +1,32 @@
+/*
+ * Naive reverse of a 30 element list.
+ *
+ * Every call to nreverse/2 on a 30 element list performs 496 logical
+ * inferences, which is the traditional basis of LIPS figures.
+ */
+:- package 'com.googlecode.prolog_cafe.benchmark.nrev'.
+
+top :-
+	range(1, 30, L),
+	loop(300, L).
+
+loop(0, _) :- !.
+loop(N, L) :-
+	nreverse(L, _),
+	N1 is N - 1,
+	loop(N1, L).
+
+nreverse([], []).
+nreverse([X|L0], L) :-
+	nreverse(L0, L1),
+	concatenate(L1, [X], L).
+
+concatenate([], L, L).
+concatenate([X|L1], L2, [X|L3]) :-
+	concatenate(L1, L2, L3).
+
+range(N, N, [N]) :- !.
+range(M, N, [M|Ns]) :-
+	M < N,
+	M1 is M + 1,
+	range(M1, N, Ns).
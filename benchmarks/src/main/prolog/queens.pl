@@ -0,0 +1,47 @@
+/*
+ * All 92 solutions of the eight queens problem.
+ */
+:- package 'com.googlecode.prolog_cafe.benchmark.queens'.
+
+top :-
+	loop(10).
+
+loop(0) :- !.
+loop(N) :-
+	all_queens,
+	N1 is N - 1,
+	loop(N1).
+
+all_queens :-
+	queens(8, _),
+	fail.
+all_queens.
+
+queens(N, Qs) :-
+	range(1, N, Ns),
+	queens(Ns, [], Qs).
+
+queens([], Qs, Qs).
+queens(Unplaced, Safe, Qs) :-
+	select(Q, Unplaced, Rest),
+	\+ attack(Q, Safe),
+	queens(Rest, [Q|Safe], Qs).
+
+attack(X, Xs) :-
+	attack(X, 1, Xs).
+
+attack(X, N, [Y|_]) :- X is Y + N.
+attack(X, N, [Y|_]) :- X is Y - N.
+attack(X, N, [_|Ys]) :-
+	N1 is N + 1,
+	attack(X, N1, Ys).
+
+select(X, [X|Xs], Xs).
+select(X, [Y|Ys], [Y|Zs]) :-
+	select(X, Ys, Zs).
+
+range(N, N, [N]) :- !.
+range(M, N, [M|Ns]) :-
+	M < N,
+	M1 is M + 1,
+	range(M1, N, Ns).
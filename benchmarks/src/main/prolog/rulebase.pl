@@ -0,0 +1,60 @@
+/*
+ * Rule base shared by the engines of the scaling benchmark.
+ *
+ * It is consulted once into package user, saved as a PrologMachineCopy and
+ * restored by the workers. Every query predicate takes a seed and returns
+ * a result:
+ *
+ *   search(+Seed, -Count)   backtracking search over the edge/2 facts
+ *   atoms(+Seed, -Name)     creates a new atom, stressing the symbol table
+ *   locked(+Seed, -Count)   search/2 under a global with_mutex/2 lock
+ *   mixed(+Seed, -Result)   all of the above in one query
+ */
+:- dynamic edge/2.
+:- dynamic label/2.
+
+build_graph(N) :-
+	build_nodes(0, N).
+
+build_nodes(N, N) :- !.
+build_nodes(I, N) :-
+	A is (I * 7 + 1) mod N,
+	B is (I * 13 + 5) mod N,
+	assertz(edge(I, A)),
+	assertz(edge(I, B)),
+	number_codes(I, Codes),
+	atom_codes(Id, Codes),
+	atom_concat(n, Id, Name),
+	assertz(label(I, Name)),
+	I1 is I + 1,
+	build_nodes(I1, N).
+
+search(Seed, Count) :-
+	Start is Seed mod 2000,
+	findall(X, reach(Start, 6, X), L),
+	length(L, Count).
+
+reach(X, _, X).
+reach(X, D, Z) :-
+	D > 0,
+	edge(X, Y),
+	D1 is D - 1,
+	reach(Y, D1, Z).
+
+atoms(Seed, Name) :-
+	Start is Seed mod 2000,
+	label(Start, Label),
+	number_codes(Seed, Codes),
+	atom_codes(Id, Codes),
+	atom_concat(Label, '_', Prefix),
+	atom_concat(Prefix, Id, Name).
+
+locked(Seed, Count) :-
+	with_mutex(scaling, search(Seed, Count)).
+
+mixed(Seed, r(Count, Name)) :-
+	search(Seed, Count),
+	atoms(Seed, Name),
+	with_mutex(scaling, true).
+
+:- build_graph(2000).
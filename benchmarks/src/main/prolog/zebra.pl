@@ -0,0 +1,44 @@
+/*
+ * The zebra puzzle: who owns the zebra and who drinks water?
+ */
+:- package 'com.googlecode.prolog_cafe.benchmark.zebra'.
+
+top :-
+	loop(20).
+
+loop(0) :- !.
+loop(N) :-
+	houses(_),
+	!,
+	N1 is N - 1,
+	loop(N1).
+
+houses(Houses) :-
+	Houses = [house(_,norwegian,_,_,_), _, house(_,_,_,milk,_), _, _],
+	member(house(red,english,_,_,_), Houses),
+	member(house(green,_,_,coffee,_), Houses),
+	right_of(house(green,_,_,_,_), house(ivory,_,_,_,_), Houses),
+	member(house(_,spanish,dog,_,_), Houses),
+	member(house(yellow,_,_,_,kools), Houses),
+	member(house(_,ukrainian,_,tea,_), Houses),
+	member(house(_,_,snails,_,winstons), Houses),
+	next_to(house(_,_,_,_,chesterfields), house(_,_,fox,_,_), Houses),
+	next_to(house(_,_,_,_,kools), house(_,_,horse,_,_), Houses),
+	member(house(_,_,_,orange_juice,lucky_strikes), Houses),
+	member(house(_,japanese,_,_,parliaments), Houses),
+	next_to(house(_,norwegian,_,_,_), house(blue,_,_,_,_), Houses),
+	member(house(_,_,zebra,_,_), Houses),
+	member(house(_,_,_,water,_), Houses).
+
+right_of(A, B, [B,A|_]).
+right_of(A, B, [_|Y]) :-
+	right_of(A, B, Y).
+
+next_to(A, B, [A,B|_]).
+next_to(A, B, [B,A|_]).
+next_to(A, B, [_|Y]) :-
+	next_to(A, B, Y).
+
+member(X, [X|_]).
+member(X, [_|Y]) :-
+	member(X, Y).
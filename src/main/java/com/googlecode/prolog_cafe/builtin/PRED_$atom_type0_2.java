@@ -24,7 +24,7 @@ class PRED_$atom_type0_2 extends Predicate.P2 {
 	if(! (a1 instanceof SymbolTerm))
 	    return engine.fail();
 	type = Token.getStringType(((SymbolTerm)a1).name());
-	if(! a2.unify(new IntegerTerm(type), engine.trail)) 
+	if(! a2.unify(IntegerTerm.valueOf(type), engine.trail)) 
 	    return engine.fail();
 	return cont;
     }
@@ -0,0 +1,34 @@
+package com.googlecode.prolog_cafe.builtin;
+import  com.googlecode.prolog_cafe.lang.*;
+/**
+ * <code>'$begin_inference_limit'/2</code><br>
+ * Enters a {@link LimitScope} allowing the given number of inferences
+ * and unifies its second argument with the scope.
+ */
+class PRED_$begin_inference_limit_2 extends Predicate.P2 {
+    public PRED_$begin_inference_limit_2(Term a1, Term a2, Operation cont) {
+	arg1 = a1;
+	arg2 = a2;
+	this.cont = cont;
+    }
+
+    public Operation exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2;
+	a1 = arg1;
+	a2 = arg2;
+
+	a1 = a1.dereference();
+	if (a1 instanceof VariableTerm)
+	    throw new PInstantiationException(this, 1);
+	if (! (a1 instanceof IntegerTerm || a1 instanceof LongTerm))
+	    throw new IllegalTypeException(this, 1, "integer", a1);
+	long limit = ((NumberTerm) a1).longValue();
+	if (limit < 0)
+	    throw new IllegalDomainException(this, 1, "not_less_than_zero", a1);
+	LimitScope scope = LimitScope.enterInferenceLimit(engine, limit);
+	if (! a2.unify(new JavaObjectTerm(scope), engine.trail))
+	    return engine.fail();
+	return cont;
+    }
+}
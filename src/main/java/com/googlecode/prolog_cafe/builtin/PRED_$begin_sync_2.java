@@ -11,6 +11,12 @@ import com.googlecode.prolog_cafe.lang.*;
  */
 class PRED_$begin_sync_2 extends BlockPredicate {
 	private final Term arg1, arg2;
+	/** Object synchronized on. */
+	private Object lock;
+	/** Choice point stack top when the block was entered. */
+	private int base;
+	/** Set while {@link #run} executes the block. */
+	private boolean running;
 
 	public PRED_$begin_sync_2(Term a1, Term a2, Operation cont) {
 		arg1 = a1;
@@ -25,7 +31,6 @@ class PRED_$begin_sync_2 extends BlockPredicate {
 		a2 = arg2;
 
 		Object o = null;
-		Operation code = null;
 
 		// 1st. argument
 		a1 = a1.dereference();
@@ -40,15 +45,27 @@ class PRED_$begin_sync_2 extends BlockPredicate {
 			throw new IllegalTypeException(this, 2, "variable", a1);
 		((VariableTerm) a2).bind(new JavaObjectTerm(this), engine.trail);
 		//
-		code = cont;
+		lock = o;
+		base = engine.stack.top();
 		this.outOfScope = false;
 		this.outOfLoop = false;
 		engine.trail.push(new OutOfLoop(this));
-		PrologLogger logger = engine.getLogger();
+		return run(engine, cont);
+	}
+
+	/**
+	 * Executes <code>code</code>, holding the lock while in scope, until
+	 * backtracking leaves the block. Returns early with <code>null</code> when
+	 * the engine suspends at a solution, so that the suspension reaches
+	 * {@link PrologControl}.
+	 */
+	private Operation run(Prolog engine, Operation code) {
+		PrologTracer tracer = engine.getTracer();
+		running = true;
 		try {
 			main_loop:
 			while (true) {
-				synchronized (o) {
+				synchronized (lock) {
 					while (!outOfScope) {
 						if (engine.halt != 0) {
 							break main_loop;
@@ -58,8 +75,11 @@ class PRED_$begin_sync_2 extends BlockPredicate {
 						if (outOfLoop)
 							break main_loop;
 
-						logger.beforeExec(code);
+						engine.countInference();
+						tracer.beforeExec(code);
 						code = code.exec(engine);
+						if (code == null)
+							break main_loop; // suspended at a solution
 					}
 				}
 				while (outOfScope) {
@@ -71,16 +91,58 @@ class PRED_$begin_sync_2 extends BlockPredicate {
 					if (outOfLoop)
 						break main_loop;
 
-					logger.beforeExec(code);
+					engine.countInference();
+					tracer.beforeExec(code);
 					code = code.exec(engine);
+					if (code == null)
+						break main_loop; // suspended at a solution
 				}
 
 			}
 		} catch (StopEngineException see){
 			throw see;
 		} catch (RuntimeException e){
-			throw logger.execThrows(e);
+			throw tracer.execThrows(e);
+		} finally {
+			running = false;
 		}
 		return code;
 	}
+
+	/**
+	 * Leaves the scope, called by <code>'$end_sync'/1</code>. Every choice
+	 * point the goal left is made to take the lock again when it is
+	 * backtracked into after {@link #run} has returned, as it does when the
+	 * engine suspends at a solution.
+	 * <p>
+	 * A choice point that is retried gets its next clause replaced, and loses
+	 * its {@link Relock}, only once those above it are gone; so the frames
+	 * below the first one found wrapped are wrapped already.
+	 */
+	void endScope(Prolog engine) {
+		outOfScope = true;
+		engine.trail.push(new OutOfScope(this));
+		ChoicePointStack stack = engine.stack;
+		for (int i = stack.top(); i > base; i--) {
+			Operation next = stack.getAlternative(i);
+			if (next instanceof Relock && ((Relock) next).block == this)
+				break;
+			stack.setAlternative(i, new Relock(this, next));
+		}
+	}
+
+	/** Next clause of a choice point in the block, run with the lock held. */
+	private static final class Relock implements Operation {
+		final PRED_$begin_sync_2 block;
+		final Operation next;
+
+		Relock(PRED_$begin_sync_2 block, Operation next) {
+			this.block = block;
+			this.next = next;
+		}
+
+		public Operation exec(Prolog engine) {
+			return block.running ? next : block.run(engine, next);
+		}
+	}
 }
@@ -0,0 +1,35 @@
+package com.googlecode.prolog_cafe.builtin;
+import  com.googlecode.prolog_cafe.lang.*;
+/**
+ * <code>'$begin_time_limit'/2</code><br>
+ * Enters a {@link LimitScope} ending after the given number of seconds
+ * and unifies its second argument with the scope.
+ */
+class PRED_$begin_time_limit_2 extends Predicate.P2 {
+    public PRED_$begin_time_limit_2(Term a1, Term a2, Operation cont) {
+	arg1 = a1;
+	arg2 = a2;
+	this.cont = cont;
+    }
+
+    public Operation exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2;
+	a1 = arg1;
+	a2 = arg2;
+
+	a1 = a1.dereference();
+	if (a1 instanceof VariableTerm)
+	    throw new PInstantiationException(this, 1);
+	if (! (a1 instanceof NumberTerm))
+	    throw new IllegalTypeException(this, 1, "number", a1);
+	double seconds = ((NumberTerm) a1).doubleValue();
+	if (! (seconds > 0))
+	    throw new IllegalDomainException(this, 1, "positive_number", a1);
+	long nanos = (long) Math.min(seconds * 1e9, Long.MAX_VALUE / 2);
+	LimitScope scope = LimitScope.enterTimeLimit(engine, nanos);
+	if (! a2.unify(new JavaObjectTerm(scope), engine.trail))
+	    return engine.fail();
+	return cont;
+    }
+}
@@ -63,7 +63,7 @@ class PRED_$call_2 extends Predicate.P2 {
 							a1,
 							new StructureTerm(SYM_SLASH_2,
 									SymbolTerm.create(functor),
-									new IntegerTerm(arity)));
+									IntegerTerm.valueOf(arity)));
 					ExistenceException err = new ExistenceException(this, 0, "procedure", what, e.getMessage());
 					err.initCause(e);
 					throw err;
@@ -17,7 +17,7 @@ public final class PRED_$compare0_3 extends Predicate.P3 {
         engine.setB0();
         Term a2 = arg2.dereference();
         Term a3 = arg3.dereference();
-        if(! arg1.unify(new IntegerTerm(a2.compareTo(a3)), engine.trail))
+        if(! arg1.unify(IntegerTerm.valueOf(a2.compareTo(a3)), engine.trail))
           return engine.fail();
         return cont;
     }
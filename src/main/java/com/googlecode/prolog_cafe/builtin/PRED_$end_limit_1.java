@@ -0,0 +1,25 @@
+package com.googlecode.prolog_cafe.builtin;
+import  com.googlecode.prolog_cafe.lang.*;
+/**
+ * <code>'$end_limit'/1</code><br>
+ * Leaves a {@link LimitScope} entered by <code>'$begin_inference_limit'/2</code>
+ * or <code>'$begin_time_limit'/2</code>.
+ */
+class PRED_$end_limit_1 extends Predicate.P1 {
+    public PRED_$end_limit_1(Term a1, Operation cont) {
+	arg1 = a1;
+	this.cont = cont;
+    }
+
+    public Operation exec(Prolog engine) {
+        engine.setB0();
+	Term a1;
+	a1 = arg1;
+
+	a1 = a1.dereference();
+	if (! (a1 instanceof JavaObjectTerm && ((JavaObjectTerm) a1).object() instanceof LimitScope))
+	    throw new IllegalTypeException(this, 1, "java", a1);
+	((LimitScope) ((JavaObjectTerm) a1).object()).exit();
+	return cont;
+    }
+}
@@ -23,9 +23,7 @@ class PRED_$end_sync_1 extends Predicate.P1 {
 	Object obj = ((JavaObjectTerm)a1).object();
 	if (! (obj instanceof PRED_$begin_sync_2))
 	    throw new SystemException("a1 must be an object of PRED_$begin_sync_2: " + this);
-	PRED_$begin_sync_2 p = ((PRED_$begin_sync_2) obj);
-	p.outOfScope = true;
-	engine.trail.push(new OutOfScope(p));
+	((PRED_$begin_sync_2) obj).endScope(engine);
 	return cont;
     }
 }
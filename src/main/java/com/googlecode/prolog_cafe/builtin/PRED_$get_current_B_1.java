@@ -16,7 +16,7 @@ class PRED_$get_current_B_1 extends Predicate.P1 {
         engine.setB0();
 	Term a1;
 	a1 = arg1;
-	if (! a1.unify(new IntegerTerm(engine.stack.top()), engine.trail)) 
+	if (! a1.unify(IntegerTerm.valueOf(engine.stack.top()), engine.trail)) 
 	    return engine.fail();
 	return cont;
     }
@@ -16,7 +16,7 @@ public class PRED_$get_level_1 extends Predicate.P1 {
 	//        engine.setB0(); 
 	Term a1;
         a1 = arg1;
-        if (! a1.unify(new IntegerTerm(engine.B0), engine.trail)) {
+        if (! a1.unify(IntegerTerm.valueOf(engine.B0), engine.trail)) {
             return engine.fail();
         }
         return cont;
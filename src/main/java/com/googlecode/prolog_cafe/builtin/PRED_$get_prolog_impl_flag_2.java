@@ -43,10 +43,10 @@ class PRED_$get_prolog_impl_flag_2 extends Predicate.P2 {
 		    return engine.fail();
 	    }
 	} else if (a1.equals(MAX_INTEGER)) {
-	    if (! a2.unify(new IntegerTerm(engine.getMaxInteger()), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(engine.getMaxInteger()), engine.trail))
 		return engine.fail();
 	} else if (a1.equals(MIN_INTEGER)) {
-	    if (! a2.unify(new IntegerTerm(engine.getMinInteger()), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(engine.getMinInteger()), engine.trail))
 		return engine.fail();
 	} else if (a1.equals(INTEGER_ROUNDING_FUNCTION)) {
 	    if (! a2.unify(SymbolTerm.intern(engine.getIntegerRoundingFunction()), engine.trail))
@@ -58,7 +58,7 @@ class PRED_$get_prolog_impl_flag_2 extends Predicate.P2 {
 	    if (! a2.unify(SymbolTerm.intern(engine.getDebug()), engine.trail))
 		return engine.fail();
 	} else if (a1.equals(MAX_ARITY)) {
-	    if (! a2.unify(new IntegerTerm(engine.getMaxArity()), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(engine.getMaxArity()), engine.trail))
 		return engine.fail();
 	} else if (a1.equals(UNKNOWN)) {
 	    if (! a2.unify(SymbolTerm.intern(engine.getUnknown()), engine.trail))
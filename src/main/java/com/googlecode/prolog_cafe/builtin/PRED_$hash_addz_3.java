@@ -36,9 +36,9 @@ class PRED_$hash_addz_3 extends Predicate.P3 {
 		if ((a1 instanceof VariableTerm)) {
 			throw new PInstantiationException(this, 1);
 		} else if ((a1 instanceof SymbolTerm)) {
-			if (!engine.getHashManager().containsKey(a1))
+			if (!engine.peekHashManager().containsKey(a1))
 				throw new ExistenceException(this, 1, "hash", a1, "");
-			hash = ((JavaObjectTerm) engine.getHashManager().get(a1)).object();
+			hash = ((JavaObjectTerm) engine.peekHashManager().get(a1)).object();
 		} else if ((a1 instanceof JavaObjectTerm)) {
 			hash = ((JavaObjectTerm) a1).object();
 		} else {
@@ -46,6 +46,7 @@ class PRED_$hash_addz_3 extends Predicate.P3 {
 		}
 		if (!(hash instanceof HashtableOfTerm))
 			throw new InternalException(this + ": Hash is not HashtableOfTerm");
+		hash = engine.getHash((HashtableOfTerm) hash, true);
 		a2 = a2.dereference();
 		a3 = a3.dereference();
 		Term elem = ((HashtableOfTerm) hash).get(a2);
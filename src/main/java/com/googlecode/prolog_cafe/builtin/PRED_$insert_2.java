@@ -25,7 +25,7 @@ class PRED_$insert_2 extends Predicate.P2 {
 	    throw new IllegalTypeException(this, 2, "variable", a2);
 	a1 = a1.dereference();
 	idx = engine.internalDB.insert(a1);
-	if (! a2.unify(new IntegerTerm(idx), engine.trail))
+	if (! a2.unify(IntegerTerm.valueOf(idx), engine.trail))
 	    return engine.fail();
 	return cont;
     }
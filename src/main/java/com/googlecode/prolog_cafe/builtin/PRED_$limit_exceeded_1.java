@@ -0,0 +1,25 @@
+package com.googlecode.prolog_cafe.builtin;
+import  com.googlecode.prolog_cafe.lang.*;
+/**
+ * <code>'$limit_exceeded'/1</code><br>
+ * Succeeds if the limit of a {@link LimitScope} has been reached.
+ */
+class PRED_$limit_exceeded_1 extends Predicate.P1 {
+    public PRED_$limit_exceeded_1(Term a1, Operation cont) {
+	arg1 = a1;
+	this.cont = cont;
+    }
+
+    public Operation exec(Prolog engine) {
+        engine.setB0();
+	Term a1;
+	a1 = arg1;
+
+	a1 = a1.dereference();
+	if (! (a1 instanceof JavaObjectTerm && ((JavaObjectTerm) a1).object() instanceof LimitScope))
+	    throw new IllegalTypeException(this, 1, "java", a1);
+	if (! ((LimitScope) ((JavaObjectTerm) a1).object()).isExceeded())
+	    return engine.fail();
+	return cont;
+    }
+}
@@ -52,7 +52,7 @@ class PRED_$read_token0_3 extends Predicate.P3 {
 	    type = Token.read_token(s, (PushbackReader)stream);
 	    switch(type) {
 	    case Token.TOKEN_INTEGER:
-	    	token = new IntegerTerm(Integer.parseInt(s.toString()));
+	    	token = IntegerTerm.valueOf(Integer.parseInt(s.toString()));
 	    	break;
 	    case Token.TOKEN_LONG:
 	    	token = new LongTerm(Long.parseLong(s.toString()));
@@ -64,7 +64,7 @@ class PRED_$read_token0_3 extends Predicate.P3 {
 			char[] chars = (s.toString()).toCharArray();
 			token = Prolog.Nil;
 			for (int i=chars.length; i>0; i--){
-			    token = new ListTerm(new IntegerTerm((int)chars[i-1]), token);
+			    token = new ListTerm(IntegerTerm.valueOf((int)chars[i-1]), token);
 			}
 			break;
 	    default :
@@ -74,7 +74,7 @@ class PRED_$read_token0_3 extends Predicate.P3 {
 	} catch (Exception e) {
 	    throw new JavaException(this, 1, e);
 	}
-	if (! a2.unify(new IntegerTerm(type), engine.trail))
+	if (! a2.unify(IntegerTerm.valueOf(type), engine.trail))
 	    return engine.fail();
 	if (! a3.unify(token, engine.trail))
 	    return engine.fail();
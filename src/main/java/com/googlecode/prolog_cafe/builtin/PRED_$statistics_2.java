@@ -37,24 +37,24 @@ class PRED_$statistics_2 extends Predicate.P2 {
 	    val1 = System.currentTimeMillis() - engine.getStartRuntime();
 	    val2 = val1 - engine.getPreviousRuntime();
 	    engine.setPreviousRuntime(val1);
-	    start    = new IntegerTerm((int)val1);
-	    previous = new IntegerTerm((int)val2);
+	    start    = IntegerTerm.valueOf((int)val1);
+	    previous = IntegerTerm.valueOf((int)val2);
 	    result   = new ListTerm(start, new ListTerm(previous, Nil));
 	} else if (a1.equals(SYM_TRAIL)) {
 	    int top, max;
 	    Term free, used;
 	    top    = engine.trail.top();
 	    max    = engine.trail.max();
-	    used   = new IntegerTerm(top);
-	    free   = new IntegerTerm(max - top);
+	    used   = IntegerTerm.valueOf(top);
+	    free   = IntegerTerm.valueOf(max - top);
 	    result = new ListTerm(used, new ListTerm(free, Nil));
 	} else if (a1.equals(SYM_CHOICE)) {
 	    int top, max;
 	    Term free, used;
 	    top    = engine.stack.top();
 	    max    = engine.stack.max();
-	    used   = new IntegerTerm(top);
-	    free   = new IntegerTerm(max - top);
+	    used   = IntegerTerm.valueOf(top);
+	    free   = IntegerTerm.valueOf(max - top);
 	    result = new ListTerm(used, new ListTerm(free, Nil));
 	} else {
 	    return engine.fail();
@@ -20,7 +20,7 @@ public class PRED_$term_hash_2 extends Predicate.P2 {
         a2 = arg2;
 
 	a1 = a1.dereference(); 
-	if (! a2.unify(new IntegerTerm(a1.hashCode()), engine.trail))
+	if (! a2.unify(IntegerTerm.valueOf(a1.hashCode()), engine.trail))
 	    return engine.fail();
 	return cont;
     }
@@ -29,7 +29,7 @@ public class PRED_atom_length_2 extends Predicate.P2 {
 	    throw new IllegalTypeException(this, 1, "atom", a1);
 	length = ((SymbolTerm)a1).name().length();
 	if ((a2 instanceof VariableTerm)) {
-	    if (! a2.unify(new IntegerTerm(length), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(length), engine.trail))
 		return engine.fail();
 	} else if ((a2 instanceof IntegerTerm)) {
 	    int n = ((IntegerTerm)a2).intValue();
@@ -43,7 +43,7 @@ public class PRED_close_2 extends Predicate.P2 {
 	    if ((car instanceof StructureTerm)) {
 		SymbolTerm functor = ((StructureTerm) car).functor();
 		Term[] args = ((StructureTerm) car).args();
-		if (functor.equals(SYM_FORCE_1)) {
+		if (functor == SYM_FORCE_1) {
 		    Term bool = args[0].dereference();
 		    if (bool.equals(SYM_TRUE))
 			forceFlag = true;
@@ -110,7 +110,7 @@ public class PRED_close_2 extends Predicate.P2 {
 		if ((car instanceof StructureTerm)) {
 		    SymbolTerm functor = ((StructureTerm) car).functor();
 		    Term[] args = ((StructureTerm) car).args();
-		    if (functor.equals(SYM_ALIAS_1)) {
+		    if (functor == SYM_ALIAS_1) {
 			Term alias = args[0].dereference();
 			streamManager.remove(alias);
 		    }
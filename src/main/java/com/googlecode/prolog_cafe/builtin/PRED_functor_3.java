@@ -65,13 +65,13 @@ public class PRED_functor_3 extends Predicate.P3 {
 	IntegerTerm arity;
 	if ((a1 instanceof SymbolTerm) || (a1 instanceof NumberTerm) || (a1 instanceof JavaObjectTerm) || (a1 instanceof ClosureTerm)) {
 	    functor = a1;
-	    arity   = new IntegerTerm(0);
+	    arity   = IntegerTerm.valueOf(0);
 	} else if ((a1 instanceof ListTerm)) {
 	    functor = SYM_DOT;
-	    arity   = new IntegerTerm(2);
+	    arity   = IntegerTerm.valueOf(2);
 	} else if ((a1 instanceof StructureTerm)) {
 	    functor = SymbolTerm.create(((StructureTerm)a1).name());
-	    arity   = new IntegerTerm(((StructureTerm)a1).arity());
+	    arity   = IntegerTerm.valueOf(((StructureTerm)a1).arity());
 	} else {
 	    return engine.fail();
 	}
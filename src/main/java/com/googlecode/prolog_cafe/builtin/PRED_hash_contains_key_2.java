@@ -23,7 +23,7 @@ public class PRED_hash_contains_key_2 extends Predicate.P2 {
 		if ((a1 instanceof JavaObjectTerm)) {
 			hash = ((JavaObjectTerm) a1).object();
 		} else if ((a1 instanceof SymbolTerm)){
-			JavaObjectTerm t = (JavaObjectTerm) engine.getHashManager().get(a1);
+			JavaObjectTerm t = (JavaObjectTerm) engine.peekHashManager().get(a1);
 			if (t==null){
 				throw new ExistenceException(this, 1, "hash", a1, "");
 			}
@@ -35,7 +35,7 @@ public class PRED_hash_contains_key_2 extends Predicate.P2 {
 		}
 		
 		if (hash instanceof HashtableOfTerm) {
-			if (((HashtableOfTerm) hash).containsKey(a2)){
+			if (engine.getHash((HashtableOfTerm) hash, false).containsKey(a2)){
 				return cont;
 			}
 			return engine.fail();
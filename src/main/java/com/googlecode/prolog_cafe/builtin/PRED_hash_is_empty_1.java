@@ -24,9 +24,9 @@ public class PRED_hash_is_empty_1 extends Predicate.P1 {
 	if ((a1 instanceof VariableTerm)) {
 	    throw new PInstantiationException(this, 1);
 	} else if ((a1 instanceof SymbolTerm)) {
-	    if (! engine.getHashManager().containsKey(a1))
+	    if (! engine.peekHashManager().containsKey(a1))
 		throw new ExistenceException(this, 1, "hash", a1, "");
-	    hash = ((JavaObjectTerm) engine.getHashManager().get(a1)).object();
+	    hash = ((JavaObjectTerm) engine.peekHashManager().get(a1)).object();
 	} else if ((a1 instanceof JavaObjectTerm)) {
 	    hash = ((JavaObjectTerm) a1).object();
 	} else {
@@ -34,6 +34,7 @@ public class PRED_hash_is_empty_1 extends Predicate.P1 {
 	}
 	if (! (hash instanceof HashtableOfTerm))
 	    throw new InternalException(this + ": Hash is not HashtableOfTerm");
+	hash = engine.getHash((HashtableOfTerm) hash, false);
 	if (! ((HashtableOfTerm) hash).isEmpty())
 	    return engine.fail();
         return cont;
@@ -27,9 +27,9 @@ public class PRED_hash_keys_2 extends Predicate.P2 {
 	if ((a1 instanceof VariableTerm)) {
 	    throw new PInstantiationException(this, 1);
 	} else if ((a1 instanceof SymbolTerm)) {
-	    if (! engine.getHashManager().containsKey(a1))
+	    if (! engine.peekHashManager().containsKey(a1))
 		throw new ExistenceException(this, 1, "hash", a1, "");
-	    hash = ((JavaObjectTerm) engine.getHashManager().get(a1)).object();
+	    hash = ((JavaObjectTerm) engine.peekHashManager().get(a1)).object();
 	} else if ((a1 instanceof JavaObjectTerm)) {
 	    hash = ((JavaObjectTerm) a1).object();
 	} else {
@@ -37,6 +37,7 @@ public class PRED_hash_keys_2 extends Predicate.P2 {
 	}
 	if (! (hash instanceof HashtableOfTerm))
 	    throw new InternalException(this + ": Hash is not HashtableOfTerm");
+	hash = engine.getHash((HashtableOfTerm) hash, false);
 	Term keys = Prolog.Nil;
 	for (Term t : ((HashtableOfTerm) hash).keySet())
 	    keys = new ListTerm(t, keys);
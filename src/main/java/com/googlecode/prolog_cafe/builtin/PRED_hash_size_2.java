@@ -26,9 +26,9 @@ public class PRED_hash_size_2 extends Predicate.P2 {
 	if ((a1 instanceof VariableTerm)) {
 	    throw new PInstantiationException(this, 1);
 	} else if ((a1 instanceof SymbolTerm)) {
-	    if (! engine.getHashManager().containsKey(a1))
+	    if (! engine.peekHashManager().containsKey(a1))
 		throw new ExistenceException(this, 1, "hash", a1, "");
-	    hash = ((JavaObjectTerm) engine.getHashManager().get(a1)).object();
+	    hash = ((JavaObjectTerm) engine.peekHashManager().get(a1)).object();
 	} else if ((a1 instanceof JavaObjectTerm)) {
 	    hash = ((JavaObjectTerm) a1).object();
 	} else {
@@ -36,10 +36,11 @@ public class PRED_hash_size_2 extends Predicate.P2 {
 	}
 	if (! (hash instanceof HashtableOfTerm))
 	    throw new InternalException(this + ": Hash is not HashtableOfTerm");
+	hash = engine.getHash((HashtableOfTerm) hash, false);
 	a2 = a2.dereference();
 	if (! (a2 instanceof VariableTerm) && ! (a2 instanceof IntegerTerm))
 	    throw new IllegalTypeException(this, 1, "integer", a2);
-	if (! a2.unify(new IntegerTerm(((HashtableOfTerm)hash).size()), engine.trail))
+	if (! a2.unify(IntegerTerm.valueOf(((HashtableOfTerm)hash).size()), engine.trail))
 	    return engine.fail();
         return cont;
     }
@@ -48,7 +48,7 @@ public class PRED_java_conversion_2 extends Predicate.P2 {
 		   o instanceof Short   ||
 		   o instanceof Integer ||
 		   o instanceof Long) {
-	    return new IntegerTerm(((Number)o).intValue());
+	    return IntegerTerm.valueOf(((Number)o).intValue());
 	} else if (o instanceof Float || 
 		   o instanceof Double) {
 	    return new DoubleTerm(((Number)o).doubleValue());
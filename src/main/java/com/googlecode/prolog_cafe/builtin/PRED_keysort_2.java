@@ -46,7 +46,7 @@ public class PRED_keysort_2 extends Predicate.P2 {
 		throw new PInstantiationException(this, 1);
 	    if (!( list[i] instanceof StructureTerm))
 		throw new IllegalTypeException(this, 1, "key_value_pair", a1);
-	    if (! ((StructureTerm) list[i]).functor().equals(SYM_HYPHEN_2))
+	    if (((StructureTerm) list[i]).functor() != SYM_HYPHEN_2)
 		throw new IllegalTypeException(this, 1, "key_value_pair", a1);
 	    tmp = ((ListTerm)tmp).cdr().dereference();
 	}
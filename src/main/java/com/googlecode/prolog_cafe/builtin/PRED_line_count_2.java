@@ -40,8 +40,8 @@ public class PRED_line_count_2 extends P2 {
 			throw new PermissionException(this, "input", "stream", a1, "");
 		// get line number
 		if (!(stream instanceof LineNumberPushbackReader) 			
-			 || !a2.unify(new IntegerTerm(((LineNumberPushbackReader) stream).getLineNumber()+1), engine.trail)){
-//		if (!a2.unify(new IntegerTerm(0),engine.trail)){ // uncomment this for creating patch and comment two lines above
+			 || !a2.unify(IntegerTerm.valueOf(((LineNumberPushbackReader) stream).getLineNumber()+1), engine.trail)){
+//		if (!a2.unify(IntegerTerm.valueOf(0),engine.trail)){ // uncomment this for creating patch and comment two lines above
 				return engine.fail();
 		}
 		return cont;
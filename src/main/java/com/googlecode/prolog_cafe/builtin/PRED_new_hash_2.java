@@ -46,7 +46,7 @@ public class PRED_new_hash_2 extends Predicate.P2 {
 	    if ((car instanceof StructureTerm)) {
 		SymbolTerm functor = ((StructureTerm) car).functor();
 		Term[] args = ((StructureTerm) car).args();
-		if (functor.equals(SYM_ALIAS_1)) {
+		if (functor == SYM_ALIAS_1) {
 		    Term alias = args[0].dereference();
 		    if (! (alias instanceof SymbolTerm))
 			throw new IllegalDomainException(this, 2, "hash_option", car);
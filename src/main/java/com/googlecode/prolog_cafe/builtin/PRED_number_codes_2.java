@@ -44,7 +44,7 @@ public class PRED_number_codes_2 extends Predicate.P2 {
 		x = ((ListTerm)x).cdr().dereference();
 	    }
 	    try {
-		if (! a1.unify(new IntegerTerm(Integer.parseInt(sb.toString())), engine.trail))
+		if (! a1.unify(IntegerTerm.valueOf(Integer.parseInt(sb.toString())), engine.trail))
 		    return engine.fail();
 		return cont;
 	    } catch (NumberFormatException e) {}
@@ -59,7 +59,7 @@ public class PRED_number_codes_2 extends Predicate.P2 {
 	    char[] chars = a1.toString().toCharArray();
 	    Term y = Prolog.Nil;
 	    for (int i=chars.length; i>0; i--) {
-		y = new ListTerm(new IntegerTerm((int)chars[i-1]), y);
+		y = new ListTerm(IntegerTerm.valueOf((int)chars[i-1]), y);
 	    }
 	    if (! a2.unify(y, engine.trail) ) 
 		return engine.fail();
@@ -27,6 +27,7 @@ public class PRED_open_4 extends Predicate.P4 {
 	private static final SymbolTerm SYM_FILE_NAME_1 = SymbolTerm.intern("file_name", 1);
 	private static final SymbolTerm SYM_CHARSET = SymbolTerm.intern("charset", 1);
 	private static final SymbolTerm SYM_AUTOCLOSE = SymbolTerm.intern("autoclose", 1);
+	private static final SymbolTerm SYM_COLON_2 = SymbolTerm.intern(":", 2);
 
 	public PRED_open_4(Term a1, Term a2, Term a3, Term a4, Operation cont) {
 		arg1 = a1;
@@ -60,7 +61,7 @@ public class PRED_open_4 extends Predicate.P4 {
 			throw new PInstantiationException(this, 1);
 		if ((a1 instanceof SymbolTerm)){
 			file = new File(((SymbolTerm) a1).name());
-		} else if ((a1 instanceof StructureTerm) && ":".equals(a1.name()) && 2==a1.arity()){
+		} else if ((a1 instanceof StructureTerm) && ((StructureTerm) a1).functor() == SYM_COLON_2){
 			Term pkg = a1.arg(0).dereference();
 			Term name = a1.arg(1).dereference();
 			if (!(pkg instanceof SymbolTerm) || !(name instanceof SymbolTerm)){
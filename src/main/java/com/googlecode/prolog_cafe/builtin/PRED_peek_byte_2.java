@@ -9,7 +9,7 @@ import java.io.*;
    @since 1.1
 */
 public class PRED_peek_byte_2 extends Predicate.P2 {
-    private static final IntegerTerm INT_EOF = new IntegerTerm(-1);
+    private static final IntegerTerm INT_EOF = IntegerTerm.valueOf(-1);
 
     public PRED_peek_byte_2(Term a1, Term a2, Operation cont) {
         arg1 = a1;
@@ -59,7 +59,7 @@ public class PRED_peek_byte_2 extends Predicate.P2 {
 	    if (c > 255)
 		throw new RepresentationException(this, 0, "byte");
 	    ((PushbackReader)stream).unread(c);
-	    if (! a2.unify(new IntegerTerm(c), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(c), engine.trail))
 		return engine.fail();
 	    return cont;
 	} catch (IOException e) {
@@ -8,7 +8,7 @@ import java.io.*;
    @version 1.0
 */
 public class PRED_peek_code_2 extends Predicate.P2 {
-    private static final IntegerTerm INT_EOF = new IntegerTerm(-1);
+    private static final IntegerTerm INT_EOF = IntegerTerm.valueOf(-1);
 
     public PRED_peek_code_2(Term a1, Term a2, Operation cont) {
         arg1 = a1;
@@ -58,7 +58,7 @@ public class PRED_peek_code_2 extends Predicate.P2 {
 	    if (! Character.isDefined(c))
 		throw new RepresentationException(this, 0, "character");
 	    ((PushbackReader)stream).unread(c);
-	    if (! a2.unify(new IntegerTerm(c), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(c), engine.trail))
 		return engine.fail();
 	    return cont;
 	} catch (IOException e) {
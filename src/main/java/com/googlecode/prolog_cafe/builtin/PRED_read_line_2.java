@@ -43,7 +43,7 @@ public class PRED_read_line_2 extends Predicate.P2 {
 	try {
 	    line = (new BufferedReader((PushbackReader)stream)).readLine();
 	    if (line == null) { // end_of_stream
-		if(! a2.unify(new IntegerTerm(-1), engine.trail))
+		if(! a2.unify(IntegerTerm.valueOf(-1), engine.trail))
 		    return engine.fail();
 		return cont;
 	    }
@@ -52,7 +52,7 @@ public class PRED_read_line_2 extends Predicate.P2 {
 	    for (int i=chars.length; i>0; i--) {
 		if (! Character.isDefined((int)chars[i-1]))
 		    throw new RepresentationException(this, 0, "character");
-		t = new ListTerm(new IntegerTerm((int)chars[i-1]), t);
+		t = new ListTerm(IntegerTerm.valueOf((int)chars[i-1]), t);
 	    }
 	    if(! a2.unify(t, engine.trail))
 		return engine.fail();
@@ -8,7 +8,7 @@ import java.io.*;
    @version 1.0
 */
 public class PRED_skip_2 extends Predicate.P2 {
-    private static final IntegerTerm INT_EOF = new IntegerTerm(-1);
+    private static final IntegerTerm INT_EOF = IntegerTerm.valueOf(-1);
 
     public PRED_skip_2(Term a1, Term a2, Operation cont) {
         arg1 = a1;
@@ -26,6 +26,9 @@ import java.util.Properties;
  *
  */
 public class PRED_write_domain_definitions_2 extends P2 {
+	private static final SymbolTerm SYM_EQUAL_2 = SymbolTerm.intern("=", 2);
+	private static final SymbolTerm SYM_COLON_2 = SymbolTerm.intern(":", 2);
+	private static final SymbolTerm SYM_SEMICOLON_2 = SymbolTerm.intern(";", 2);
 
 	public PRED_write_domain_definitions_2() {
 	}
@@ -58,11 +61,11 @@ public class PRED_write_domain_definitions_2 extends P2 {
 			Term t = ((ListTerm) lt).car();
 			lt = ((ListTerm) lt).cdr();
 			
-			if (!(t instanceof StructureTerm) || !"=".equals(t.name()) || t.arity()!=2){
+			if (!(t instanceof StructureTerm) || ((StructureTerm) t).functor() != SYM_EQUAL_2){
 				throw new IllegalDomainException(this, 2, "package:name = (aaa;bbb*;ccc(ddd,eee))", t);
 			}
 			Term packageAndName = t.arg(0);
-			if (!(packageAndName instanceof StructureTerm) || !":".equals(packageAndName.name()) || packageAndName.arity()!=2){
+			if (!(packageAndName instanceof StructureTerm) || ((StructureTerm) packageAndName).functor() != SYM_COLON_2){
 				throw new IllegalDomainException(this, 2, "package:name = (aaa;bbb*;ccc(ddd,eee))", t);
 			}
 			Term packageTerm = packageAndName.arg(0);
@@ -76,7 +79,7 @@ public class PRED_write_domain_definitions_2 extends P2 {
 			Term definition = t.arg(1);
 			StringBuilder sb = new StringBuilder();
 			Term d = definition;
-			while (";".equals(d.name())){
+			while (d instanceof StructureTerm && ((StructureTerm) d).functor() == SYM_SEMICOLON_2){
 				sb.append(d.arg(0).toString()).append(';');
 				d = d.arg(1);
 			}
@@ -89,6 +89,11 @@ public class Compiler {
         this.symbol = SymbolTerm.intern(symbol);
         this.onByDefault = onByDefault;
       }
+
+      /** Short name of the option, as used by the <code>-O</code> flag. */
+      public String shortName() {
+        return symbol.name();
+      }
     }
 
     /** Prolog context running the compiler/translater tools. */
@@ -62,6 +62,136 @@ public class Arithmetic {
     public static NumberTerm evaluate(Term _t)
 	throws PInstantiationException,IllegalDomainException {
 	Term t = _t.dereference();
+	if ((t instanceof IntegerTerm))
+	    return (IntegerTerm)t;
+	if ((t instanceof StructureTerm)) {
+	    long v = evaluateInt(t);
+	    if (v != NOT_INT)
+		return IntegerTerm.valueOf((int) v);
+	}
+	return evaluateTerm(t);
+    }
+
+    /** Returned by {@link #evaluateInt} for expressions it cannot evaluate. */
+    private static final long NOT_INT = Long.MIN_VALUE;
+
+    /**
+     * Evaluates <code>_t</code> on <code>int</code> values, with the same
+     * results as <code>IntegerTerm</code> arithmetic but without creating a
+     * term for every subexpression.
+     * Returns {@link #NOT_INT} on anything else, such as floats, longs,
+     * unbound variables or a zero divisor; the caller then evaluates the
+     * whole expression with {@link #evaluateTerm}, which reports errors.
+     */
+    private static long evaluateInt(Term _t) {
+	Term t = _t.dereference();
+	if ((t instanceof IntegerTerm))
+	    return ((IntegerTerm)t).val;
+	if (! (t instanceof StructureTerm))
+	    return NOT_INT;
+
+	// Look at the functor first, so float functions give up before
+	// walking their arguments.
+	SymbolTerm func = ((StructureTerm)t).functor();
+	Term[] args = ((StructureTerm)t).args();
+	int op = intOperator(func);
+	if (op < 0)
+	    return NOT_INT;
+	long v = evaluateInt(args[0]);
+	if (v == NOT_INT)
+	    return NOT_INT;
+	int x = (int) v;
+
+	switch (op) {
+	case OP_IDENTITY: return x;
+	case OP_NEGATE:   return - x;
+	case OP_NOT:      return ~ x;
+	case OP_ABS:      return Math.abs(x);
+	case OP_SIGN:     return Integer.signum(x);
+	}
+	v = evaluateInt(args[1]);
+	if (v == NOT_INT)
+	    return NOT_INT;
+	int y = (int) v;
+
+	switch (op) {
+	case OP_ADD:        return x + y;
+	case OP_SUBTRACT:   return x - y;
+	case OP_MULTIPLY:   return x * y;
+	case OP_INTDIVIDE:  return y == 0 ? NOT_INT : x / y;
+	case OP_MOD:        return y == 0 ? NOT_INT : x % y;
+	case OP_AND:        return x & y;
+	case OP_OR:         return x | y;
+	case OP_XOR:        return x ^ y;
+	case OP_SHIFTLEFT:  return x << y;
+	case OP_SHIFTRIGHT: return x >> y;
+	case OP_MIN:        return Math.min(x, y);
+	default:            return Math.max(x, y);
+	}
+    }
+
+    private static final int OP_IDENTITY   = 0;
+    private static final int OP_NEGATE     = 1;
+    private static final int OP_NOT        = 2;
+    private static final int OP_ABS        = 3;
+    private static final int OP_SIGN       = 4;
+    private static final int OP_ADD        = 5;
+    private static final int OP_SUBTRACT   = 6;
+    private static final int OP_MULTIPLY   = 7;
+    private static final int OP_INTDIVIDE  = 8;
+    private static final int OP_MOD        = 9;
+    private static final int OP_AND        = 10;
+    private static final int OP_OR         = 11;
+    private static final int OP_XOR        = 12;
+    private static final int OP_SHIFTLEFT  = 13;
+    private static final int OP_SHIFTRIGHT = 14;
+    private static final int OP_MIN        = 15;
+    private static final int OP_MAX        = 16;
+
+    /** Returns the operation {@link #evaluateInt} does for <code>func</code>, or -1. */
+    private static int intOperator(SymbolTerm func) {
+	if (func == SYM_ADD_2)
+	    return OP_ADD;
+	else if (func == SYM_SUBTRACT_2)
+	    return OP_SUBTRACT;
+	else if (func == SYM_MULTIPLY_2)
+	    return OP_MULTIPLY;
+	else if (func == SYM_INTDIVIDE_2)
+	    return OP_INTDIVIDE;
+	else if (func == SYM_MOD_2 || func == SYM_REM_2)
+	    return OP_MOD;
+	else if (func == SYM_NEGATE_1)
+	    return OP_NEGATE;
+	else if (func == SYM_ADD_1 || func == SYM_FLOOR_1 || func == SYM_CEIL_1
+		|| func == SYM_ROUND_1 || func == SYM_TRUNCATE_1)
+	    return OP_IDENTITY;
+	else if (func == SYM_AND_2)
+	    return OP_AND;
+	else if (func == SYM_OR_2)
+	    return OP_OR;
+	else if (func == SYM_XOR_2)
+	    return OP_XOR;
+	else if (func == SYM_NOT_1)
+	    return OP_NOT;
+	else if (func == SYM_SHIFTLEFT_2)
+	    return OP_SHIFTLEFT;
+	else if (func == SYM_SHIFTRIGHT_2)
+	    return OP_SHIFTRIGHT;
+	else if (func == SYM_ABS_1)
+	    return OP_ABS;
+	else if (func == SYM_SIGN_1)
+	    return OP_SIGN;
+	else if (func == SYM_MIN_2)
+	    return OP_MIN;
+	else if (func == SYM_MAX_2)
+	    return OP_MAX;
+	return -1;
+    }
+
+    /** Evaluates <code>_t</code> on <code>NumberTerm</code> objects. */
+    private static NumberTerm evaluateTerm(Term _t)
+	throws PInstantiationException,IllegalDomainException {
+	Term t = _t.dereference();
 
 	if ((t instanceof VariableTerm))
 	    throw new PInstantiationException();
@@ -78,91 +208,91 @@ public class Arithmetic {
 	else if (t.equals(SYM_E))
 	    return new DoubleTerm(Math.E);
 	else if ((t instanceof ListTerm))
-	    return evaluate(((ListTerm)t).car());
+	    return evaluateTerm(((ListTerm)t).car());
 	else if (! (t instanceof StructureTerm))
 	    throw new IllegalDomainException("arithmetic expression", t);
 
 	SymbolTerm func = ((StructureTerm)t).functor();
 	Term[] args = ((StructureTerm)t).args();
 
-	if (func.equals(SYM_ADD_1))
-	    return evaluate(args[0]);
-	else if (func.equals(SYM_NEGATE_1))
-	    return evaluate(args[0]).negate();
-	else if (func.equals(SYM_ADD_2))
-	    return evaluate(args[0]).add(evaluate(args[1]));
-	else if (func.equals(SYM_SUBTRACT_2))
-	    return evaluate(args[0]).subtract(evaluate(args[1]));
-	else if (func.equals(SYM_MULTIPLY_2))
-	    return evaluate(args[0]).multiply(evaluate(args[1]));
-	else if (func.equals(SYM_INTDIVIDE_2))
-	    return evaluate(args[0]).intDivide(evaluate(args[1]));
-	else if (func.equals(SYM_DIVIDE_2))
-	    return evaluate(args[0]).divide(evaluate(args[1]));
-	else if (func.equals(SYM_MOD_2))
-	    return evaluate(args[0]).mod(evaluate(args[1]));
-	else if (func.equals(SYM_REM_2))
-	    return evaluate(args[0]).mod(evaluate(args[1]));
-	else if (func.equals(SYM_AND_2))
-	    return evaluate(args[0]).and(evaluate(args[1]));
-	else if (func.equals(SYM_OR_2))
-	    return evaluate(args[0]).or(evaluate(args[1]));
-	else if (func.equals(SYM_XOR_2))
-	    return evaluate(args[0]).xor(evaluate(args[1]));
-	else if (func.equals(SYM_NOT_1))
-	    return evaluate(args[0]).not();
-	else if (func.equals(SYM_SHIFTLEFT_2))
-	    return evaluate(args[0]).shiftLeft(evaluate(args[1]));
-	else if (func.equals(SYM_SHIFTRIGHT_2))
-	    return evaluate(args[0]).shiftRight(evaluate(args[1]));
-	else if (func.equals(SYM_ABS_1))
-	    return evaluate(args[0]).abs();
-	else if (func.equals(SYM_MIN_2))
-	    return evaluate(args[0]).min(evaluate(args[1]));
-	else if (func.equals(SYM_MAX_2))
-	    return evaluate(args[0]).max(evaluate(args[1]));
-	else if (func.equals(SYM_RINT_1))
-	    return evaluate(args[0]).rint();
-	else if (func.equals(SYM_ROUND_1))
-	    return evaluate(args[0]).round();
-	else if (func.equals(SYM_FLOOR_1))
-	    return evaluate(args[0]).floor();
-	else if (func.equals(SYM_CEIL_1))
-	    return evaluate(args[0]).ceil();
-	else if (func.equals(SYM_SIN_1))
-	    return evaluate(args[0]).sin();
-	else if (func.equals(SYM_COS_1))
-	    return evaluate(args[0]).cos();
-	else if (func.equals(SYM_TAN_1))
-	    return evaluate(args[0]).tan();
-	else if (func.equals(SYM_ASIN_1))
-	    return evaluate(args[0]).asin();
-	else if (func.equals(SYM_ACOS_1))
-	    return evaluate(args[0]).acos();
-	else if (func.equals(SYM_ATAN_1))
-	    return evaluate(args[0]).atan();
-	else if (func.equals(SYM_SQRT_1))
-	    return evaluate(args[0]).sqrt();
-	else if (func.equals(SYM_LOG_1))
-	    return evaluate(args[0]).log();
-	else if (func.equals(SYM_EXP_1))
-	    return evaluate(args[0]).exp();
-	else if (func.equals(SYM_POW_2))
-	    return evaluate(args[0]).pow(evaluate(args[1]));
-	else if (func.equals(SYM_DEGREES_1))
-	    return evaluate(args[0]).toDegrees();
-	else if (func.equals(SYM_RADIANS_1))
-	    return evaluate(args[0]).toRadians();
-	else if (func.equals(SYM_SIGN_1))
-	    return evaluate(args[0]).signum();
-	else if (func.equals(SYM_FLOAT_1))
-	    return evaluate(args[0]).toFloat();
-	else if (func.equals(SYM_INTPART_1))
-	    return evaluate(args[0]).floatIntPart();
-	else if (func.equals(SYM_FRACTPART_1))
-	    return evaluate(args[0]).floatFractPart();
-	else if (func.equals(SYM_TRUNCATE_1))
-	    return evaluate(args[0]).truncate();
+	if (func == SYM_ADD_1)
+	    return evaluateTerm(args[0]);
+	else if (func == SYM_NEGATE_1)
+	    return evaluateTerm(args[0]).negate();
+	else if (func == SYM_ADD_2)
+	    return evaluateTerm(args[0]).add(evaluateTerm(args[1]));
+	else if (func == SYM_SUBTRACT_2)
+	    return evaluateTerm(args[0]).subtract(evaluateTerm(args[1]));
+	else if (func == SYM_MULTIPLY_2)
+	    return evaluateTerm(args[0]).multiply(evaluateTerm(args[1]));
+	else if (func == SYM_INTDIVIDE_2)
+	    return evaluateTerm(args[0]).intDivide(evaluateTerm(args[1]));
+	else if (func == SYM_DIVIDE_2)
+	    return evaluateTerm(args[0]).divide(evaluateTerm(args[1]));
+	else if (func == SYM_MOD_2)
+	    return evaluateTerm(args[0]).mod(evaluateTerm(args[1]));
+	else if (func == SYM_REM_2)
+	    return evaluateTerm(args[0]).mod(evaluateTerm(args[1]));
+	else if (func == SYM_AND_2)
+	    return evaluateTerm(args[0]).and(evaluateTerm(args[1]));
+	else if (func == SYM_OR_2)
+	    return evaluateTerm(args[0]).or(evaluateTerm(args[1]));
+	else if (func == SYM_XOR_2)
+	    return evaluateTerm(args[0]).xor(evaluateTerm(args[1]));
+	else if (func == SYM_NOT_1)
+	    return evaluateTerm(args[0]).not();
+	else if (func == SYM_SHIFTLEFT_2)
+	    return evaluateTerm(args[0]).shiftLeft(evaluateTerm(args[1]));
+	else if (func == SYM_SHIFTRIGHT_2)
+	    return evaluateTerm(args[0]).shiftRight(evaluateTerm(args[1]));
+	else if (func == SYM_ABS_1)
+	    return evaluateTerm(args[0]).abs();
+	else if (func == SYM_MIN_2)
+	    return evaluateTerm(args[0]).min(evaluateTerm(args[1]));
+	else if (func == SYM_MAX_2)
+	    return evaluateTerm(args[0]).max(evaluateTerm(args[1]));
+	else if (func == SYM_RINT_1)
+	    return evaluateTerm(args[0]).rint();
+	else if (func == SYM_ROUND_1)
+	    return evaluateTerm(args[0]).round();
+	else if (func == SYM_FLOOR_1)
+	    return evaluateTerm(args[0]).floor();
+	else if (func == SYM_CEIL_1)
+	    return evaluateTerm(args[0]).ceil();
+	else if (func == SYM_SIN_1)
+	    return evaluateTerm(args[0]).sin();
+	else if (func == SYM_COS_1)
+	    return evaluateTerm(args[0]).cos();
+	else if (func == SYM_TAN_1)
+	    return evaluateTerm(args[0]).tan();
+	else if (func == SYM_ASIN_1)
+	    return evaluateTerm(args[0]).asin();
+	else if (func == SYM_ACOS_1)
+	    return evaluateTerm(args[0]).acos();
+	else if (func == SYM_ATAN_1)
+	    return evaluateTerm(args[0]).atan();
+	else if (func == SYM_SQRT_1)
+	    return evaluateTerm(args[0]).sqrt();
+	else if (func == SYM_LOG_1)
+	    return evaluateTerm(args[0]).log();
+	else if (func == SYM_EXP_1)
+	    return evaluateTerm(args[0]).exp();
+	else if (func == SYM_POW_2)
+	    return evaluateTerm(args[0]).pow(evaluateTerm(args[1]));
+	else if (func == SYM_DEGREES_1)
+	    return evaluateTerm(args[0]).toDegrees();
+	else if (func == SYM_RADIANS_1)
+	    return evaluateTerm(args[0]).toRadians();
+	else if (func == SYM_SIGN_1)
+	    return evaluateTerm(args[0]).signum();
+	else if (func == SYM_FLOAT_1)
+	    return evaluateTerm(args[0]).toFloat();
+	else if (func == SYM_INTPART_1)
+	    return evaluateTerm(args[0]).floatIntPart();
+	else if (func == SYM_FRACTPART_1)
+	    return evaluateTerm(args[0]).floatFractPart();
+	else if (func == SYM_TRUNCATE_1)
+	    return evaluateTerm(args[0]).truncate();
 	else
 	    throw new IllegalDomainException("arithmetic expression", t);
     }
@@ -46,8 +46,8 @@ package com.googlecode.prolog_cafe.lang;
  *     long t = System.currentTimeMillis();
  *     boolean r1 = true;
  *     boolean r2 = true;
- *     Term a1[] = {new IntegerTerm(4), new VariableTerm()};
- *     Term a2[] = {new IntegerTerm(8), new VariableTerm()};
+ *     Term a1[] = {IntegerTerm.valueOf(4), new VariableTerm()};
+ *     Term a2[] = {IntegerTerm.valueOf(8), new VariableTerm()};
  *
  *     PrologControl e1 = new PrologControl();
  *     PrologControl e2 = new PrologControl();
@@ -92,6 +92,9 @@ package com.googlecode.prolog_cafe.lang;
  *    }
  * }
  * </pre>
+ * <p>
+ * Every query runs on a new thread. {@link ExecutorPrologControl} offers the
+ * same <code>call()</code>/<code>redo()</code> protocol on an executor.
  *
  * @author Shawn Pearce (sop@google.com)
  */
@@ -262,14 +265,19 @@ public class BlockingPrologControl
    * Forces the thread to stop.<br>
    *
    * This method first sets the <code>resultReady</code> and <code>thread</code>
-   * to <code>false</code> and <code>null</code> respectively.
+   * to <code>false</code> and <code>null</code> respectively,
+   * and cancels the running execution by invoking <code>cancel()</code>.
    * And then it wakes up all threads that are waiting by <code>notifyAll()</code>.
    * @see #resultReady
    * @see #thread
+   * @see #cancel
    */
   public synchronized void stop() {
   resultReady = false;
-  thread = null;
+  if (thread != null) {
+      thread = null;
+      cancel();
+  }
   notifyAll();
   }
 
@@ -360,7 +368,8 @@ public class BlockingPrologControl
    *
    * Every time finding a solution, the <code>success</code> method is invoked.
    * And then the <code>fail</code> method is invoked after failure of all trials.
-   * Finally, the <code>stop</code> method is invoked at the end of this <code>run</code>.
+   * Finally, the thread is released as by the <code>stop</code> method at the
+   * end of this <code>run</code>.
    * @see #success
    * @see #fail
    * @see #stop
@@ -375,9 +384,19 @@ public class BlockingPrologControl
 //      printStackTrace(e);
 //      else
 //      System.out.println(e.toString());
+  } catch (QueryCancelledException e){
+      // stopped from outside
   } catch (Exception e){
       printStackTrace(e);
   }
-  stop();
+  finished();
+  }
+
+  /** Like <code>stop()</code>, but drops a cancellation left for this execution. */
+  private synchronized void finished() {
+  resultReady = false;
+  thread = null;
+  engine.cancelled = false;
+  notifyAll();
   }
 }
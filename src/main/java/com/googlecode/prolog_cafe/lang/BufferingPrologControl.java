@@ -2,6 +2,10 @@ package com.googlecode.prolog_cafe.lang;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Executes Prolog on the current thread, buffering all solutions.
@@ -120,7 +124,177 @@ public class BufferingPrologControl extends PrologControl {
     setPredicate(pkg, functor, args);
     setResultTemplate(args);
     run(Integer.MAX_VALUE);
-    return resBuffer;
+    return tuples();
+  }
+
+  /**
+   * Execute a prepared query and return one solution.
+   *
+   * @param q the query, see {@link #prepare(String, String, int)}.
+   * @param args arguments to pass in, and template to return the result with.
+   * @return a deep copy of {@code args} for the first solution; null on
+   *         failure.
+   */
+  public Term[] once(PreparedQuery q, Term... args) {
+    setPredicate(q, args);
+    setResultTemplate(args);
+    return (Term[]) (run(1) ? resBuffer.get(0) : null);
+  }
+
+  /**
+   * Execute a prepared query and return all solutions.
+   *
+   * @param q the query, see {@link #prepare(String, String, int)}.
+   * @param args arguments to pass in, and template to return the results with.
+   * @return a deep copy of {@code args} for each solution found. Empty list if
+   *         there are no solutions.
+   */
+  public List<Term[]> all(PreparedQuery q, Term... args) {
+    setPredicate(q, args);
+    setResultTemplate(args);
+    run(Integer.MAX_VALUE);
+    return tuples();
+  }
+
+  /**
+   * Execute a predicate once for each of a batch of argument tuples.
+   *
+   * @see #executeBatch(PreparedQuery, List)
+   */
+  public Term[][] executeBatch(String pkg, String functor, List<Term[]> tuples) {
+    if (tuples.isEmpty())
+      return new Term[0][];
+    return executeBatch(prepare(pkg, functor, tuples.get(0).length), tuples);
+  }
+
+  /**
+   * Execute a prepared query once for each of a batch of argument tuples.
+   * <p>
+   * The whole batch is one execution: the engine is initialized once, and
+   * between two tuples only the trail, the choice point stack, the registers
+   * and the limits are reset. Each tuple counts against the reduction limit
+   * and timeout on its own. Bindings made by a tuple are undone before the
+   * next one; an error raised by any tuple ends the batch.
+   *
+   * @param q the query, see {@link #prepare(String, String, int)}.
+   * @param tuples arguments for each call; each is also the template of its
+   *        result.
+   * @return for each tuple, in order, a deep copy of its arguments at the
+   *         first solution, or null if the call failed.
+   */
+  public Term[][] executeBatch(PreparedQuery q, List<Term[]> tuples) {
+    Term[][] results = new Term[tuples.size()][];
+    PrologTracer tracer = engine.getTracer();
+    suspendOnSuccess = true;
+    try {
+      tracer = begin();
+      int i = 0;
+      for (Term[] args : tuples) {
+        if (i > 0)
+          engine.restart();
+        suspended = false;
+        if (solve(q.predicate(Success.SUCCESS, args), tracer)) {
+          Term[] r = new Term[args.length];
+          for (int j = 0; j < args.length; j++)
+            r[j] = engine.copy(args[j]);
+          results[i] = r;
+        }
+        i++;
+      }
+      engine.unwindAll();
+    } finally {
+      suspendOnSuccess = false;
+      suspended = false;
+      end(tracer);
+    }
+    return results;
+  }
+
+  /**
+   * Execute a prepared query and iterate over its solutions as they are found.
+   *
+   * @see #iterator(String, String, Term...)
+   */
+  public SolutionIterator iterator(PreparedQuery q, Term... args) {
+    setPredicate(q, args);
+    return new SolutionIterator(this, args);
+  }
+
+  /**
+   * Execute a function and iterate over its solutions as they are found.
+   * <p>
+   * Unlike {@link #all(String, String, Term...)} nothing is computed ahead:
+   * every {@code hasNext()} resumes the engine on the calling thread until the
+   * next solution. Close the iterator if it is abandoned before the end.
+   *
+   * @param pkg package the functor is declared in. Typically "user".
+   * @param functor a prolog predicate to execute.
+   * @param args argument to pass in, and template to return the results with.
+   * @return iterator over a deep copy of {@code args} for each solution.
+   */
+  public SolutionIterator iterator(String pkg, String functor, Term... args) {
+    setPredicate(pkg, functor, args);
+    return new SolutionIterator(this, args);
+  }
+
+  /**
+   * Execute a function and stream its solutions as they are found.
+   * <p>
+   * The stream is sequential and lazy, see
+   * {@link #iterator(String, String, Term...)}; closing it, or a
+   * short-circuiting operation such as {@code findFirst()} followed by
+   * {@code close()}, abandons the remaining solutions.
+   *
+   * @param pkg package the functor is declared in. Typically "user".
+   * @param functor a prolog predicate to execute.
+   * @param args argument to pass in, and template to return the results with.
+   * @return stream of a deep copy of {@code args} for each solution.
+   */
+  public Stream<Term[]> stream(String pkg, String functor, Term... args) {
+    SolutionIterator it = iterator(pkg, functor, args);
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL),
+        false).onClose(it::close);
+  }
+
+  /**
+   * Execute a function and pass each solution to a consumer, without copying.
+   * <p>
+   * The consumer sees the bindings in place while the engine is paused at the
+   * solution, and decides whether to continue. Only what it copies with
+   * {@link SolutionConsumer#copy(Term)} outlives the call.
+   *
+   * @param consumer receives every solution; returns false to stop.
+   * @param pkg package the functor is declared in. Typically "user".
+   * @param functor a prolog predicate to execute.
+   * @param args argument to pass in; their bindings are shown to the consumer.
+   * @return number of solutions passed to the consumer.
+   */
+  public int forEach(SolutionConsumer consumer, String pkg, String functor, Term... args) {
+    return forEach(consumer, iterator(pkg, functor, args));
+  }
+
+  /**
+   * Execute a prepared query and pass each solution to a consumer, without
+   * copying.
+   *
+   * @see #forEach(SolutionConsumer, String, String, Term...)
+   */
+  public int forEach(SolutionConsumer consumer, PreparedQuery q, Term... args) {
+    return forEach(consumer, iterator(q, args));
+  }
+
+  private static int forEach(SolutionConsumer consumer, SolutionIterator solutions) {
+    int n = 0;
+    try (SolutionIterator it = solutions) {
+      Term[] view;
+      while ((view = it.advance()) != null) {
+        n++;
+        if (!consumer.accept(view))
+          break;
+      }
+    }
+    return n;
   }
 
   private void setResultTemplate(Term t) {
@@ -150,6 +324,20 @@ public class BufferingPrologControl extends PrologControl {
     return 0 < resBuffer.size();
   }
 
+  /** Returns the buffered results of a query run with a <code>Term[]</code> template. */
+  @SuppressWarnings("unchecked") // resBuffer holds Term[] unless resSingle is set
+  private List<Term[]> tuples() {
+    return resBuffer;
+  }
+
+  @Override
+  void reset() {
+    super.reset();
+    resBuffer = null;
+    resTemplate = null;
+    engineStopped = false;
+  }
+
   @Override
   public boolean isEngineStopped() {
     return engineStopped;
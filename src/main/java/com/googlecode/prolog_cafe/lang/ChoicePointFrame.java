@@ -2,8 +2,6 @@
 
 package com.googlecode.prolog_cafe.lang;
 
-import java.util.function.BiConsumer;
-
 /**
  * Choice point frame.
  *
@@ -11,7 +9,7 @@ import java.util.function.BiConsumer;
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
  * @version 1.0
  */
-class ChoicePointFrame {
+public class ChoicePointFrame {
 
   long timeStamp;
   Operation cont;  // continuation goal
@@ -22,10 +20,8 @@ class ChoicePointFrame {
   Predicate ownerPredicate; // used in PrologLogger
   int loggerStackTop; // used in PrologLogger
 
-  BiConsumer<ChoicePointFrame, Prolog> restore; // method to restore the engine from stacke
-
-  Term areg1, areg2, areg3, areg4, areg5, areg6, areg7, areg8;
-  Term[] aregs;
+  int argBase; // first saved argument register in ChoicePointStack.args
+  int arity;   // number of saved argument registers
 
   public String toString() {
     return ChoicePointFrame.class.getName() + '{' +
@@ -1,7 +1,6 @@
 package com.googlecode.prolog_cafe.lang;
 
 import java.util.Arrays;
-import java.util.function.BiConsumer;
 
 /**
  * Choice point frame stack.<br>
@@ -33,26 +32,62 @@ public final class ChoicePointStack {
    * This matches the length of the chain stored in {@link #top}.
    */
   private int level;
+  /** Frames are allocated once per level and reused by later pushes. */
   private ChoicePointFrame[] frames;
 
+  /**
+   * Saved argument registers of all frames. A frame saves its arguments in
+   * <code>args[argBase]</code> to <code>args[argBase + arity - 1]</code>,
+   * directly above those of the frame below it.
+   */
+  private Term[] args;
+
+  /** Deepest level seen before the stack last shrank, see {@link #peak()}. */
+  private int peak;
+
+  /** Maximum number of choice points, see {@link #setMax(int)}. */
+  private int max = Integer.MAX_VALUE;
+  /** Maximum number of frames: {@link #max} plus the initial frame. */
+  private int maxFrames = Integer.MAX_VALUE;
+  /** Usable length of {@link #frames}, never more than {@link #maxFrames}. */
+  private int capacity;
+  /** Number of frames kept allocated by {@link #init()}. */
+  private int retained = 256;
+
   ChoicePointStack(Trail trail) {
     this.trail = trail;
     this.level = -1;
-    frames = new ChoicePointFrame[256];
+    this.peak = -1;
+    frames = new ChoicePointFrame[retained];
+    args = new Term[retained << 2];
+    capacity = frames.length;
   }
 
   private void doubleFramesCapacity() {
-    ChoicePointFrame[] newFrames = new ChoicePointFrame[frames.length<<2];
-    System.arraycopy(frames, 0, newFrames, 0, frames.length);
-    frames = newFrames;
+    if (capacity >= maxFrames)
+      throw new ResourceException("choice_points");
+    if (capacity == frames.length) {
+      ChoicePointFrame[] newFrames = new ChoicePointFrame[(int) Math.min((long) frames.length << 2, maxFrames)];
+      System.arraycopy(frames, 0, newFrames, 0, frames.length);
+      frames = newFrames;
+    }
+    capacity = Math.min(frames.length, maxFrames);
   }
 
+  private void growArgs(int size) {
+    args = Arrays.copyOf(args, Math.max(args.length << 1, size));
+  }
 
-  ChoicePointFrame push(Prolog engine, Operation next, BiConsumer<ChoicePointFrame, Prolog> restore) {
-    level++;
-    if (level>=frames.length){
+  /** Pushes a frame saving <code>arity</code> argument registers, which the caller stores. */
+  private ChoicePointFrame push(Prolog engine, Operation next, int arity) {
+    int base = level < 0 ? 0 : top.argBase + top.arity;
+    if (base + arity > args.length) {
+      growArgs(base + arity);
+    }
+    if (level + 1 >= capacity){
       doubleFramesCapacity();
     }
+    level++;
     if (frames[level]==null){
       frames[level] = new ChoicePointFrame();
     }
@@ -62,183 +97,154 @@ public final class ChoicePointStack {
     top.bp = next;
     top.timeStamp = trail.timeStamp;
     top.cont = engine.cont;
-    top.restore = restore;
+    top.argBase = base;
+    top.arity = arity;
     return top;
   }
 
+  ChoicePointFrame push(Prolog engine, Operation next) {
+    return push(engine, next, 0);
+  }
+
   ChoicePointFrame push(Prolog engine, Term areg1, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore1);
-    topFrame.areg1 = areg1;
+    ChoicePointFrame topFrame = push(engine, next, 1);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, Term areg1, Term areg2, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore2);
-    topFrame.areg1 = areg1;
-    topFrame.areg2 = areg2;
+    ChoicePointFrame topFrame = push(engine, next, 2);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
+    a[b + 1] = areg2;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, Term areg1, Term areg2, Term areg3, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore3);
-    topFrame.areg1 = areg1;
-    topFrame.areg2 = areg2;
-    topFrame.areg3 = areg3;
+    ChoicePointFrame topFrame = push(engine, next, 3);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
+    a[b + 1] = areg2;
+    a[b + 2] = areg3;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, Term areg1, Term areg2, Term areg3, Term areg4, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore4);
-    topFrame.areg1 = areg1;
-    topFrame.areg2 = areg2;
-    topFrame.areg3 = areg3;
-    topFrame.areg4 = areg4;
+    ChoicePointFrame topFrame = push(engine, next, 4);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
+    a[b + 1] = areg2;
+    a[b + 2] = areg3;
+    a[b + 3] = areg4;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, Term areg1, Term areg2, Term areg3, Term areg4, Term areg5, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore5);
-    topFrame.areg1 = areg1;
-    topFrame.areg2 = areg2;
-    topFrame.areg3 = areg3;
-    topFrame.areg4 = areg4;
-    topFrame.areg5 = areg5;
+    ChoicePointFrame topFrame = push(engine, next, 5);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
+    a[b + 1] = areg2;
+    a[b + 2] = areg3;
+    a[b + 3] = areg4;
+    a[b + 4] = areg5;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, Term areg1, Term areg2, Term areg3, Term areg4, Term areg5, Term areg6, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore6);
-    topFrame.areg1 = areg1;
-    topFrame.areg2 = areg2;
-    topFrame.areg3 = areg3;
-    topFrame.areg4 = areg4;
-    topFrame.areg5 = areg5;
-    topFrame.areg6 = areg6;
+    ChoicePointFrame topFrame = push(engine, next, 6);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
+    a[b + 1] = areg2;
+    a[b + 2] = areg3;
+    a[b + 3] = areg4;
+    a[b + 4] = areg5;
+    a[b + 5] = areg6;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, Term areg1, Term areg2, Term areg3, Term areg4, Term areg5, Term areg6, Term areg7, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore7);
-    topFrame.areg1 = areg1;
-    topFrame.areg2 = areg2;
-    topFrame.areg3 = areg3;
-    topFrame.areg4 = areg4;
-    topFrame.areg5 = areg5;
-    topFrame.areg6 = areg6;
-    topFrame.areg7 = areg7;
+    ChoicePointFrame topFrame = push(engine, next, 7);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
+    a[b + 1] = areg2;
+    a[b + 2] = areg3;
+    a[b + 3] = areg4;
+    a[b + 4] = areg5;
+    a[b + 5] = areg6;
+    a[b + 6] = areg7;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, Term areg1, Term areg2, Term areg3, Term areg4, Term areg5, Term areg6, Term areg7, Term areg8, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restore8);
-    topFrame.areg1 = areg1;
-    topFrame.areg2 = areg2;
-    topFrame.areg3 = areg3;
-    topFrame.areg4 = areg4;
-    topFrame.areg5 = areg5;
-    topFrame.areg6 = areg6;
-    topFrame.areg7 = areg7;
-    topFrame.areg8 = areg8;
+    ChoicePointFrame topFrame = push(engine, next, 8);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = areg1;
+    a[b + 1] = areg2;
+    a[b + 2] = areg3;
+    a[b + 3] = areg4;
+    a[b + 4] = areg5;
+    a[b + 5] = areg6;
+    a[b + 6] = areg7;
+    a[b + 7] = areg8;
     return topFrame;
   }
 
   ChoicePointFrame push(Prolog engine, int arity, Operation next) {
-    ChoicePointFrame topFrame = push(engine, next, ChoicePointStack::restoreA);
-    topFrame.areg1 = engine.areg1;
-    topFrame.areg2 = engine.areg2;
-    topFrame.areg3 = engine.areg3;
-    topFrame.areg4 = engine.areg4;
-    topFrame.areg5 = engine.areg5;
-    topFrame.areg6 = engine.areg6;
-    topFrame.areg7 = engine.areg7;
-    topFrame.areg8 = engine.areg8;
-
-    topFrame.aregs = new Term[arity-8];
-    System.arraycopy(engine.aregs, 0, topFrame.aregs, 0, topFrame.aregs.length);
+    ChoicePointFrame topFrame = push(engine, next, arity);
+    Term[] a = args;
+    int b = topFrame.argBase;
+    a[b] = engine.areg1;
+    a[b + 1] = engine.areg2;
+    a[b + 2] = engine.areg3;
+    a[b + 3] = engine.areg4;
+    a[b + 4] = engine.areg5;
+    a[b + 5] = engine.areg6;
+    a[b + 6] = engine.areg7;
+    a[b + 7] = engine.areg8;
+    System.arraycopy(engine.aregs, 0, a, b + 8, arity - 8);
     return topFrame;
   }
 
-  static void restore0(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-  }
-
-  private static void restore1(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-  }
-
-  private static void restore2(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-    engine.areg2 = frame.areg2;
-  }
-
-  private static void restore3(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-    engine.areg2 = frame.areg2;
-    engine.areg3 = frame.areg3;
-  }
-
-  private static void restore4(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-    engine.areg2 = frame.areg2;
-    engine.areg3 = frame.areg3;
-    engine.areg4 = frame.areg4;
-  }
-
-  private static void restore5(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-    engine.areg2 = frame.areg2;
-    engine.areg3 = frame.areg3;
-    engine.areg4 = frame.areg4;
-    engine.areg5 = frame.areg5;
-  }
-
-  private static void restore6(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-    engine.areg2 = frame.areg2;
-    engine.areg3 = frame.areg3;
-    engine.areg4 = frame.areg4;
-    engine.areg5 = frame.areg5;
-    engine.areg6 = frame.areg6;
-  }
-
-  private static void restore7(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-    engine.areg2 = frame.areg2;
-    engine.areg3 = frame.areg3;
-    engine.areg4 = frame.areg4;
-    engine.areg5 = frame.areg5;
-    engine.areg6 = frame.areg6;
-    engine.areg7 = frame.areg7;
-  }
-
-  private static void restore8(ChoicePointFrame frame, Prolog engine){
-    engine.cont = frame.cont;
-    engine.areg1 = frame.areg1;
-    engine.areg2 = frame.areg2;
-    engine.areg3 = frame.areg3;
-    engine.areg4 = frame.areg4;
-    engine.areg5 = frame.areg5;
-    engine.areg6 = frame.areg6;
-    engine.areg7 = frame.areg7;
-    engine.areg8 = frame.areg8;
-  }
-
-  private static void restoreA(ChoicePointFrame frame, Prolog engine){
-    restore8(frame, engine);
-    System.arraycopy(frame.aregs, 0, engine.aregs, 0, frame.aregs.length);
+  /**
+   * Restores the argument registers and continuation goal register from the
+   * top frame. Each case falls through to the registers below it, so a frame
+   * of arity <code>n</code> loads exactly <code>n</code> registers.
+   */
+  @SuppressWarnings("fallthrough")
+  void restore(Prolog engine) {
+    ChoicePointFrame f = top;
+    Term[] a = args;
+    int b = f.argBase;
+    engine.cont = f.cont;
+    switch (f.arity) {
+    default:
+      System.arraycopy(a, b + 8, engine.aregs, 0, f.arity - 8);
+    case 8: engine.areg8 = a[b + 7];
+    case 7: engine.areg7 = a[b + 6];
+    case 6: engine.areg6 = a[b + 5];
+    case 5: engine.areg5 = a[b + 4];
+    case 4: engine.areg4 = a[b + 3];
+    case 3: engine.areg3 = a[b + 2];
+    case 2: engine.areg2 = a[b + 1];
+    case 1: engine.areg1 = a[b];
+    case 0:
+    }
   }
 
   /** Discards all choice points after the value of <code>i</code>. */
   public void cut(int i) {
     if (level > i) {
-      Arrays.fill(frames, i+1, level+1, null);
+      if (level > peak) peak = level;
+      clear(i + 1, level);
       level = i;
       top = frames[level];
     }
@@ -247,17 +253,55 @@ public final class ChoicePointStack {
 
   /** Discards the top of choice points. */
   void delete() {
+    if (level > peak) peak = level;
+    clear(level, level);
     level--;
     top = frames[level];
     trail.timeStamp = top.timeStamp;
   }
 
-  /** Discards all choice points. */
+  /**
+   * Clears the continuations and saved arguments of the discarded frames
+   * <code>from</code> to <code>to</code>, so that they do not keep terms
+   * alive while the frames wait to be reused.
+   */
+  private void clear(int from, int to) {
+    ChoicePointFrame last = frames[to];
+    Arrays.fill(args, frames[from].argBase, last.argBase + last.arity, null);
+    for (int j = from; j <= to; j++) {
+      ChoicePointFrame f = frames[j];
+      f.cont = null;
+      f.bp = null;
+      f.ownerPredicate = null;
+    }
+  }
+
+  /**
+   * Discards all choice points.
+   * <p>
+   * Frames and saved arguments are kept for reuse; their references are
+   * cleared here, as they are when frames are cut or deleted. Storage grown
+   * beyond the retained size by a deep query is released.
+   */
   void init() {
     top = null;
     level = -1;
+    peak = -1;
     trail.timeStamp = Long.MIN_VALUE;
-    Arrays.fill(frames, null);
+    if (frames.length > retained)
+      frames = Arrays.copyOf(frames, retained);
+    capacity = Math.min(frames.length, maxFrames);
+    for (ChoicePointFrame f : frames) {
+      if (f == null)
+        break;
+      f.cont = null;
+      f.bp = null;
+      f.ownerPredicate = null;
+    }
+    if (args.length > retained << 2)
+      args = new Term[retained << 2];
+    else
+      Arrays.fill(args, null);
   }
 
   /** Get the current top of the stack. */
@@ -265,10 +309,46 @@ public final class ChoicePointStack {
     return level;
   }
 
+  /** Get the next clause of the choice point at level <code>i</code>. */
+  public Operation getAlternative(int i) {
+    return frames[i].bp;
+  }
+
+  /** Replace the next clause of the choice point at level <code>i</code>. */
+  public void setAlternative(int i, Operation bp) {
+    frames[i].bp = bp;
+  }
+
+  /**
+   * Get the deepest level the stack has reached since the last
+   * {@link #init()}.
+   * <p>
+   * The mark is only updated when choice points are discarded, so pushing
+   * stays as cheap as before.
+   */
+  public int peak() {
+    return Math.max(peak, level);
+  }
+
   /** Get the maximum number of choice points permitted on the stack. */
   public int max() {
-    // Since the stack is represented as a linked list, there is no limit.
-    return Integer.MAX_VALUE;
+    return max;
+  }
+
+  /**
+   * Limit the number of choice points. Pushing beyond the limit raises
+   * <code>resource_error(choice_points)</code>. The frame pushed by
+   * {@link Prolog#init} to end the execution is not counted.
+   */
+  void setMax(int max) {
+    this.max = max;
+    maxFrames = max == Integer.MAX_VALUE ? max : max + 1;
+    capacity = Math.min(frames.length, maxFrames);
+  }
+
+  /** Set the number of frames kept allocated from one execution to the next. */
+  void setRetained(int frames) {
+    retained = frames;
   }
 
 //  /** Shows the contents of this <code>CPFStack</code>. */
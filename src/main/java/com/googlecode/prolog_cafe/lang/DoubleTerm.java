@@ -134,7 +134,7 @@ public class DoubleTerm extends NumberTerm {
 
     public NumberTerm atan() { return new DoubleTerm(Math.atan(this.val)); }
 
-    public NumberTerm ceil() { return new IntegerTerm((int) Math.ceil(this.val)); }
+    public NumberTerm ceil() { return IntegerTerm.valueOf((int) Math.ceil(this.val)); }
 
     public NumberTerm cos() { return new DoubleTerm(Math.cos(this.val)); }
 
@@ -158,7 +158,7 @@ public class DoubleTerm extends NumberTerm {
 	return new DoubleTerm(this.val - Math.signum(this.val) * Math.floor(Math.abs(this.val)));
     }
 
-    public NumberTerm floor() { return new IntegerTerm((int) Math.floor(this.val)); }
+    public NumberTerm floor() { return IntegerTerm.valueOf((int) Math.floor(this.val)); }
 
     /** 
      * Throws a <code>type_error</code>.
@@ -209,7 +209,7 @@ public class DoubleTerm extends NumberTerm {
 
     public NumberTerm rint() { return new DoubleTerm(Math.rint(this.val)); }
 
-    public NumberTerm round() { return new IntegerTerm((int) Math.round(this.val)); }
+    public NumberTerm round() { return IntegerTerm.valueOf((int) Math.round(this.val)); }
 
     /** 
      * Throws a <code>type_error</code>.
@@ -249,9 +249,9 @@ public class DoubleTerm extends NumberTerm {
 
     public NumberTerm truncate() { 
 	if (this.val >= 0)
-	    return new IntegerTerm((int) Math.floor(this.val));
+	    return IntegerTerm.valueOf((int) Math.floor(this.val));
 	else 
-	    return new IntegerTerm((int) (-1 * Math.floor(Math.abs(this.val))));
+	    return IntegerTerm.valueOf((int) (-1 * Math.floor(Math.abs(this.val))));
     }
 
     /** 
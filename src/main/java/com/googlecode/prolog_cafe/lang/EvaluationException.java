@@ -33,7 +33,7 @@ public class EvaluationException extends BuiltinException {
      * <code>evaluation_error(goal,argNo,errorType)</code>.
      */
 	public Term getMessageTerm() {
-		Term[] args = { new JavaObjectTerm(goal), new IntegerTerm(argNo), SymbolTerm.create(errorType) };
+		Term[] args = { new JavaObjectTerm(goal), IntegerTerm.valueOf(argNo), SymbolTerm.create(errorType) };
 		return new ErrorTerm(this, EVALUATION_ERROR, args);
 	}
 
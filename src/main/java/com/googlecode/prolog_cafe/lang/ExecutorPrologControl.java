@@ -0,0 +1,255 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes Prolog on an {@link Executor}, handing out one solution at a time.
+ * <p>
+ * This is a variant of {@link BlockingPrologControl} for short
+ * {@link #call()}/{@link #redo()} iterations. Instead of starting a new thread
+ * for every query, the engine runs as a task of an executor. By default that
+ * is one virtual thread per query on Java 21 and later, and a shared pool of
+ * daemon threads on older releases. Solutions are handed between the caller
+ * and the engine through an atomic state and {@link LockSupport}, without
+ * monitors.
+ *
+ * <pre>
+ * ExecutorPrologControl p = new ExecutorPrologControl(pmc);
+ * Term x = new VariableTerm();
+ * p.setPredicate(Prolog.BUILTIN, "call", new StructureTerm("father", abraham, x));
+ * for (boolean r = p.call(); r; r = p.redo()) {
+ *     System.out.println(x);
+ * }
+ * </pre>
+ * <p>
+ * While a solution is being looked at the engine task stays parked on its
+ * thread, so an executor with a bounded number of threads runs at most that
+ * many open queries. Call {@link #stop()} to release a query that is not
+ * iterated to the end. A control runs one query at a time and is not meant to
+ * be shared by several callers.
+ */
+public class ExecutorPrologControl extends PrologControl {
+  private static final int IDLE = 0;
+  private static final int RUNNING = 1;
+  private static final int SOLUTION = 2;
+  private static final int FAILED = 3;
+  private static final int ERROR = 4;
+  private static final int STOPPING = 5;
+
+  private static volatile Executor defaultExecutor;
+
+  private final Executor executor;
+  private final AtomicInteger state = new AtomicInteger(IDLE);
+  /** Thread waiting in {@link #call()}, {@link #redo()} or {@link #stop()}. */
+  private volatile Thread caller;
+  /** Thread running the engine, while a query is open. */
+  private volatile Thread worker;
+  private volatile RuntimeException error;
+
+  /** Constructs a control running on the {@link #defaultExecutor()}. */
+  public ExecutorPrologControl() {
+    this(defaultExecutor());
+  }
+
+  /** Constructs a control running on the given executor. */
+  public ExecutorPrologControl(Executor executor) {
+    this.executor = executor;
+  }
+
+  /** Constructs a control restored from a machine copy, running on the {@link #defaultExecutor()}. */
+  public ExecutorPrologControl(PrologMachineCopy pmc) {
+    this(pmc, defaultExecutor());
+  }
+
+  /** Constructs a control restored from a machine copy, running on the given executor. */
+  public ExecutorPrologControl(PrologMachineCopy pmc, Executor executor) {
+    super(pmc);
+    this.executor = executor;
+  }
+
+  /**
+   * Get the executor used when none is given: a virtual thread per task where
+   * the runtime supports them, otherwise a cached pool of daemon threads.
+   *
+   * @return the shared default executor.
+   */
+  public static Executor defaultExecutor() {
+    Executor e = defaultExecutor;
+    if (e == null) {
+      synchronized (ExecutorPrologControl.class) {
+        e = defaultExecutor;
+        if (e == null)
+          defaultExecutor = e = newDefaultExecutor();
+      }
+    }
+    return e;
+  }
+
+  private static Executor newDefaultExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Virtual threads need Java 21.
+    }
+    final AtomicInteger count = new AtomicInteger();
+    return Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Prolog-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Find the first solution of a goal and stop.
+   *
+   * @return true if the goal has a solution.
+   */
+  public boolean execute(String pkg, String functor, Term... args) {
+    setPredicate(pkg, functor, args);
+    try {
+      return call();
+    } finally {
+      stop();
+    }
+  }
+
+  /**
+   * Start the goal set by {@code setPredicate} and wait for its first solution.
+   * A query still open on this control is stopped first.
+   *
+   * @return true if a solution was found; false if the goal failed.
+   * @throws PrologException the goal raised an uncaught error.
+   */
+  public boolean call() {
+    stop();
+    error = null;
+    caller = Thread.currentThread();
+    state.set(RUNNING);
+    try {
+      executor.execute(this::run);
+    } catch (RuntimeException e) {
+      state.set(IDLE);
+      throw e;
+    }
+    return await();
+  }
+
+  /**
+   * Resume the goal and wait for its next solution.
+   *
+   * @return true if another solution was found; false if there are no more.
+   * @throws PrologException the goal raised an uncaught error.
+   */
+  public boolean redo() {
+    caller = Thread.currentThread();
+    if (!state.compareAndSet(SOLUTION, RUNNING))
+      return false;
+    LockSupport.unpark(worker);
+    return await();
+  }
+
+  /**
+   * Stop the open query, if any, and wait until its engine task has ended.
+   * A query busy searching is cancelled at its next poll; one whose task has
+   * not started yet is not run at all.
+   */
+  public void stop() {
+    caller = Thread.currentThread();
+    for (;;) {
+      int s = state.get();
+      if (s == IDLE)
+        return;
+      if (s == FAILED || s == ERROR) {
+        if (state.compareAndSet(s, IDLE))
+          return;
+      } else if (s == STOPPING || state.compareAndSet(s, STOPPING)) {
+        break;
+      }
+    }
+    cancel();
+    LockSupport.unpark(worker);
+    boolean interrupted = false;
+    while (state.get() != IDLE) {
+      LockSupport.park(this);
+      if (Thread.interrupted())
+        interrupted = true;
+    }
+    engine.cancelled = false; // the query is over, do not cancel the next one
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  /** Waits while the engine is searching, and reports what it found. */
+  private boolean await() {
+    int s;
+    while ((s = state.get()) == RUNNING) {
+      LockSupport.park(this);
+      if (Thread.interrupted()) {
+        stop();
+        throw new JavaInterruptedException(new InterruptedException());
+      }
+    }
+    if (s == SOLUTION)
+      return true;
+    if (s == ERROR) {
+      RuntimeException e = error;
+      error = null;
+      state.compareAndSet(ERROR, IDLE);
+      throw e;
+    }
+    return false;
+  }
+
+  /** Runs the engine as a task of the executor. */
+  private void run() {
+    worker = Thread.currentThread();
+    int end = FAILED;
+    try {
+      if (state.get() != STOPPING) // stopped before the task started
+        executePredicate();
+    } catch (RuntimeException e) {
+      if (state.get() != STOPPING) {
+        error = e;
+        end = ERROR;
+      }
+    } finally {
+      worker = null;
+      if (!state.compareAndSet(RUNNING, end))
+        state.set(IDLE); // stopped
+      LockSupport.unpark(caller);
+    }
+  }
+
+  /** Hands a solution to the caller and parks until it asks for the next one. */
+  @Override
+  protected void success() {
+    if (!state.compareAndSet(RUNNING, SOLUTION))
+      throw new StopEngineException("stopped");
+    LockSupport.unpark(caller);
+    int s;
+    while ((s = state.get()) == SOLUTION)
+      LockSupport.park(this);
+    if (s != RUNNING)
+      throw new StopEngineException("stopped");
+  }
+
+  @Override
+  protected void fail() {
+  }
+
+  /** @return true once the open query has been stopped. */
+  @Override
+  public boolean isEngineStopped() {
+    return state.get() == STOPPING;
+  }
+}
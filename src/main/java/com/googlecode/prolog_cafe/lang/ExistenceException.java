@@ -46,7 +46,7 @@ public class ExistenceException extends BuiltinException {
     public Term getMessageTerm() {
 	Term[] args = {
 	    new JavaObjectTerm(goal), 
-	    new IntegerTerm(argNo),
+	    IntegerTerm.valueOf(argNo),
 	    SymbolTerm.create(objType),
 	    culprit,
 	    SymbolTerm.create(message)};
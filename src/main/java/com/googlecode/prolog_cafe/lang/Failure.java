@@ -11,7 +11,8 @@ public class Failure implements Operation {
     private Failure() {}
 
     public Operation exec(Prolog engine) {
-	engine.control.fail();
+	if (!engine.control.suspendOnSuccess)
+	    engine.control.fail();
 	engine.halt = 1; // halt(0)
 	return null;
     }
@@ -1,5 +1,6 @@
 package com.googlecode.prolog_cafe.lang;
 import java.util.HashMap;
+import java.util.Map;
 /**
  * <code>Hashtable&lt;Term,Term&gt;</code>.<br>
  * <font color="red">This document is under construction.</font>
@@ -9,6 +10,13 @@ import java.util.HashMap;
  * @version 1.0
  */
 public class HashtableOfTerm extends HashMap<Term,Term> {
+    /**
+     * Set on the tables of a {@link PrologMachineCopy}, which engines restored
+     * from it read in place and copy before writing, see
+     * {@link Prolog#getHash(HashtableOfTerm, boolean)}.
+     */
+    transient boolean shared;
+
     public HashtableOfTerm() { 
 	super(); 
     }
@@ -18,4 +26,7 @@ public class HashtableOfTerm extends HashMap<Term,Term> {
     public HashtableOfTerm(int initialCapacity, float loadFactor) {
 	super(initialCapacity, loadFactor);
     }
+    public HashtableOfTerm(Map<? extends Term,? extends Term> m) {
+	super(m);
+    }
 }
\ No newline at end of file
@@ -49,7 +49,7 @@ public class IllegalDomainException extends BuiltinException {
     public Term getMessageTerm() {
 	Term[] args = {
 	    new JavaObjectTerm(goal), 
-	    new IntegerTerm(argNo), 
+	    IntegerTerm.valueOf(argNo), 
 	    SymbolTerm.create(domain),
 	    culprit};
 	return new ErrorTerm(this, DOMAIN_ERROR, args);
@@ -46,7 +46,7 @@ public class IllegalTypeException extends BuiltinException {
     public Term getMessageTerm() {
 		Term[] args = {
 			(goal==null)?SymbolTerm.create("<Goal unknown>"):new JavaObjectTerm(goal), 
-		    new IntegerTerm(argNo),
+		    IntegerTerm.valueOf(argNo),
 		    SymbolTerm.create(type),
 		    culprit};
 		return new ErrorTerm(this, TYPE_ERROR, args);
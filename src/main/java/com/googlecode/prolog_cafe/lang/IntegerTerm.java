@@ -4,7 +4,7 @@ package com.googlecode.prolog_cafe.lang;
  * The class <code>IntegerTerm</code> wraps a value of primitive type 
  * <code>int</code>. 
  * <pre>
- *   Term t = new IntegerTerm(100);
+ *   Term t = IntegerTerm.valueOf(100);
  *   int i = ((IntegerTerm)t).intValue();
  * </pre>
  *
@@ -16,9 +16,33 @@ public class IntegerTerm extends NumberTerm {
     /** Holds an <code>int</code> value that this <code>IntegerTerm</code> represents. */
     protected final int val;
 
-    /** Constructs a new Prolog integer that represents the specified <code>int</code> value. */
+    /** Smallest value kept in the {@link #valueOf} cache. */
+    private static final int CACHE_LOW = -128;
+    /** Largest value kept in the {@link #valueOf} cache. */
+    private static final int CACHE_HIGH = 1024;
+    private static final IntegerTerm[] CACHE = new IntegerTerm[CACHE_HIGH - CACHE_LOW + 1];
+    static {
+	for (int i = 0; i < CACHE.length; i++)
+	    CACHE[i] = new IntegerTerm(CACHE_LOW + i);
+    }
+
+    /**
+     * Constructs a new Prolog integer that represents the specified <code>int</code> value.
+     * Prefer {@link #valueOf(int)}, which does not allocate for small values.
+     */
     public IntegerTerm(int i) {	val = i; }
 
+    /**
+     * Returns a Prolog integer that represents the specified <code>int</code> value.
+     * Values from -128 to 1024, which cover most counters, lengths, arities
+     * and character codes, are shared instances from a cache.
+     */
+    public static IntegerTerm valueOf(int i) {
+	if (i >= CACHE_LOW && i <= CACHE_HIGH)
+	    return CACHE[i - CACHE_LOW];
+	return new IntegerTerm(i);
+    }
+
     /**
      * Returns the value of <code>val</code>.
      * @see #val
@@ -128,12 +152,12 @@ public class IntegerTerm extends NumberTerm {
 	return BEFORE;
     }
 
-    public NumberTerm abs() { return new IntegerTerm(Math.abs(this.val)); }
+    public NumberTerm abs() { return this.val >= 0 ? this : valueOf(- this.val); }
 
     public NumberTerm acos() { return new DoubleTerm(Math.acos(this.doubleValue())); }
 
     public NumberTerm add(NumberTerm t) {
-	    return (t instanceof DoubleTerm) ? t.add(this) : new IntegerTerm(this.val + t.intValue());
+	    return (t instanceof DoubleTerm) ? t.add(this) : valueOf(this.val + t.intValue());
     }
 
     /** 
@@ -143,7 +167,7 @@ public class IntegerTerm extends NumberTerm {
     public NumberTerm and(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val & t.intValue());
+	return valueOf(this.val & t.intValue());
     }
 
     public NumberTerm asin() { return new DoubleTerm(Math.asin(this.doubleValue())); }
@@ -183,7 +207,7 @@ public class IntegerTerm extends NumberTerm {
 	    throw new IllegalTypeException("integer", t);
 	if (t.intValue() == 0)
 	    throw new EvaluationException("zero_divisor");
-	return new IntegerTerm((int) (this.val / t.intValue()));
+	return valueOf((int) (this.val / t.intValue()));
     }
 
     /** 
@@ -198,13 +222,13 @@ public class IntegerTerm extends NumberTerm {
     public NumberTerm max(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    return t.max(this);
-	return new IntegerTerm(Math.max(this.val, t.intValue()));
+	return valueOf(Math.max(this.val, t.intValue()));
     }
 
     public NumberTerm min(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    return t.min(this);
-	return new IntegerTerm(Math.min(this.val, t.intValue()));
+	return valueOf(Math.min(this.val, t.intValue()));
     }
 
     /** 
@@ -218,7 +242,7 @@ public class IntegerTerm extends NumberTerm {
 	    throw new IllegalTypeException("integer", t);
 	if (t.intValue() == 0)
 	    throw new EvaluationException("zero_divisor");
-	return new IntegerTerm(this.val % t.intValue());
+	return valueOf(this.val % t.intValue());
     }
 
     public NumberTerm multiply(NumberTerm t) {
@@ -227,12 +251,12 @@ public class IntegerTerm extends NumberTerm {
 	if ((t instanceof LongTerm)){
 		return t.multiply(this);
 	}
-	return new IntegerTerm(this.val * t.intValue());
+	return valueOf(this.val * t.intValue());
     }
 
-    public NumberTerm negate() { return new IntegerTerm(- this.val); }
+    public NumberTerm negate() { return valueOf(- this.val); }
 
-    public NumberTerm not() { return new IntegerTerm(~ this.val); }
+    public NumberTerm not() { return valueOf(~ this.val); }
 
     /** 
      * @exception IllegalTypeException if the given argument
@@ -241,7 +265,7 @@ public class IntegerTerm extends NumberTerm {
     public NumberTerm or(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val | t.intValue());
+	return valueOf(this.val | t.intValue());
     }
 
     public NumberTerm pow(NumberTerm t) { return new DoubleTerm(Math.pow(this.doubleValue(), t.doubleValue())); }
@@ -257,7 +281,7 @@ public class IntegerTerm extends NumberTerm {
     public NumberTerm shiftLeft(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val << t.intValue());
+	return valueOf(this.val << t.intValue());
     }
 
     /** 
@@ -267,10 +291,10 @@ public class IntegerTerm extends NumberTerm {
     public NumberTerm shiftRight(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val >> t.intValue());
+	return valueOf(this.val >> t.intValue());
     }
 
-    public NumberTerm signum() {return new IntegerTerm((int) Math.signum((double) this.val)); }
+    public NumberTerm signum() {return valueOf(Integer.signum(this.val)); }
 
     public NumberTerm sin() { return new DoubleTerm(Math.sin(this.doubleValue())); }
 
@@ -287,7 +311,7 @@ public class IntegerTerm extends NumberTerm {
     public NumberTerm subtract(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    return new DoubleTerm(this.doubleValue() - t.doubleValue());
-	return new IntegerTerm(this.val - t.intValue());
+	return valueOf(this.val - t.intValue());
     }
 
     public NumberTerm tan() { return new DoubleTerm(Math.tan(this.doubleValue())); }
@@ -307,6 +331,6 @@ public class IntegerTerm extends NumberTerm {
     public NumberTerm xor(NumberTerm t) {
 	if ((t instanceof DoubleTerm))
 	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val ^ t.intValue());
+	return valueOf(this.val ^ t.intValue());
     }
 }
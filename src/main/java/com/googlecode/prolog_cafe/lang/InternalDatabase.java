@@ -1,9 +1,14 @@
 package com.googlecode.prolog_cafe.lang;
+import java.util.Arrays;
 import java.util.IdentityHashMap;
-import java.util.LinkedList;
 
 /**
  * Internal database for dynamic predicates.<br>
+ * Entries are kept in pages of <code>1024</code> slots, allocated as they are
+ * first used. A database restored from a {@link PrologMachineCopy} shares the
+ * pages of the copy and only copies a page, or the list of free indices, the
+ * first time it writes to it, so restoring costs next to nothing for queries
+ * that never assert or retract.
  *
  * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
@@ -12,15 +17,24 @@ import java.util.LinkedList;
 public class InternalDatabase {
     protected static final int DEFAULT_SIZE = 100000;
 
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
     /** Maximum size of enties. Initial size is <code>100000</code>. */
     protected int maxContents;
 
-    /** An array of <code>Term</code> entries. */
-    protected Term[] buffer;
+    /** Pages of <code>Term</code> entries; null until first used. */
+    private Term[][] pages;
+    /** Pages written by this database; the others are shared with its source. */
+    private boolean[] owned;
 
     /* For GC */
-    /** A list of reusable entry indices. */
-    protected final LinkedList<Integer> reusableIndices;
+    /** A stack of reusable entry indices. */
+    private int[] reusableIndices;
+    private int reusableCount;
+    /** Set while {@link #reusableIndices} is shared with the source database. */
+    private boolean reusableShared;
 
     /** the top index of this <code>InternalDatabase</code>. */
     protected int top;
@@ -33,62 +47,109 @@ public class InternalDatabase {
     /** Constructs a new internal dababase with the given size. */
     public InternalDatabase(int n) {
 	maxContents = n;
-	buffer = new Term[Math.min(maxContents, DEFAULT_SIZE)];
-	reusableIndices = new LinkedList<Integer>();
+	pages = new Term[16][];
+	owned = new boolean[pages.length];
+	reusableIndices = new int[16];
 	top = -1;
     }
 
+    /**
+     * Copies <code>src</code>. A deep copy copies every entry; otherwise the
+     * pages of <code>src</code> are shared until written, so <code>src</code>
+     * itself must not be modified afterwards.
+     */
     InternalDatabase(InternalDatabase src, boolean deepCopy, IdentityHashMap<VariableTerm,VariableTerm> copyHash) {
       maxContents = src.maxContents;
-      buffer = new Term[src.buffer.length];
-      reusableIndices = new LinkedList<Integer>(src.reusableIndices);
       top = src.top;
+      reusableCount = src.reusableCount;
+      owned = new boolean[src.pages.length];
 
       if (deepCopy) {
+        pages = new Term[src.pages.length][];
         for (int i = 0; i <= top; i++) {
-          Term s = src.buffer[i];
+          Term s = src.get(i);
           if (s != null) {
-            buffer[i] = s.copy(copyHash);
+            writablePage(i >>> PAGE_BITS)[i & PAGE_MASK] = s.copy(copyHash);
           }
         }
-      } else if (0 <= top) {
-        System.arraycopy(src.buffer, 0, buffer, 0, top + 1);
+        reusableIndices = Arrays.copyOf(src.reusableIndices, src.reusableIndices.length);
+      } else {
+        pages = src.pages.clone();
+        reusableIndices = src.reusableIndices;
+        reusableShared = true;
       }
     }
 
+    /** Constructs a database read by {@link MachineCopyFormat}, to be filled with {@link #set(int, Term)}. */
+    InternalDatabase(int maxContents, int top, int[] reusable) {
+	this.maxContents = maxContents;
+	this.top = top;
+	pages = new Term[Math.max(16, (top >>> PAGE_BITS) + 1)][];
+	owned = new boolean[pages.length];
+	reusableIndices = reusable.length > 0 ? reusable : new int[16];
+	reusableCount = reusable.length;
+    }
+
+    /** Stores <code>t</code> at index <code>i</code>. */
+    void set(int i, Term t) {
+	writablePage(i >>> PAGE_BITS)[i & PAGE_MASK] = t;
+    }
+
+    /** Returns the reusable indices, in the order they are reused from the end. */
+    int[] reusableIndices() {
+	return Arrays.copyOf(reusableIndices, reusableCount);
+    }
+
+    /** Returns page <code>p</code>, allocating it or copying it from the source first. */
+    private Term[] writablePage(int p) {
+	if (p >= pages.length) {
+	    int n = Math.max(p + 1, pages.length << 1);
+	    pages = Arrays.copyOf(pages, n);
+	    owned = Arrays.copyOf(owned, n);
+	}
+	Term[] page = pages[p];
+	if (page == null) {
+	    page = pages[p] = new Term[PAGE_SIZE];
+	    owned[p] = true;
+	} else if (!owned[p]) {
+	    page = pages[p] = page.clone();
+	    owned[p] = true;
+	}
+	return page;
+    }
+
     /** Inserts an entry to this <code>InternalDatabase</code>. */
     public int insert(Term t) {
-	try {
-	    if (reusableIndices.isEmpty()) {
-		buffer[++top] = t;
-		return top;
-	    } else {
-		int i = reusableIndices.remove();
-		buffer[i] = t;
-		return i;
-	    }
-	} catch (ArrayIndexOutOfBoundsException e) {
-	    if (maxContents <= buffer.length)
-	      throw new SystemException("internal database capacity reached");
-	    int len = buffer.length;
-	    Term[] new_buffer = new Term[Math.min(len+10000, maxContents)];
-		System.arraycopy(buffer, 0, new_buffer, 0, len);
-	    buffer = new_buffer;
-	    buffer[top] = t;
-	    return top;
+	int i;
+	if (reusableCount > 0) {
+	    i = reusableIndices[--reusableCount];
+	} else {
+	    if (top + 1 >= maxContents)
+		throw new SystemException("internal database capacity reached");
+	    i = ++top;
 	}
+	writablePage(i >>> PAGE_BITS)[i & PAGE_MASK] = t;
+	return i;
     }
 
     /** Returns an entry with the given index from this <code>InternalDatabase</code>. */
     public Term get(int i) {
-	return buffer[i];
+	int p = i >>> PAGE_BITS;
+	if (p >= pages.length || pages[p] == null)
+	    return null;
+	return pages[p][i & PAGE_MASK];
     }
 
     /** Erases an entry with the given index from this <code>InternalDatabase</code>. */
     public Term erase(int i) {
-	Term t = buffer[i];
-	buffer[i] = null;
-	reusableIndices.add(i);
+	Term[] page = writablePage(i >>> PAGE_BITS);
+	Term t = page[i & PAGE_MASK];
+	page[i & PAGE_MASK] = null;
+	if (reusableShared || reusableCount == reusableIndices.length) {
+	    reusableIndices = Arrays.copyOf(reusableIndices, Math.max(16, reusableIndices.length << 1));
+	    reusableShared = false;
+	}
+	reusableIndices[reusableCount++] = i;
 	return t;
     }
 
@@ -101,10 +162,10 @@ public class InternalDatabase {
 //    public void show() {
 //	if (empty())
 //	    System.out.println("{internal database is empty!}");
-//	System.out.println("{reusable indices: " + reusableIndices.toString() + "}");
+//	System.out.println("{reusable indices: " + Arrays.toString(Arrays.copyOf(reusableIndices, reusableCount)) + "}");
 //	for (int i=0; i<=top; i++) {
 //	    System.out.print("internal database[" + i + "]: ");
-//	    System.out.println(buffer[i]);
+//	    System.out.println(get(i));
 //	}
 //    }
 }
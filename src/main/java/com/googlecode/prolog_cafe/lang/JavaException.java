@@ -38,7 +38,7 @@ public class JavaException extends BuiltinException {
     public Term getMessageTerm() {
 		Term[] args = {
 			(goal==null)?SymbolTerm.create("<Goal unknown>"):new JavaObjectTerm(goal),
-		    new IntegerTerm(argNo),
+		    IntegerTerm.valueOf(argNo),
 		    new JavaObjectTerm(e)};
 		return new ErrorTerm(this, JAVA_ERROR, args);
     }
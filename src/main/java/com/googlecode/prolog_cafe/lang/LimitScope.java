@@ -0,0 +1,118 @@
+package com.googlecode.prolog_cafe.lang;
+/**
+ * An inference or time limit applied to a part of a query.<br>
+ * This <code>LimitScope</code> class is used to implement
+ * <code>call_with_inference_limit/3</code> and <code>call_with_time_limit/2</code>.
+ * <p>
+ * Scopes nest: entering one tightens the limits of the engine, and leaving it,
+ * by exit or by backtracking, restores the limits of the enclosing scope.
+ * Backtracking into a goal that has exited re-enters its scope. An inference
+ * limit then allows what was left of it at exit, so inferences spent outside
+ * the goal are not charged to it.
+ */
+public final class LimitScope {
+    private final Prolog engine;
+    private final boolean timed;
+    /** Inference count or deadline, in {@link System#nanoTime()} units, of this scope. */
+    private long stop;
+    /** Inferences this scope had left when its goal last exited. */
+    private long remaining;
+    /** Limits of the enclosing scope. */
+    private long savedStop;
+    private boolean savedRaised;
+    private long savedStopTime;
+    private boolean savedHasStopTime;
+
+    private LimitScope(Prolog _engine, boolean _timed, long _stop) {
+	engine = _engine;
+	timed = _timed;
+	stop = _stop;
+    }
+
+    /** Enters a new scope allowing <code>limit</code> more inferences. */
+    public static LimitScope enterInferenceLimit(Prolog engine, long limit) {
+	long stop = engine.inferences + limit;
+	if (stop < 0) // overflow
+	    stop = Long.MAX_VALUE;
+	LimitScope s = new LimitScope(engine, false, stop);
+	s.enter();
+	return s;
+    }
+
+    /** Enters a new scope ending <code>nanos</code> nanoseconds from now. */
+    public static LimitScope enterTimeLimit(Prolog engine, long nanos) {
+	LimitScope s = new LimitScope(engine, true, System.nanoTime() + nanos);
+	s.enter();
+	return s;
+    }
+
+    private void enter() {
+	save();
+	engine.trail.push(this::restore);
+	apply();
+    }
+
+    /**
+     * Enters this scope again on backtracking into its goal. The enclosing
+     * limits are saved afresh, as an enclosing inference scope may have been
+     * re-entered with a new stop as well.
+     */
+    private void reenter() {
+	if (!timed) {
+	    stop = engine.inferences + remaining;
+	    if (stop < 0) // overflow
+		stop = Long.MAX_VALUE;
+	}
+	save();
+	apply();
+    }
+
+    /** Saves the limits of the enclosing scope. */
+    private void save() {
+	savedStop = engine.scopeStop;
+	savedRaised = engine.scopeLimitRaised;
+	savedStopTime = engine.scopeStopTime;
+	savedHasStopTime = engine.hasScopeStopTime;
+    }
+
+    /** Tightens the limits of the engine to those of this scope. */
+    private void apply() {
+	if (timed) {
+	    if (!engine.hasScopeStopTime || stop - engine.scopeStopTime < 0) {
+		engine.scopeStopTime = stop;
+		engine.hasScopeStopTime = true;
+	    }
+	} else if (stop < engine.scopeStop) {
+	    engine.scopeStop = stop;
+	    engine.scopeLimitRaised = false;
+	}
+	engine.updateCheckAt();
+    }
+
+    /** Restores the limits of the enclosing scope. */
+    private void restore() {
+	engine.scopeStop = savedStop;
+	engine.scopeLimitRaised = savedRaised;
+	engine.scopeStopTime = savedStopTime;
+	engine.hasScopeStopTime = savedHasStopTime;
+	engine.updateCheckAt();
+    }
+
+    /**
+     * Leaves this scope after its goal succeeded.
+     * The scope is entered again on backtracking into the goal.
+     */
+    public void exit() {
+	if (!timed)
+	    remaining = Math.max(stop - engine.inferences, 0);
+	restore();
+	engine.trail.push(this::reenter);
+    }
+
+    /** Returns <code>true</code> if the limit of this scope has been reached. */
+    public boolean isExceeded() {
+	if (timed)
+	    return System.nanoTime() - stop >= 0;
+	return engine.inferences > stop;
+    }
+}
@@ -28,7 +28,7 @@ import com.googlecode.prolog_cafe.lang.Term.TermTreeIterator;
  * public static Term makeList(int n) {
  *   Term t = SymbolTerm.makeSymbol("[]");
  *   for (int i=n; i>0; i--) {
- *     t = new ListTerm(new IntegerTerm(i), t);
+ *     t = new ListTerm(IntegerTerm.valueOf(i), t);
  *   }
  *   return t;
  * }
@@ -293,7 +293,7 @@ public class ListTerm extends Term {
 	    if (2 != arity)
 		return (2 - arity);
 	    SymbolTerm functor = ((StructureTerm)anotherTerm).functor();
-	    if (! SYM_DOT.equals(functor))
+	    if (SYM_DOT != functor)
 		return SYM_DOT.compareTo(functor);
 	}
 	Term[] args = new Term[2];
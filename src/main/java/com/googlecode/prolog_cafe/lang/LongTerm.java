@@ -220,7 +220,7 @@ public class LongTerm extends NumberTerm {
 
 	@Override
 	public NumberTerm signum() {
-		return new IntegerTerm((int) Math.signum((double) this.value));
+		return IntegerTerm.valueOf((int) Math.signum((double) this.value));
 	}
 
 	@Override
@@ -0,0 +1,304 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a {@link PrologMachineCopy}, see
+ * {@link PrologMachineCopy#writeTo(OutputStream)}.
+ * <p>
+ * The data starts with a magic number and version, followed by a table of
+ * every distinct atom and functor, the internal database, and the hash
+ * manager with the hash tables it holds. Those tables include the
+ * per-package tables that map every dynamic predicate to its clause indices.
+ * Terms are written as a tag byte followed by their contents; atoms and
+ * functors refer to the atom table, variables and hash tables to their first
+ * occurrence, so sharing between terms is kept. Big-endian throughout.
+ */
+final class MachineCopyFormat {
+  private static final int MAGIC = 0x50434d43; // "PCMC"
+  private static final int VERSION = 1;
+
+  private static final byte SYMBOL = 0;
+  private static final byte INTEGER = 1;
+  private static final byte LONG = 2;
+  private static final byte DOUBLE = 3;
+  private static final byte NEW_VARIABLE = 4;
+  private static final byte VARIABLE = 5;
+  /** Element count, the elements, then the tail term. */
+  private static final byte LIST = 6;
+  /** Functor index, then the arguments. */
+  private static final byte STRUCTURE = 7;
+  /** Entry count, then the keys and values. */
+  private static final byte NEW_HASH = 8;
+  private static final byte HASH = 9;
+
+  private MachineCopyFormat() {
+  }
+
+  static void write(PrologMachineCopy pmc, OutputStream out) throws IOException {
+    Writer w = new Writer();
+    w.database(pmc.internalDB);
+    w.hash(pmc.hashManager);
+    w.body.flush();
+
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(w.symbols.size());
+    for (SymbolTerm s : w.symbols) {
+      byte[] name = s.name().getBytes(StandardCharsets.UTF_8);
+      data.writeInt(s.arity());
+      data.writeInt(name.length);
+      data.write(name);
+    }
+    w.bytes.writeTo(data);
+    data.flush();
+  }
+
+  static PrologMachineCopy read(ByteBuffer buf, PrologClassLoader pcl) throws IOException {
+    try {
+      if (buf.getInt() != MAGIC)
+        throw new StreamCorruptedException("not a Prolog machine copy");
+      int version = buf.getInt();
+      if (version != VERSION)
+        throw new StreamCorruptedException("unsupported machine copy version " + version);
+      Reader r = new Reader(buf);
+      InternalDatabase db = r.database();
+      HashtableOfTerm hashManager = r.hash();
+      return new PrologMachineCopy(pcl, hashManager, db);
+    } catch (BufferUnderflowException e) {
+      throw new EOFException("truncated Prolog machine copy");
+    } catch (IndexOutOfBoundsException e) {
+      throw new StreamCorruptedException("corrupt Prolog machine copy");
+    }
+  }
+
+  private static final class Writer {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+    final DataOutputStream body = new DataOutputStream(bytes);
+    final List<SymbolTerm> symbols = new ArrayList<SymbolTerm>();
+    final Map<SymbolTerm, Integer> symbolIds = new HashMap<SymbolTerm, Integer>();
+    final IdentityHashMap<VariableTerm, Integer> variables = new IdentityHashMap<VariableTerm, Integer>();
+    final IdentityHashMap<HashtableOfTerm, Integer> hashes = new IdentityHashMap<HashtableOfTerm, Integer>();
+
+    void database(InternalDatabase db) throws IOException {
+      int[] free = db.reusableIndices();
+      body.writeInt(db.maxContents);
+      body.writeInt(db.top);
+      body.writeInt(free.length);
+      for (int i : free)
+        body.writeInt(i);
+      int n = 0;
+      for (int i = 0; i <= db.top; i++) {
+        if (db.get(i) != null)
+          n++;
+      }
+      body.writeInt(n);
+      for (int i = 0; i <= db.top; i++) {
+        Term t = db.get(i);
+        if (t != null) {
+          body.writeInt(i);
+          term(t);
+        }
+      }
+    }
+
+    void hash(HashtableOfTerm h) throws IOException {
+      Integer id = hashes.get(h);
+      if (id != null) {
+        body.writeByte(HASH);
+        body.writeInt(id);
+        return;
+      }
+      hashes.put(h, hashes.size());
+      body.writeByte(NEW_HASH);
+      body.writeInt(h.size());
+      for (Map.Entry<Term, Term> e : h.entrySet()) {
+        term(e.getKey());
+        term(e.getValue());
+      }
+    }
+
+    void term(Term t) throws IOException {
+      t = t.dereference();
+      if (t instanceof SymbolTerm) {
+        body.writeByte(SYMBOL);
+        body.writeInt(symbol((SymbolTerm) t));
+      } else if (t instanceof IntegerTerm) {
+        body.writeByte(INTEGER);
+        body.writeInt(((IntegerTerm) t).intValue());
+      } else if (t instanceof LongTerm) {
+        body.writeByte(LONG);
+        body.writeLong(((LongTerm) t).longValue());
+      } else if (t instanceof DoubleTerm) {
+        body.writeByte(DOUBLE);
+        body.writeDouble(((DoubleTerm) t).doubleValue());
+      } else if (t instanceof VariableTerm) {
+        Integer id = variables.get(t);
+        if (id == null) {
+          variables.put((VariableTerm) t, variables.size());
+          body.writeByte(NEW_VARIABLE);
+        } else {
+          body.writeByte(VARIABLE);
+          body.writeInt(id);
+        }
+      } else if (t instanceof ListTerm) {
+        list((ListTerm) t);
+      } else if (t instanceof StructureTerm) {
+        StructureTerm s = (StructureTerm) t;
+        body.writeByte(STRUCTURE);
+        body.writeInt(symbol(s.functor()));
+        for (Term a : s.args())
+          term(a);
+      } else if (t instanceof JavaObjectTerm
+          && ((JavaObjectTerm) t).object() instanceof HashtableOfTerm) {
+        hash((HashtableOfTerm) ((JavaObjectTerm) t).object());
+      } else {
+        throw new NotSerializableException(t.getClass().getName() + ": " + t);
+      }
+    }
+
+    /** Writes a list without recursing on its tail. */
+    private void list(ListTerm l) throws IOException {
+      int n = 0;
+      Term t = l;
+      while (t instanceof ListTerm) {
+        n++;
+        t = ((ListTerm) t).cdr().dereference();
+      }
+      body.writeByte(LIST);
+      body.writeInt(n);
+      t = l;
+      while (t instanceof ListTerm) {
+        term(((ListTerm) t).car());
+        t = ((ListTerm) t).cdr().dereference();
+      }
+      term(t);
+    }
+
+    private int symbol(SymbolTerm s) {
+      SymbolTerm key = SymbolTerm.intern(s.name(), s.arity());
+      Integer id = symbolIds.get(key);
+      if (id == null) {
+        id = symbols.size();
+        symbols.add(key);
+        symbolIds.put(key, id);
+      }
+      return id;
+    }
+  }
+
+  private static final class Reader {
+    final ByteBuffer buf;
+    final SymbolTerm[] symbols;
+    final List<VariableTerm> variables = new ArrayList<VariableTerm>();
+    final List<HashtableOfTerm> hashes = new ArrayList<HashtableOfTerm>();
+
+    Reader(ByteBuffer buf) throws IOException {
+      this.buf = buf;
+      symbols = new SymbolTerm[count()];
+      for (int i = 0; i < symbols.length; i++) {
+        int arity = buf.getInt();
+        byte[] name = new byte[count()];
+        buf.get(name);
+        symbols[i] = SymbolTerm.intern(new String(name, StandardCharsets.UTF_8), arity);
+      }
+    }
+
+    InternalDatabase database() throws IOException {
+      int max = buf.getInt();
+      int top = buf.getInt();
+      int[] free = new int[count()];
+      for (int i = 0; i < free.length; i++)
+        free[i] = buf.getInt();
+      InternalDatabase db = new InternalDatabase(max, top, free);
+      for (int n = count(); n > 0; n--) {
+        int i = buf.getInt();
+        db.set(i, term());
+      }
+      return db;
+    }
+
+    HashtableOfTerm hash() throws IOException {
+      byte tag = buf.get();
+      if (tag == HASH)
+        return hashes.get(buf.getInt());
+      if (tag != NEW_HASH)
+        throw new StreamCorruptedException("expected hash table, found tag " + tag);
+      int n = count();
+      HashtableOfTerm h = new HashtableOfTerm(Math.max(16, (int) (n / 0.75f) + 1));
+      h.shared = true;
+      hashes.add(h);
+      for (; n > 0; n--) {
+        Term key = term();
+        h.put(key, term());
+      }
+      return h;
+    }
+
+    Term term() throws IOException {
+      byte tag = buf.get();
+      switch (tag) {
+      case SYMBOL:
+        return symbols[buf.getInt()];
+      case INTEGER:
+        return IntegerTerm.valueOf(buf.getInt());
+      case LONG:
+        return new LongTerm(buf.getLong());
+      case DOUBLE:
+        return new DoubleTerm(buf.getDouble());
+      case NEW_VARIABLE: {
+        VariableTerm v = new VariableTerm();
+        variables.add(v);
+        return v;
+      }
+      case VARIABLE:
+        return variables.get(buf.getInt());
+      case LIST: {
+        Term[] elems = new Term[count()];
+        for (int i = 0; i < elems.length; i++)
+          elems[i] = term();
+        Term t = term();
+        for (int i = elems.length - 1; i >= 0; i--)
+          t = new ListTerm(elems[i], t);
+        return t;
+      }
+      case STRUCTURE: {
+        SymbolTerm f = symbols[buf.getInt()];
+        Term[] args = new Term[f.arity()];
+        for (int i = 0; i < args.length; i++)
+          args[i] = term();
+        return new StructureTerm(f, args);
+      }
+      case NEW_HASH:
+      case HASH:
+        buf.position(buf.position() - 1);
+        return new JavaObjectTerm(hash());
+      default:
+        throw new StreamCorruptedException("unknown term tag " + tag);
+      }
+    }
+
+    /** Reads a count, checking it against the bytes left so corrupt data fails fast. */
+    private int count() throws StreamCorruptedException {
+      int n = buf.getInt();
+      if (n < 0 || n > buf.remaining())
+        throw new StreamCorruptedException("corrupt Prolog machine copy");
+      return n;
+    }
+  }
+}
@@ -27,7 +27,7 @@ public class PInstantiationException extends BuiltinException {
      * <code>instantiation_error(goal,argNo)</code>.
      */
     public Term getMessageTerm() {
-	Term[] args = {new JavaObjectTerm(goal), new IntegerTerm(argNo)};
+	Term[] args = {new JavaObjectTerm(goal), IntegerTerm.valueOf(argNo)};
 	return new ErrorTerm(this, INSTANTIATION_ERROR, args);
     }
 
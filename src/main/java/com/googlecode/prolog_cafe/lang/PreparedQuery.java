@@ -0,0 +1,107 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+
+/**
+ * A predicate resolved once, ready to be called with new arguments.
+ * <p>
+ * {@link PrologClassLoader#predicate(String, String, Term...)} looks the
+ * predicate class up by name and instantiates it reflectively on every call.
+ * A prepared query holds a method handle to the constructor instead, so
+ * starting the goal is a direct constructor call:
+ * <pre>
+ * PreparedQuery route = pcl.prepare("user", "route", 3);
+ * ...
+ * Term[] r = ctl.once(route, from, to, new VariableTerm());
+ * </pre>
+ * The arguments also serve as the result template, as with
+ * {@link BufferingPrologControl#once(String, String, Term...)}. A prepared
+ * query is immutable and may be shared by all interpreters using the same
+ * {@link PrologClassLoader}, such as those restored from one
+ * {@link PrologMachineCopy}.
+ */
+public final class PreparedQuery {
+  private final String pkg;
+  private final String functor;
+  private final int arity;
+  /** Constructor typed as <code>(Term, ..., Operation)Predicate</code>. */
+  private final MethodHandle constructor;
+  /** Constructor taking its arguments as one <code>Object[]</code>. */
+  private final MethodHandle spread;
+
+  PreparedQuery(String pkg, String functor, int arity,
+      Constructor<? extends Predicate> c) throws IllegalAccessException {
+    this.pkg = pkg;
+    this.functor = functor;
+    this.arity = arity;
+    Class<?>[] params = new Class<?>[arity + 1];
+    Arrays.fill(params, 0, arity, Term.class);
+    params[arity] = Operation.class;
+    MethodHandle h = MethodHandles.lookup().unreflectConstructor(c);
+    constructor = h.asType(MethodType.methodType(Predicate.class, params));
+    spread = h.asType(MethodType.genericMethodType(arity + 1))
+        .asSpreader(Object[].class, arity + 1)
+        .asType(MethodType.methodType(Predicate.class, Object[].class));
+  }
+
+  /** @return package the predicate is declared in. */
+  public String getPackage() {
+    return pkg;
+  }
+
+  /** @return name of the predicate. */
+  public String getFunctor() {
+    return functor;
+  }
+
+  /** @return number of arguments of the predicate. */
+  public int getArity() {
+    return arity;
+  }
+
+  /**
+   * Create the goal for the given arguments.
+   *
+   * @param cont operation to execute if the predicate is successful. Usually
+   *        this is {@link Success#SUCCESS}.
+   * @param args arguments to pass; exactly {@link #getArity()} of them.
+   * @return the predicate encapsulating the logic and the arguments.
+   */
+  public Predicate predicate(Operation cont, Term... args) {
+    if (args.length != arity)
+      throw new IllegalArgumentException(pkg + ":" + functor + "/" + arity
+          + " called with " + args.length + " arguments");
+    try {
+      switch (arity) {
+        case 0:
+          return (Predicate) constructor.invokeExact(cont);
+        case 1:
+          return (Predicate) constructor.invokeExact(args[0], cont);
+        case 2:
+          return (Predicate) constructor.invokeExact(args[0], args[1], cont);
+        case 3:
+          return (Predicate) constructor.invokeExact(args[0], args[1], args[2], cont);
+        case 4:
+          return (Predicate) constructor.invokeExact(args[0], args[1], args[2], args[3], cont);
+        default:
+          Object[] a = new Object[arity + 1];
+          System.arraycopy(args, 0, a, 0, arity);
+          a[arity] = cont;
+          return (Predicate) spread.invokeExact(a);
+      }
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new SystemException(e.toString());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return pkg + ":" + functor + "/" + arity;
+  }
+}
@@ -1,10 +1,14 @@
 package com.googlecode.prolog_cafe.lang;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -81,6 +85,54 @@ public final class Prolog {
 	/** Prolog implementation flag: <code>print_stack_trace</code>. */
 	private String printStackTrace;
 
+	/** Number of inferences performed since {@link #init}. */
+	long inferences;
+	/** Maximum number of inferences per execution, <code>Long.MAX_VALUE</code> for no limit. */
+	long inferenceLimit = Long.MAX_VALUE;
+	/** Inference count above which the running query gets <code>resource_error(inferences)</code>. */
+	private long inferenceStop;
+	/** Value of {@link #inferences} at which {@link #checkLimits()} runs next. */
+	private long checkAt;
+	/** Set once the inference limit has been reported to the running query. */
+	private boolean inferenceLimitRaised;
+	/** Inferences left to a handler catching the inference limit error. */
+	private static final long INFERENCE_LIMIT_GRACE = 10000;
+	/** Inferences between two polls of {@link #cancelled} and the deadline. */
+	private static final long POLL_INTERVAL = 4096;
+
+	/**
+	 * Set from any thread to stop the running query at its next poll, or the
+	 * next query if none is running. Cleared when an execution ends.
+	 */
+	volatile boolean cancelled;
+	/** Time allowed to each execution in nanoseconds, <code>0</code> for none. */
+	long timeout;
+	/** Absolute deadline in {@link System#nanoTime()} units, used if {@link #hasDeadline}. */
+	long deadline;
+	boolean hasDeadline;
+	/** Deadline of the running execution, combining {@link #deadline} and {@link #timeout}. */
+	private long stopTime;
+	private boolean hasStopTime;
+
+	/** Inference count above which the innermost {@link LimitScope} is exceeded. */
+	long scopeStop = Long.MAX_VALUE;
+	/** Set once the limit of the innermost {@link LimitScope} has been reported. */
+	boolean scopeLimitRaised;
+	/** Deadline of the innermost timed {@link LimitScope}, used if {@link #hasScopeStopTime}. */
+	long scopeStopTime;
+	boolean hasScopeStopTime;
+
+	/** Bytes one execution may allocate, <code>Long.MAX_VALUE</code> for no limit. */
+	long allocationLimit = Long.MAX_VALUE;
+	/** Allocated byte count of the executing thread above which the query gets <code>resource_error(memory)</code>. */
+	private long allocationStop;
+	/** Set once the allocation limit has been reported to the running query. */
+	private boolean allocationLimitRaised;
+	/** Bytes left to a handler catching the allocation limit error. */
+	private static final long ALLOCATION_LIMIT_GRACE = 1 << 20;
+	/** Source of per-thread allocation counts, null if the JVM has none. */
+	private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
 	/** Holds an exception term for <code>catch/3</code> and <code>throw/1</code>. */
 	private Term exception;
 
@@ -109,7 +161,9 @@ public final class Prolog {
 	private HashtableOfTerm streamManager;
 
 	/** Hashtable for managing internal databases. */
-	private final HashtableOfTerm hashManager;
+	private HashtableOfTerm hashManager;
+	/** Private copies of the shared hash tables this engine has modified, by shared table. */
+	private IdentityHashMap<HashtableOfTerm,HashtableOfTerm> hashCopies;
 
 	/** Name of the builtin package. */
 	public static final String BUILTIN = "com.googlecode.prolog_cafe.builtin";
@@ -164,9 +218,47 @@ public final class Prolog {
 		IO,
 
 		/** Track the running time of evaluations */
-		STATISTICS_RUNTIME
+		STATISTICS_RUNTIME,
+
+		/**
+		 * Keep the Prolog call stack, so that exceptions carry a Prolog stack
+		 * trace. Off by default, as it costs time on every step of the engine.
+		 */
+		STACK_TRACE
+	}
+	protected final EnumSet<Feature> features = EnumSet.complementOf(EnumSet.of(Feature.STACK_TRACE));
+
+	/** Tracer of the running execution. */
+	PrologTracer tracer = PrologTracer.NONE;
+	/** Tracer set by {@link PrologControl#setTracer(PrologTracer)}, or null. */
+	PrologTracer customTracer;
+	/** Settings recorded by {@link #saveSettings()}, or null. */
+	private Settings savedSettings;
+
+	/** Limits, features and tracer of an engine, see {@link #saveSettings()}. */
+	private static final class Settings {
+		final EnumSet<Feature> features;
+		final long inferenceLimit;
+		final long timeout;
+		final long deadline;
+		final boolean hasDeadline;
+		final long allocationLimit;
+		final int maxChoicePoints;
+		final int maxTrailEntries;
+		final PrologTracer customTracer;
+
+		Settings(Prolog engine) {
+			features = EnumSet.copyOf(engine.features);
+			inferenceLimit = engine.inferenceLimit;
+			timeout = engine.timeout;
+			deadline = engine.deadline;
+			hasDeadline = engine.hasDeadline;
+			allocationLimit = engine.allocationLimit;
+			maxChoicePoints = engine.stack.max();
+			maxTrailEntries = engine.trail.getMax();
+			customTracer = engine.customTracer;
+		}
 	}
-	protected final EnumSet<Feature> features = EnumSet.allOf(Feature.class);
 
 	Prolog(PrologControl c) {
 		logger = new PrologLogger(javaUtilLogger);
@@ -187,8 +279,10 @@ public final class Prolog {
 
 		// During restore there is no need to copy terms. clause/2 inside of
 		// builtins.pl copies the predicate when it reads from internalDB.
-		hashManager = PrologMachineCopy.copyShallow(pmc.hashManager);
-		internalDB = new InternalDatabase(pmc.internalDB, false, new IdentityHashMap<VariableTerm, VariableTerm>());
+		// The database and hash tables are shared with the copy until this
+		// engine first writes to them.
+		hashManager = pmc.hashManager;
+		internalDB = new InternalDatabase(pmc.internalDB, false, null);
 	}
 
 	/**
@@ -249,8 +343,14 @@ public final class Prolog {
 		// Creates an initial choice point frame.
 		//ChoicePointFrame initialFrame = new ChoicePointFrame(this, Failure.FAILURE, ++CPFTimeStamp);  //ChoicePointFrame.S0(null);
 		trail.timeStamp = ++CPFTimeStamp;
-		stack.push(this, Failure.FAILURE, ChoicePointStack::restore0);
-		logger.init(stack.top);
+		stack.push(this, Failure.FAILURE);
+		if (customTracer != null)
+			tracer = customTracer;
+		else if (features.contains(Feature.STACK_TRACE) || javaUtilLogger.isLoggable(Level.FINE))
+			tracer = logger;
+		else
+			tracer = PrologTracer.NONE;
+		tracer.init(stack.top);
 
 		halt = 0;
 
@@ -260,6 +360,9 @@ public final class Prolog {
 		doubleQuotes    = "codes";
 		printStackTrace = "off";
 
+		catchersBindex = -1;
+		initLimits();
+
 		exception = NONE;
 		startRuntime = features.contains(Feature.STATISTICS_RUNTIME)
 				? System.currentTimeMillis()
@@ -270,6 +373,233 @@ public final class Prolog {
 		currentOutput = userOutput;
 	}
 
+	/** Starts the inference count and the limits of a new execution. */
+	private void initLimits() {
+		inferences = 0;
+		inferenceStop = inferenceLimit;
+		inferenceLimitRaised = false;
+		hasStopTime = hasDeadline;
+		stopTime = deadline;
+		if (timeout > 0) {
+			long t = System.nanoTime() + timeout;
+			if (!hasStopTime || t - stopTime < 0)
+				stopTime = t;
+			hasStopTime = true;
+		}
+		scopeStop = Long.MAX_VALUE;
+		scopeLimitRaised = false;
+		hasScopeStopTime = false;
+		allocationLimitRaised = false;
+		if (allocationLimit != Long.MAX_VALUE)
+			allocationStop = allocatedBytes() + allocationLimit;
+		updateCheckAt();
+		if (cancelled)
+			checkAt = 0; // cancelled before it started: stop at the first inference
+	}
+
+	/**
+	 * Prepares an initialized engine for the next goal of a batch.
+	 * <p>
+	 * Cheaper than {@link #init}: the trail is undone, the choice point stack
+	 * is cut back to its initial frame, and the registers, catchers, pending
+	 * exception and limits are reset. Flags, streams and the tracer are kept
+	 * from the start of the batch; the tracer is told the goal starts over.
+	 */
+	void restart() {
+		trail.unwind(-1);
+		stack.cut(0);
+		B0 = -1;
+		catchersBindex = -1;
+		areg1 = areg2 = areg3 = areg4 = areg5 = areg6 = areg7 = areg8 = null;
+		if (aregs != null)
+			Arrays.fill(aregs, null);
+		cont = null;
+		exception = NONE;
+		halt = 0;
+		tracer.init(stack.top);
+		initLimits();
+	}
+
+	/**
+	 * Counts one inference.
+	 * <p>
+	 * Called by the execution loops before every operation. The fast path is a
+	 * single comparison; the limits, the cancellation flag and the deadline are
+	 * only checked once the count reaches the next check point, at most
+	 * {@link #POLL_INTERVAL} inferences later.
+	 */
+	public void countInference() {
+		if (++inferences >= checkAt)
+			checkLimits();
+	}
+
+	/** Recomputes the next check point after a limit has changed. */
+	void updateCheckAt() {
+		long next = inferences + POLL_INTERVAL;
+		if (inferenceStop < next)
+			next = inferenceStop + 1;
+		if (scopeStop < next)
+			next = scopeStop + 1;
+		checkAt = next;
+	}
+
+	/** Changes the inference limit, also for the running execution. */
+	void setInferenceLimit(long limit) {
+		inferenceLimit = limit;
+		inferenceStop = limit;
+		updateCheckAt();
+	}
+
+	/** Changes the allocation limit, starting to count from the current thread's allocations. */
+	void setAllocationLimit(long limit) {
+		if (limit != Long.MAX_VALUE && THREADS == null)
+			throw new UnsupportedOperationException("thread allocation accounting is not available");
+		allocationLimit = limit;
+		allocationLimitRaised = false;
+		if (limit != Long.MAX_VALUE)
+			allocationStop = allocatedBytes() + limit;
+	}
+
+	private static com.sun.management.ThreadMXBean threadMXBean() {
+		try {
+			ThreadMXBean b = ManagementFactory.getThreadMXBean();
+			if (b instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) b;
+				if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled())
+					return t;
+			}
+		} catch (LinkageError e) {
+			// No management support in this runtime.
+		}
+		return null;
+	}
+
+	/** Bytes allocated so far by the current thread. */
+	private static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Enforces cancellation, the deadline and the inference limits.
+	 * <p>
+	 * Cancellation and the deadline raise a {@link QueryCancelledException},
+	 * which no <code>catch/3</code> can intercept. The first time an inference
+	 * limit is exceeded a <code>resource_error(inferences)</code> is raised, which
+	 * the query may catch. The handler gets a small grace budget to clean up;
+	 * after that the error is raised on every inference until it leaves the
+	 * engine, or the {@link LimitScope} it belongs to, so a query cannot catch
+	 * its way past the limit. The deadline of a timed scope raises
+	 * <code>time_limit_exceeded</code> at every poll until the scope is left.
+	 * The allocation limit is an approximation of the heap used by the query:
+	 * it counts every byte the executing thread allocates, garbage included,
+	 * and is handled like the inference limit.
+	 */
+	private void checkLimits() {
+		if (cancelled) {
+			cancelled = false;
+			throw new QueryCancelledException(false);
+		}
+		if (hasStopTime && System.nanoTime() - stopTime >= 0)
+			throw new QueryCancelledException(true);
+		if (inferences > inferenceStop) {
+			inferenceStop = inferenceLimitRaised ? inferences : inferences + INFERENCE_LIMIT_GRACE;
+			inferenceLimitRaised = true;
+			updateCheckAt();
+			throw new ResourceException("inferences");
+		}
+		if (inferences > scopeStop) {
+			scopeStop = scopeLimitRaised ? inferences : inferences + INFERENCE_LIMIT_GRACE;
+			scopeLimitRaised = true;
+			updateCheckAt();
+			throw new ResourceException("inferences");
+		}
+		if (allocationLimit != Long.MAX_VALUE) {
+			long allocated = allocatedBytes();
+			if (allocated > allocationStop) {
+				allocationStop = allocationLimitRaised ? allocated : allocated + ALLOCATION_LIMIT_GRACE;
+				allocationLimitRaised = true;
+				updateCheckAt();
+				throw new ResourceException("memory");
+			}
+		}
+		updateCheckAt();
+		if (hasScopeStopTime && System.nanoTime() - scopeStopTime >= 0)
+			throw new TermException(QueryCancelledException.TIME_LIMIT_EXCEEDED);
+	}
+
+	/**
+	 * Drops the state left behind by the last execution.
+	 * <p>
+	 * Used before an engine is reused by another query: the trail is undone,
+	 * releasing locks and bindings, and the registers, stacks and pending
+	 * exception are cleared so that they do not keep terms alive. The database
+	 * is left as it is.
+	 */
+	void reset() {
+		trail.unwind(-1);
+		trail.init();
+		stack.init();
+		B0 = -1;
+		catchersBindex = -1;
+		areg1 = areg2 = areg3 = areg4 = areg5 = areg6 = areg7 = areg8 = null;
+		if (aregs != null)
+			Arrays.fill(aregs, null);
+		cont = null;
+		exception = NONE;
+		halt = 0;
+		cancelled = false;
+	}
+
+	/**
+	 * Records the current limits, deadline, timeout, features and tracer, so
+	 * that {@link #restoreSettings()} can undo the changes a query makes to
+	 * them.
+	 */
+	void saveSettings() {
+		savedSettings = new Settings(this);
+	}
+
+	/** Puts back the settings recorded by {@link #saveSettings()}, if any. */
+	void restoreSettings() {
+		Settings s = savedSettings;
+		if (s == null)
+			return;
+		features.clear();
+		features.addAll(s.features);
+		inferenceLimit = s.inferenceLimit;
+		timeout = s.timeout;
+		deadline = s.deadline;
+		hasDeadline = s.hasDeadline;
+		allocationLimit = s.allocationLimit;
+		stack.setMax(s.maxChoicePoints);
+		trail.setMax(s.maxTrailEntries);
+		customTracer = s.customTracer;
+	}
+
+	/**
+	 * Goes back to the database and hash tables of <code>pmc</code>, dropping
+	 * everything the engine asserted, retracted or stored in a hash table since
+	 * it was restored. The copy is shared again, so this costs next to nothing.
+	 */
+	void restoreDatabase(PrologMachineCopy pmc) {
+		int maxContents = internalDB.maxContents;
+		internalDB = new InternalDatabase(pmc.internalDB, false, null);
+		internalDB.maxContents = maxContents;
+		hashManager = pmc.hashManager;
+		hashCopies = null;
+	}
+
+	/**
+	 * Undoes everything recorded on the trail.
+	 * <p>
+	 * Called when an exception leaves the engine, so that side effects which
+	 * are normally undone on backtracking, such as locks taken by
+	 * <code>with_mutex/2</code>, are released.
+	 */
+	void unwindAll() {
+		trail.unwind(-1);
+	}
+
 	/** Ensure a feature is enabled, throwing if not. */
 	public void requireFeature(Prolog.Feature f, Operation goal, Term arg) {
 		if (!features.contains(f)) {
@@ -329,7 +659,7 @@ public final class Prolog {
 	 */
 	public Operation fail() {
 		ChoicePointFrame top = stack.top;
-    	logger.fail(top.bp, top);
+		tracer.fail(top.bp, top);
 		B0 = top.b0;     // restore B0
 		return top.bp;   // execute next clause
 	}
@@ -409,58 +739,58 @@ public final class Prolog {
 	/** Creates a new choice point frame. */
 	public Operation jtry0(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, next, ChoicePointStack::restore0));
+		tracer.jtry(p, next, stack.push(this, next));
 		return p;
 	}
 	public Operation jtry1(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, next));
+		tracer.jtry(p, next, stack.push(this, areg1, next));
 		return p;
 	}
 	public Operation jtry2(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, areg2, next));
+		tracer.jtry(p, next, stack.push(this, areg1, areg2, next));
 		return p;
 	}
 	public Operation jtry3(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, areg2, areg3, next));
+		tracer.jtry(p, next, stack.push(this, areg1, areg2, areg3, next));
 		return p;
 	}
 
 	public Operation jtry4(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, next));
+		tracer.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, next));
 		return p;
 	}
 
 	public Operation jtry5(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, next));
+		tracer.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, next));
 		return p;
 	}
 
 	public Operation jtry6(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, areg6, next));
+		tracer.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, areg6, next));
 		return p;
 	}
 
 	public Operation jtry7(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, areg6, areg7, next));
+		tracer.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, areg6, areg7, next));
 		return p;
 	}
 
 	public Operation jtry8(Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, areg6, areg7, areg8, next));
+		tracer.jtry(p, next, stack.push(this, areg1, areg2, areg3, areg4, areg5, areg6, areg7, areg8, next));
 		return p;
 	}
 
 	public Operation jtry(int arity, Operation p, Operation next) {
 		trail.timeStamp = ++CPFTimeStamp;
-		logger.jtry(p, next, stack.push(this, arity, next));
+		tracer.jtry(p, next, stack.push(this, arity, next));
 		return p;
 	}
 
@@ -481,8 +811,8 @@ public final class Prolog {
 	 */
 	public Operation retry(Operation p, Operation next) {
 		ChoicePointFrame top = stack.top;
-		top.restore.accept(top,this);
-		logger.retry(p, next, top);
+		stack.restore(this);
+		tracer.retry(p, next, top);
 		trail.unwind(top.tr);
 		top.bp = next;
 		return p;
@@ -494,8 +824,8 @@ public final class Prolog {
 	 */
 	public Operation trust(Operation p) {
 		final ChoicePointFrame top = stack.top;
-		top.restore.accept(top,this);
-		logger.trust(p, top);
+		stack.restore(this);
+		tracer.trust(p, top);
 		trail.unwind(top.tr);
 		stack.delete();
 		return p;
@@ -590,8 +920,39 @@ public final class Prolog {
 	/** Returns the stream manager. */
 	public HashtableOfTerm getStreamManager() { return streamManager; }
 
-	/** Returns the hash manager. */
-	public HashtableOfTerm getHashManager() { return hashManager; }
+	/** Returns the hash manager, taking a private copy first if it is still shared. */
+	public HashtableOfTerm getHashManager() { return getHash(hashManager, true); }
+
+	/**
+	 * Returns the hash manager for reading only. After a restore it may be
+	 * shared with other engines, so it must not be modified.
+	 */
+	public HashtableOfTerm peekHashManager() { return getHash(hashManager, false); }
+
+	/**
+	 * Returns the version of <code>hash</code> this engine sees.
+	 * <p>
+	 * Hash tables of a {@link PrologMachineCopy} are shared by all engines
+	 * restored from it. The first time an engine asks to modify one, it gets
+	 * a private copy of the table, which it then sees in place of the shared
+	 * one for reads and writes alike. Tables held by the copy are copied
+	 * only when they are modified in turn.
+	 *
+	 * @param hash table referenced by a hash handle or alias.
+	 * @param update true if the caller is going to modify the table.
+	 */
+	public HashtableOfTerm getHash(HashtableOfTerm hash, boolean update) {
+		if (!hash.shared)
+			return hash;
+		HashtableOfTerm copy = hashCopies != null ? hashCopies.get(hash) : null;
+		if (copy == null && update) {
+			if (hashCopies == null)
+				hashCopies = new IdentityHashMap<HashtableOfTerm,HashtableOfTerm>();
+			copy = new HashtableOfTerm(hash);
+			hashCopies.put(hash, copy);
+		}
+		return copy != null ? copy : hash;
+	}
 
 //	public final Operation exec(Operation code){
 //		try {
@@ -613,4 +974,9 @@ public final class Prolog {
 	public PrologLogger getLogger() {
 		return logger;
 	}
+
+	/** Returns the tracer of the running execution. */
+	public PrologTracer getTracer() {
+		return tracer;
+	}
 }
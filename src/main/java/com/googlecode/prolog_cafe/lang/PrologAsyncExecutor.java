@@ -0,0 +1,369 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Runs queries asynchronously on interpreters borrowed from a
+ * {@link PrologEnginePool}.
+ * <p>
+ * Every query returns a {@link CompletableFuture} at once and is run by the
+ * executor as soon as fewer than the concurrency limit are running; the
+ * others wait in a queue without holding a thread. Cancelling a future
+ * cancels its engine, which stops at its next poll and releases its
+ * interpreter. A query with a timeout fails with a {@link TimeoutException}
+ * if its time, counted from submission, is up while it waits in the queue,
+ * while it waits for an interpreter or while it runs. Every execution the
+ * query starts shares that one deadline.
+ * <pre>
+ * PrologAsyncExecutor async = new PrologAsyncExecutor(pool, executor);
+ * async.once(1, TimeUnit.SECONDS, "user", "route", from, to, new VariableTerm())
+ *     .thenAccept(r -&gt; reply(r == null ? "no route" : r[2].toString()));
+ * </pre>
+ * As with the pool, changes a query makes to the database or to the limits
+ * of its interpreter are dropped when the interpreter is released.
+ */
+public final class PrologAsyncExecutor {
+  /** Fails timed queries whose time is up while they are queued. */
+  private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+  private final PrologEnginePool pool;
+  private final Executor executor;
+  private final int maxConcurrent;
+
+  /** Queries waiting for a slot, guarded by {@code this}. */
+  private final ArrayDeque<Query<?>> queue = new ArrayDeque<>();
+  /** Queries handed to the executor and not yet finished, guarded by {@code this}. */
+  private int running;
+
+  /**
+   * Create an executor running as many queries at once as the pool has
+   * interpreters.
+   *
+   * @param pool source of interpreters.
+   * @param executor runs the queries; each query occupies one of its threads
+   *        while running.
+   */
+  public PrologAsyncExecutor(PrologEnginePool pool, Executor executor) {
+    this(pool, executor, pool.getMaxSize());
+  }
+
+  /**
+   * Create an executor running at most {@code maxConcurrent} queries at once.
+   *
+   * @param pool source of interpreters.
+   * @param executor runs the queries; each query occupies one of its threads
+   *        while running.
+   * @param maxConcurrent maximum number of queries running at once. Above the
+   *        pool size, queries wait for an interpreter on an executor thread.
+   */
+  public PrologAsyncExecutor(PrologEnginePool pool, Executor executor, int maxConcurrent) {
+    if (maxConcurrent <= 0)
+      throw new IllegalArgumentException("invalid concurrency " + maxConcurrent);
+    this.pool = pool;
+    this.executor = executor;
+    this.maxConcurrent = maxConcurrent;
+  }
+
+  /**
+   * Find the first solution of a goal.
+   *
+   * @return future of a deep copy of {@code args} at the first solution, or
+   *         of null if the goal fails.
+   */
+  public CompletableFuture<Term[]> once(String pkg, String functor, Term... args) {
+    return submit(0, null, ctl -> ctl.once(pkg, functor, args));
+  }
+
+  /**
+   * Find the first solution of a goal within a time limit.
+   *
+   * @return future of a deep copy of {@code args} at the first solution, or
+   *         of null if the goal fails.
+   */
+  public CompletableFuture<Term[]> once(long timeout, TimeUnit unit,
+      String pkg, String functor, Term... args) {
+    return submit(timeout, unit, ctl -> ctl.once(pkg, functor, args));
+  }
+
+  /**
+   * Find all solutions of a goal.
+   *
+   * @return future of a deep copy of {@code args} for each solution.
+   */
+  public CompletableFuture<List<Term[]>> all(String pkg, String functor, Term... args) {
+    return submit(0, null, ctl -> ctl.all(pkg, functor, args));
+  }
+
+  /**
+   * Find all solutions of a goal within a time limit.
+   *
+   * @return future of a deep copy of {@code args} for each solution.
+   */
+  public CompletableFuture<List<Term[]>> all(long timeout, TimeUnit unit,
+      String pkg, String functor, Term... args) {
+    return submit(timeout, unit, ctl -> ctl.all(pkg, functor, args));
+  }
+
+  /**
+   * Execute a predicate over a batch of argument tuples, in chunks run in
+   * parallel on pooled interpreters.
+   *
+   * @param chunkSize number of tuples per chunk.
+   * @return future of the results in tuple order, see
+   *         {@link BufferingPrologControl#executeBatch(PreparedQuery, List)}.
+   */
+  public CompletableFuture<Term[][]> executeBatch(String pkg, String functor,
+      List<Term[]> tuples, int chunkSize) {
+    return executeBatch(tuples, chunkSize,
+        (ctl, chunk) -> ctl.executeBatch(pkg, functor, chunk));
+  }
+
+  /**
+   * Execute a prepared query over a batch of argument tuples, in chunks run in
+   * parallel on pooled interpreters. Tuples of different chunks must not share
+   * variables, as they are bound by different threads.
+   *
+   * @param chunkSize number of tuples per chunk.
+   * @return future of the results in tuple order, see
+   *         {@link BufferingPrologControl#executeBatch(PreparedQuery, List)}.
+   *         Cancelling it cancels the chunks still queued or running.
+   */
+  public CompletableFuture<Term[][]> executeBatch(PreparedQuery q,
+      List<Term[]> tuples, int chunkSize) {
+    return executeBatch(tuples, chunkSize, (ctl, chunk) -> ctl.executeBatch(q, chunk));
+  }
+
+  private CompletableFuture<Term[][]> executeBatch(List<Term[]> tuples, int chunkSize,
+      BiFunction<BufferingPrologControl, List<Term[]>, Term[][]> batch) {
+    if (chunkSize <= 0)
+      throw new IllegalArgumentException("invalid chunk size " + chunkSize);
+    List<CompletableFuture<Term[][]>> chunks = new ArrayList<>();
+    for (int i = 0; i < tuples.size(); i += chunkSize) {
+      List<Term[]> chunk = tuples.subList(i, Math.min(i + chunkSize, tuples.size()));
+      chunks.add(submit(0, null, ctl -> batch.apply(ctl, chunk)));
+    }
+    CompletableFuture<Term[][]> result = CompletableFuture
+        .allOf(chunks.toArray(new CompletableFuture<?>[chunks.size()]))
+        .thenApply(v -> {
+          Term[][] r = new Term[tuples.size()][];
+          int n = 0;
+          for (CompletableFuture<Term[][]> c : chunks) {
+            Term[][] part = c.join();
+            System.arraycopy(part, 0, r, n, part.length);
+            n += part.length;
+          }
+          return r;
+        });
+    result.whenComplete((r, e) -> {
+      if (e != null)
+        for (CompletableFuture<Term[][]> c : chunks)
+          c.cancel(false);
+    });
+    for (CompletableFuture<Term[][]> c : chunks)
+      c.whenComplete((r, e) -> {
+        if (e != null)
+          result.completeExceptionally(e);
+      });
+    return result;
+  }
+
+  /**
+   * Run any work on a borrowed interpreter, for example several goals or a
+   * {@link BufferingPrologControl#forEach} over the solutions. The interpreter
+   * must not be used after {@code work} returns.
+   *
+   * @param timeout time allowed from submission to completion; 0 for none.
+   * @param unit unit of {@code timeout}; may be null if there is none.
+   * @param work the work, returning the value of the future.
+   * @return future of the value returned by {@code work}.
+   */
+  public <T> CompletableFuture<T> submit(long timeout, TimeUnit unit,
+      Function<? super BufferingPrologControl, ? extends T> work) {
+    if (timeout < 0)
+      throw new IllegalArgumentException("invalid timeout " + timeout);
+    long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    Query<T> q = new Query<>(work, timeout > 0, deadline);
+    q.future.whenComplete((r, e) -> {
+      if (e != null)
+        dequeue(q);
+      if (q.future.isCancelled())
+        q.cancel();
+    });
+    if (q.timed)
+      q.expiry = TIMER.schedule(() -> {
+        if (dequeue(q))
+          q.future.completeExceptionally(new TimeoutException("query waited too long"));
+      }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    synchronized (this) {
+      queue.addLast(q);
+    }
+    dispatch();
+    return q.future;
+  }
+
+  /** Removes a query from the queue; returns false if it was not queued. */
+  private boolean dequeue(Query<?> q) {
+    synchronized (this) {
+      if (!queue.remove(q))
+        return false;
+    }
+    q.dequeued();
+    return true;
+  }
+
+  /** @return number of queries waiting for a slot. */
+  public synchronized int getQueuedCount() {
+    return queue.size();
+  }
+
+  /** @return number of queries currently handed to the executor. */
+  public synchronized int getRunningCount() {
+    return running;
+  }
+
+  /** Hands queued queries to the executor while slots are free. */
+  private void dispatch() {
+    for (;;) {
+      Query<?> q;
+      synchronized (this) {
+        if (running >= maxConcurrent || (q = queue.pollFirst()) == null)
+          return;
+        running++;
+      }
+      q.dequeued();
+      try {
+        executor.execute(q);
+      } catch (RuntimeException e) {
+        finished();
+        q.future.completeExceptionally(e);
+      }
+    }
+  }
+
+  private void finished() {
+    synchronized (this) {
+      running--;
+    }
+    dispatch();
+  }
+
+  private static ScheduledThreadPoolExecutor createTimer() {
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread t = new Thread(r, "prolog-async-timeout");
+      t.setDaemon(true);
+      return t;
+    });
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+
+  private final class Query<T> implements Runnable {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    private final Function<? super BufferingPrologControl, ? extends T> work;
+    private final boolean timed;
+    private final long deadline;
+    /** Timer failing this query while queued; set before it is queued. */
+    ScheduledFuture<?> expiry;
+    /** Interpreter running this query, guarded by {@code this}. */
+    private BufferingPrologControl control;
+
+    Query(Function<? super BufferingPrologControl, ? extends T> work,
+        boolean timed, long deadline) {
+      this.work = work;
+      this.timed = timed;
+      this.deadline = deadline;
+    }
+
+    /** Called once the query has left the queue. */
+    void dequeued() {
+      if (expiry != null)
+        expiry.cancel(false);
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (!future.isDone())
+          execute();
+      } catch (InterruptedException e) {
+        future.completeExceptionally(e);
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException | Error e) {
+        future.completeExceptionally(e);
+      } finally {
+        finished();
+      }
+    }
+
+    private void execute() throws InterruptedException {
+      BufferingPrologControl ctl;
+      if (timed) {
+        long left = deadline - System.nanoTime();
+        ctl = left > 0 ? pool.borrow(left, TimeUnit.NANOSECONDS) : null;
+        if (ctl == null) {
+          future.completeExceptionally(new TimeoutException("query waited too long"));
+          return;
+        }
+      } else {
+        ctl = pool.borrow();
+      }
+
+      try {
+        synchronized (this) {
+          if (future.isDone())
+            return;
+          control = ctl;
+        }
+        if (timed) {
+          long left = deadline - System.nanoTime();
+          if (left <= 0) {
+            future.completeExceptionally(new TimeoutException("query waited too long"));
+            return;
+          }
+          // One deadline for all executions of the work. The pool puts
+          // the settings of the interpreter back when it is released.
+          Prolog engine = ctl.engine;
+          if (!engine.hasDeadline || deadline - engine.deadline < 0)
+            engine.deadline = deadline;
+          engine.hasDeadline = true;
+        }
+        if (future.isCancelled())
+          return;
+        future.complete(work.apply(ctl));
+      } catch (QueryCancelledException e) {
+        if (e.isDeadline()) {
+          TimeoutException te = new TimeoutException("query ran too long");
+          te.initCause(e);
+          future.completeExceptionally(te);
+        } else {
+          future.completeExceptionally(e); // cancelled futures ignore this
+        }
+      } finally {
+        synchronized (this) {
+          control = null;
+        }
+        pool.release(ctl);
+      }
+    }
+
+    /**
+     * Cancels the engine, if the query is running. The engine keeps the
+     * request until its execution ends, so a cancel arriving before the work
+     * has started an execution stops that execution at its first inference.
+     */
+    synchronized void cancel() {
+      if (control != null)
+        control.cancel();
+    }
+  }
+}
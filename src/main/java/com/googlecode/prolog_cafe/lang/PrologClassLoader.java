@@ -99,23 +99,59 @@ public class PrologClassLoader extends ClassLoader {
 	 */
 	public Predicate predicate(String pkg, String functor, Operation cont, Term... args) {
 		int arity = args.length;
+		Constructor<? extends Predicate> constructor = resolve(pkg, functor, arity);
+		Object[] a = new Object[arity + 1];
+		System.arraycopy(args, 0, a, 0, arity);
+		a[arity] = cont;
 		try {
-			Constructor<? extends Predicate> constructor = findPredicate(pkg, functor, arity);
-			if (constructor != NOT_FOUND) {
-				Object[] a = new Object[arity + 1];
-				System.arraycopy(args, 0, a, 0, arity);
-				a[arity] = cont;
-				return constructor.newInstance(a);
-			}
+			return constructor.newInstance(a);
+		} catch (Exception cause) {
+			throw existenceError(pkg, functor, arity, cause);
+		}
+	}
+
+	/**
+	 * Resolve a predicate once, for goals started repeatedly.
+	 *
+	 * @param pkg     package the predicate is in.
+	 * @param functor name of the predicate.
+	 * @param arity   number of arguments.
+	 * @return the prepared query.
+	 * @throws ExistenceException the predicate is not defined.
+	 */
+	public PreparedQuery prepare(String pkg, String functor, int arity) {
+		Constructor<? extends Predicate> constructor = resolve(pkg, functor, arity);
+		try {
+			return new PreparedQuery(pkg, functor, arity, constructor);
 		} catch (Exception cause) {
-			ExistenceException err2 = new ExistenceException(
-					"procedure",
-					term(pkg, functor, arity),
-					cause.toString());
-			err2.initCause(cause);
-			throw err2;
+			throw existenceError(pkg, functor, arity, cause);
 		}
-		throw new ExistenceException("procedure", term(pkg, functor, arity), "NOT_FOUND");
+	}
+
+	/**
+	 * Find the constructor of a predicate.
+	 *
+	 * @throws ExistenceException the predicate is not defined.
+	 */
+	private Constructor<? extends Predicate> resolve(String pkg, String functor, int arity) {
+		Constructor<? extends Predicate> constructor;
+		try {
+			constructor = findPredicate(pkg, functor, arity);
+		} catch (Exception cause) {
+			throw existenceError(pkg, functor, arity, cause);
+		}
+		if (constructor == NOT_FOUND)
+			throw new ExistenceException("procedure", term(pkg, functor, arity), "NOT_FOUND");
+		return constructor;
+	}
+
+	private static ExistenceException existenceError(String pkg, String functor, int arity, Exception cause) {
+		ExistenceException err2 = new ExistenceException(
+				"procedure",
+				term(pkg, functor, arity),
+				cause.toString());
+		err2.initCause(cause);
+		return err2;
 	}
 
 	private static StructureTerm term(String pkg, String functor, int arity) {
@@ -123,7 +159,7 @@ public class PrologClassLoader extends ClassLoader {
 				SymbolTerm.create(pkg),
 				new StructureTerm("/",
 						SymbolTerm.create(functor),
-						new IntegerTerm(arity)));
+						IntegerTerm.valueOf(arity)));
 	}
 
 	private Constructor<? extends Predicate> getConstructor(String pkg, String functor, int arity) throws ClassNotFoundException {
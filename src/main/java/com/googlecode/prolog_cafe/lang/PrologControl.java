@@ -2,7 +2,10 @@ package com.googlecode.prolog_cafe.lang;
 
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tracks current evaluation goal and results.
@@ -22,6 +25,15 @@ public abstract class PrologControl {
 
     /** Holds a Prolog goal to be executed. */
     protected Operation code;
+
+    /**
+     * Set while solutions are pulled one at a time by a {@link SolutionIterator}:
+     * instead of invoking {@link #success()} and {@link #fail()}, the main loop
+     * returns at every solution, leaving its bindings in place until resumed.
+     */
+    boolean suspendOnSuccess;
+    /** Set when the main loop returned at a solution. */
+    boolean suspended;
     
     private InputStream userInput = System.in;
 
@@ -95,6 +107,175 @@ public abstract class PrologControl {
       engine.pcl = cl;
     }
 
+    /** @return number of inferences performed by the current or last execution. */
+    public long getInferences() { return engine.inferences; }
+
+    /** @return maximum number of inferences per execution; {@link Long#MAX_VALUE} if unlimited. */
+    public long getReductionLimit() { return engine.inferenceLimit; }
+
+    /**
+     * Limit the number of inferences a single execution may perform.
+     * <p>
+     * Once the limit is exceeded {@code resource_error(inferences)} is raised
+     * inside the running query. It can be caught with {@code catch/3}, but the
+     * handler only gets a small budget to recover before the error is raised
+     * again, so it eventually leaves the engine as a {@link ResourceException}.
+     *
+     * @param limit maximum number of inferences; {@link Long#MAX_VALUE} to
+     *        remove the limit.
+     */
+    public void setReductionLimit(long limit) {
+      if (limit <= 0)
+        throw new IllegalArgumentException("invalid reduction limit " + limit);
+      engine.setInferenceLimit(limit);
+    }
+
+    /** @return maximum number of choice points; {@link Integer#MAX_VALUE} if unlimited. */
+    public int getMaxChoicePoints() { return engine.stack.max(); }
+
+    /**
+     * Limit the depth of the choice point stack.
+     * <p>
+     * Creating a choice point beyond the limit raises
+     * {@code resource_error(choice_points)} inside the running query.
+     *
+     * @param max maximum number of choice points; {@link Integer#MAX_VALUE}
+     *        to remove the limit.
+     */
+    public void setMaxChoicePoints(int max) {
+      if (max <= 0)
+        throw new IllegalArgumentException("invalid choice point limit " + max);
+      engine.stack.setMax(max);
+    }
+
+    /** @return maximum number of trail entries; {@link Integer#MAX_VALUE} if unlimited. */
+    public int getMaxTrailEntries() { return engine.trail.getMax(); }
+
+    /**
+     * Limit the number of entries on the trail.
+     * <p>
+     * The trail grows in pages of a few thousand entries and the limit is
+     * checked when a page is added, so it is rounded up to a whole page.
+     * Exceeding it raises {@code resource_error(trail)} inside the running
+     * query.
+     *
+     * @param max maximum number of trail entries; {@link Integer#MAX_VALUE}
+     *        to remove the limit.
+     */
+    public void setMaxTrailEntries(int max) {
+      if (max <= 0)
+        throw new IllegalArgumentException("invalid trail limit " + max);
+      engine.trail.setMax(max);
+    }
+
+    /** @return maximum number of bytes allocated per execution; {@link Long#MAX_VALUE} if unlimited. */
+    public long getMaxAllocatedBytes() { return engine.allocationLimit; }
+
+    /**
+     * Limit the memory a single execution may allocate.
+     * <p>
+     * Terms are created by generated code all over the engine, so they are not
+     * counted one by one. Instead the bytes allocated by the executing thread
+     * are sampled every few thousand inferences, which approximates the heap
+     * used by the query but also includes terms that have already become
+     * garbage. Exceeding the limit raises {@code resource_error(memory)},
+     * which is handled like the reduction limit.
+     *
+     * @param max maximum number of bytes; {@link Long#MAX_VALUE} to remove
+     *        the limit.
+     * @throws UnsupportedOperationException the JVM cannot report per-thread
+     *         allocation.
+     */
+    public void setMaxAllocatedBytes(long max) {
+      if (max <= 0)
+        throw new IllegalArgumentException("invalid allocation limit " + max);
+      engine.setAllocationLimit(max);
+    }
+
+    /**
+     * Set how many choice points stay allocated between executions.
+     * <p>
+     * The choice point stack grows as deep as a query needs and is trimmed
+     * back to this size when the next execution starts, as is the trail to a
+     * single page, so that one deep query does not pin memory in a long-lived
+     * engine.
+     *
+     * @param choicePoints number of choice point frames to keep; default 256.
+     */
+    public void setRetainedStackSize(int choicePoints) {
+      if (choicePoints <= 0)
+        throw new IllegalArgumentException("invalid stack size " + choicePoints);
+      engine.stack.setRetained(choicePoints);
+    }
+
+    /**
+     * Stop executions that run past a point in time.
+     * <p>
+     * The deadline is polled every few thousand inferences. A query running
+     * past it is unwound with a {@link QueryCancelledException}, which
+     * {@code catch/3} cannot intercept.
+     *
+     * @param deadline the point in time; null to remove the deadline.
+     */
+    public void setDeadline(Instant deadline) {
+      if (deadline == null) {
+        engine.hasDeadline = false;
+        return;
+      }
+      long nanos;
+      try {
+        nanos = Duration.between(Instant.now(), deadline).toNanos();
+      } catch (ArithmeticException tooFar) {
+        engine.hasDeadline = false;
+        return;
+      }
+      engine.deadline = System.nanoTime() + nanos;
+      engine.hasDeadline = true;
+    }
+
+    /**
+     * Limit the running time of each execution.
+     * <p>
+     * Unlike {@link #setDeadline(Instant)} the time is measured again from the
+     * start of every execution.
+     *
+     * @param timeout maximum time per execution; 0 to remove the limit.
+     * @param unit unit of {@code timeout}.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+      if (timeout < 0)
+        throw new IllegalArgumentException("invalid timeout " + timeout);
+      engine.timeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Cancel the running execution.
+     * <p>
+     * May be called from any thread. The engine notices the request within a
+     * few thousand inferences, undoes the trail (releasing mutexes held through
+     * {@code with_mutex/2}) and throws a {@link QueryCancelledException} out of
+     * the execution, bypassing {@code catch/3}. If no execution is running,
+     * for example because the query is still waiting to be scheduled, the next
+     * execution is cancelled as soon as it starts; the request is dropped once
+     * an execution ends.
+     */
+    public void cancel() {
+      engine.cancelled = true;
+    }
+
+    /**
+     * Install a tracer observing every step of subsequent executions.
+     * <p>
+     * By default no tracer runs, unless the {@link Prolog.Feature#STACK_TRACE}
+     * feature is enabled or the engine's logger is loggable at level FINE; then
+     * the {@link PrologLogger} keeps the Prolog call stack.
+     *
+     * @param tracer the tracer; null to restore the default.
+     */
+    public void setTracer(PrologTracer tracer) {
+      engine.customTracer = tracer;
+    }
+
     public int getMaxArity() { return engine.getMaxArity(); }
     public void setMaxArity(int max) {
       if (max < 8)
@@ -121,6 +302,24 @@ public abstract class PrologControl {
       setPredicate(getPrologClassLoader().predicate(pkg, functor, args));
     }
 
+    /** Sets a prepared goal and its arguments to this Prolog thread.
+     * An initial continuation goal (a <code>Success</code> object)
+     * is set to the <code>cont</code> field of the goal as continuation.
+     */
+    public void setPredicate(PreparedQuery q, Term... args) {
+      setPredicate(q.predicate(Success.SUCCESS, args));
+    }
+
+    /**
+     * Resolve a predicate once, for goals started repeatedly with
+     * {@link #setPredicate(PreparedQuery, Term...)}.
+     *
+     * @see PrologClassLoader#prepare(String, String, int)
+     */
+    public PreparedQuery prepare(String pkg, String functor, int arity) {
+      return getPrologClassLoader().prepare(pkg, functor, arity);
+    }
+
     /** Sets a goal <code>call(t)</code> to this Prolog thread.
      * An initial continuation goal (a <code>Success</code> object)
      * is set to the <code>cont</code> field of <code>call(t)</code> as continuation.
@@ -165,24 +364,56 @@ public abstract class PrologControl {
      * @throws JavaInterruptedException
      */
     protected void executePredicate() throws PrologException, JavaInterruptedException {
+        PrologTracer tracer = engine.getTracer();
+        try {
+            tracer = begin();
+            solve(code, tracer);
+        } finally {
+            end(tracer);
+        }
+    }
+
+    /**
+     * Initializes the engine for a new execution.
+     *
+     * @return the tracer of the execution.
+     */
+    PrologTracer begin() {
+        engine.init(userInput, userOuput, userError);
+        return engine.getTracer();
+    }
+
+    /** Releases what the execution has left behind, once it is over. */
+    void end(PrologTracer tracer) {
+        engine.cancelled = false;
+        tracer.close();
+    }
+
+    /**
+     * Runs the main loop from <code>code</code>.
+     *
+     * @return true if the loop was suspended at a solution, see
+     *         {@link #suspendOnSuccess}; false once the execution is over.
+     */
+    boolean solve(Operation code, PrologTracer tracer) {
         Prolog engine = this.engine;
-        PrologLogger logger = engine.getLogger();
-        Operation code = this.code;
         try {
-            engine.init(userInput, userOuput, userError);
             mainLoop:
             do {
                 try {
 
                     do {
-                        logger.beforeExec(code);
+                        engine.countInference();
+                        tracer.beforeExec(code);
                         code = code.exec(engine);
                     } while (code != null);
 
                 } catch (StopEngineException see) {
-                    return; // escape execution loop
+                    return false; // escape execution loop
+                } catch (QueryCancelledException qce) {
+                    throw qce; // never delivered to catch/3
                 } catch (RuntimeException t) {
-                    PrologException e = logger.execThrows(t);
+                    PrologException e = tracer.execThrows(t);
                     final int b = engine.peekCatcherB();
                     if (b >= 0) {
                         engine.setException(engine.copy(e.getMessageTerm()));
@@ -193,17 +424,34 @@ public abstract class PrologControl {
                         throw e;
                     }
                 }
+                if (suspended) {
+                    return true;
+                }
                 if (engine.halt != 1) {
                     throw new HaltException(engine.halt - 1);
                 }
             } while (code!=null);
+            return false;
+        } catch (RuntimeException e) {
+            engine.unwindAll(); // release mutexes and other undoable state
+            throw e;
         } finally {
             this.code = code;
-            SymbolTerm.gc();
-            logger.close();
         }
     }
 
+    /** Initialize the engine ahead of the first execution. */
+    void prepare() {
+      engine.init(userInput, userOuput, userError);
+      reset();
+    }
+
+    /** Clear the state of the last execution before the engine is reused. */
+    void reset() {
+      engine.reset();
+      code = null;
+    }
+
 	public void setUserError(PrintStream userError) {
 		this.userError = userError;
 	}
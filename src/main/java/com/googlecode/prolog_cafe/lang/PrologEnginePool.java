@@ -0,0 +1,472 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Pool of interpreters restored from a {@link PrologMachineCopy}.
+ * <p>
+ * Creating a {@link BufferingPrologControl} from a machine copy allocates a new
+ * engine, its stacks and stream tables; the internal database of the machine
+ * copy is shared, and only its pages written by a query are copied.
+ * The pool keeps such interpreters, already initialized, and hands them out
+ * again after a cheap reset that undoes the trail and clears the registers,
+ * the choice point stack and any pending exception, puts back the limits,
+ * deadline, timeout, features and tracer configured by the setup callback,
+ * and shares the database and hash tables of the machine copy again:
+ * <pre>
+ *   BufferingPrologControl ctl = pool.borrow();
+ *   try {
+ *     result = ctl.once("user", "query", arg);
+ *   } finally {
+ *     pool.release(ctl);
+ *   }
+ * </pre>
+ * Clauses asserted or retracted and hash tables changed by a query are
+ * therefore not seen by the next borrower. An interpreter must be handed back
+ * once, to the pool it was borrowed from. Other state, such as streams the
+ * query opened, is kept; hand such an interpreter back with
+ * {@link #invalidate} instead.
+ * <p>
+ * Interpreters idle for longer than the idle timeout are dropped when the pool
+ * is next used, or by {@link #evictIdle()}. The pool counts borrows, the time
+ * they took and how often they had to wait for a busy pool.
+ */
+public final class PrologEnginePool implements AutoCloseable {
+  private final PrologMachineCopy pmc;
+  private final Consumer<? super BufferingPrologControl> setup;
+  private final int maxSize;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  /** Idle interpreters, most recently released first. */
+  private final ArrayDeque<Idle> idle = new ArrayDeque<>();
+  /** Interpreters of the pool, idle or borrowed, mapped to whether they are borrowed. */
+  private final IdentityHashMap<BufferingPrologControl, Boolean> members = new IdentityHashMap<>();
+  private long idleTimeout = TimeUnit.MINUTES.toNanos(5);
+  private int size;
+  private boolean closed;
+
+  private long borrows;
+  private long waits;
+  private long borrowNanos;
+  private long maxBorrowNanos;
+  private long created;
+  private long evicted;
+  private int peakActive;
+
+  private static final class Idle {
+    final BufferingPrologControl control;
+    final long since;
+
+    Idle(BufferingPrologControl control, long since) {
+      this.control = control;
+      this.since = since;
+    }
+  }
+
+  /**
+   * Create a pool of interpreters restored from a machine copy.
+   *
+   * @param pmc the machine copy each interpreter is restored from.
+   * @param maxSize maximum number of interpreters, idle or borrowed.
+   */
+  public PrologEnginePool(PrologMachineCopy pmc, int maxSize) {
+    this(pmc, maxSize, null);
+  }
+
+  /**
+   * Create a pool of interpreters restored from a machine copy.
+   *
+   * @param pmc the machine copy each interpreter is restored from.
+   * @param maxSize maximum number of interpreters, idle or borrowed.
+   * @param setup invoked on every new interpreter before it is initialized,
+   *        for example to set features, limits or streams; may be null. The
+   *        features, limits, deadline, timeout and tracer it leaves are put
+   *        back whenever the interpreter is released.
+   */
+  public PrologEnginePool(PrologMachineCopy pmc, int maxSize,
+      Consumer<? super BufferingPrologControl> setup) {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException("invalid pool size " + maxSize);
+    this.pmc = pmc;
+    this.maxSize = maxSize;
+    this.setup = setup;
+  }
+
+  /**
+   * Set how long an interpreter may stay idle before it is dropped.
+   *
+   * @param timeout idle time; 0 to never drop idle interpreters.
+   * @param unit unit of {@code timeout}.
+   */
+  public void setIdleTimeout(long timeout, TimeUnit unit) {
+    lock.lock();
+    try {
+      idleTimeout = timeout > 0 ? unit.toNanos(timeout) : 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Create interpreters until {@code count} are idle, so that the first
+   * borrows do not pay for the restore.
+   *
+   * @param count number of idle interpreters wanted, at most the pool size.
+   */
+  public void prestart(int count) {
+    for (;;) {
+      lock.lock();
+      try {
+        if (closed || idle.size() >= count || size >= maxSize)
+          return;
+        size++;
+      } finally {
+        lock.unlock();
+      }
+      BufferingPrologControl ctl;
+      try {
+        ctl = create(false);
+      } catch (RuntimeException | Error e) {
+        discard(null);
+        throw e;
+      }
+      giveBack(ctl);
+    }
+  }
+
+  /**
+   * Borrow an interpreter, waiting as long as all of them are in use.
+   *
+   * @return an initialized interpreter; must be passed to {@link #release} or
+   *         {@link #invalidate} when done.
+   * @throws InterruptedException the thread was interrupted while waiting.
+   */
+  public BufferingPrologControl borrow() throws InterruptedException {
+    return borrow(-1);
+  }
+
+  /**
+   * Borrow an interpreter, waiting at most the given time.
+   *
+   * @param timeout maximum time to wait for a busy pool.
+   * @param unit unit of {@code timeout}.
+   * @return an initialized interpreter; null if none became available in time.
+   * @throws InterruptedException the thread was interrupted while waiting.
+   */
+  public BufferingPrologControl borrow(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return borrow(Math.max(0, unit.toNanos(timeout)));
+  }
+
+  private BufferingPrologControl borrow(long timeout) throws InterruptedException {
+    long start = System.nanoTime();
+    boolean waited = false;
+    lock.lockInterruptibly();
+    try {
+      for (;;) {
+        if (closed)
+          throw new IllegalStateException("pool closed");
+        evictExpired(System.nanoTime());
+        Idle i = idle.pollFirst();
+        if (i != null) {
+          members.put(i.control, Boolean.TRUE);
+          borrowed(start);
+          return i.control;
+        }
+        if (size < maxSize) {
+          size++;
+          break;
+        }
+        if (!waited) {
+          waited = true;
+          waits++;
+        }
+        if (timeout < 0) {
+          available.await();
+        } else {
+          long left = timeout - (System.nanoTime() - start);
+          if (left <= 0)
+            return null;
+          available.awaitNanos(left);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    BufferingPrologControl ctl;
+    try {
+      ctl = create(true);
+    } catch (RuntimeException | Error e) {
+      discard(null);
+      throw e;
+    }
+    lock.lock();
+    try {
+      borrowed(start);
+    } finally {
+      lock.unlock();
+    }
+    return ctl;
+  }
+
+  /**
+   * Return a borrowed interpreter to the pool.
+   *
+   * @param ctl interpreter obtained from {@link #borrow()}.
+   * @throws IllegalArgumentException {@code ctl} is not from this pool.
+   * @throws IllegalStateException {@code ctl} was already handed back.
+   */
+  public void release(BufferingPrologControl ctl) {
+    returned(ctl);
+    try {
+      ctl.reset();
+      ctl.engine.restoreSettings();
+      ctl.engine.restoreDatabase(pmc);
+    } catch (RuntimeException e) {
+      discard(ctl);
+      throw e;
+    }
+    giveBack(ctl);
+  }
+
+  /**
+   * Drop a borrowed interpreter instead of returning it, for example because
+   * its query left streams open. Its slot is filled again on demand.
+   *
+   * @param ctl interpreter obtained from {@link #borrow()}.
+   * @throws IllegalArgumentException {@code ctl} is not from this pool.
+   * @throws IllegalStateException {@code ctl} was already handed back.
+   */
+  public void invalidate(BufferingPrologControl ctl) {
+    returned(ctl);
+    try {
+      ctl.engine.unwindAll(); // release mutexes held by the last query
+    } finally {
+      discard(ctl);
+    }
+  }
+
+  /** Drop the interpreters idle for longer than the idle timeout. */
+  public void evictIdle() {
+    lock.lock();
+    try {
+      evictExpired(System.nanoTime());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop all idle interpreters and refuse further borrows. Interpreters still
+   * borrowed are dropped when they are released.
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      size -= idle.size();
+      for (Idle i : idle)
+        members.remove(i.control);
+      idle.clear();
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return maximum number of interpreters. */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /** @return number of interpreters currently borrowed. */
+  public int getActiveCount() {
+    lock.lock();
+    try {
+      return size - idle.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return number of interpreters waiting in the pool. */
+  public int getIdleCount() {
+    lock.lock();
+    try {
+      return idle.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return highest number of interpreters borrowed at the same time. */
+  public int getPeakActiveCount() {
+    lock.lock();
+    try {
+      return peakActive;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return fraction of the pool currently borrowed, from 0 to 1. */
+  public double getSaturation() {
+    return (double) getActiveCount() / maxSize;
+  }
+
+  /** @return number of successful borrows. */
+  public long getBorrowCount() {
+    lock.lock();
+    try {
+      return borrows;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return number of borrows that found every interpreter in use, including those that timed out. */
+  public long getWaitCount() {
+    lock.lock();
+    try {
+      return waits;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return total time spent in successful borrows, including restores. */
+  public long getTotalBorrowTime(TimeUnit unit) {
+    lock.lock();
+    try {
+      return unit.convert(borrowNanos, TimeUnit.NANOSECONDS);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return longest time a single successful borrow took. */
+  public long getMaxBorrowTime(TimeUnit unit) {
+    lock.lock();
+    try {
+      return unit.convert(maxBorrowNanos, TimeUnit.NANOSECONDS);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return number of interpreters restored from the machine copy so far. */
+  public long getCreatedCount() {
+    lock.lock();
+    try {
+      return created;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return number of interpreters dropped for being idle too long. */
+  public long getEvictedCount() {
+    lock.lock();
+    try {
+      return evicted;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private BufferingPrologControl create(boolean borrowed) {
+    BufferingPrologControl ctl = new BufferingPrologControl(pmc);
+    if (setup != null)
+      setup.accept(ctl);
+    ctl.prepare();
+    ctl.engine.saveSettings();
+    lock.lock();
+    try {
+      created++;
+      members.put(ctl, borrowed);
+    } finally {
+      lock.unlock();
+    }
+    return ctl;
+  }
+
+  /** Marks a borrowed interpreter as handed back, or rejects it. */
+  private void returned(BufferingPrologControl ctl) {
+    lock.lock();
+    try {
+      Boolean borrowed = members.get(ctl);
+      if (borrowed == null)
+        throw new IllegalArgumentException("interpreter not from this pool");
+      if (!borrowed)
+        throw new IllegalStateException("interpreter already handed back");
+      members.put(ctl, Boolean.FALSE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void giveBack(BufferingPrologControl ctl) {
+    lock.lock();
+    try {
+      if (closed) {
+        size--;
+        members.remove(ctl);
+        return;
+      }
+      long now = System.nanoTime();
+      idle.addFirst(new Idle(ctl, now));
+      evictExpired(now);
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Gives up the slot of an interpreter that failed or was dropped; {@code ctl} may be null. */
+  private void discard(BufferingPrologControl ctl) {
+    lock.lock();
+    try {
+      if (ctl != null)
+        members.remove(ctl);
+      size--;
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Drops expired interpreters from the cold end of the idle list. */
+  private void evictExpired(long now) {
+    if (idleTimeout == 0)
+      return;
+    for (Iterator<Idle> i = idle.descendingIterator(); i.hasNext();) {
+      Idle next = i.next();
+      if (now - next.since < idleTimeout)
+        return;
+      members.remove(next.control);
+      i.remove();
+      size--;
+      evicted++;
+    }
+  }
+
+  private void borrowed(long start) {
+    long t = System.nanoTime() - start;
+    borrows++;
+    borrowNanos += t;
+    if (t > maxBorrowNanos)
+      maxBorrowNanos = t;
+    int active = size - idle.size();
+    if (active > peakActive)
+      peakActive = active;
+  }
+}
@@ -18,12 +18,14 @@ import java.util.logging.Logger;
  *  <li> level FINER - info about engine try, retry, trust, fail and executed {@link Operation}
  *  <li> level FINEST - nothing
  * </ul>
+ * <p>As a {@link PrologTracer} it also keeps the Prolog call stack, which is
+ * attached to exceptions as their Prolog stack trace.
  *
  *
  * @author semenov
  *
  */
-public class PrologLogger {
+public class PrologLogger implements PrologTracer {
 
 	private final Logger logger;
 
@@ -40,7 +42,7 @@ public class PrologLogger {
 		indent = new char[256];
 	}
 
-	final void init(ChoicePointFrame initialChoicePointFrame) {
+	public final void init(ChoicePointFrame initialChoicePointFrame) {
 		stackTop = 0;
 		//Arrays.fill(stackFrame, null);
 		stackFrame[0] = new PRED_true_0(null); // TODO check if null is ok
@@ -50,7 +52,7 @@ public class PrologLogger {
 		initialChoicePointFrame.loggerStackTop = stackTop;
 	}
 
-	final void fail(Operation next, ChoicePointFrame entry) {
+	public final void fail(Operation next, ChoicePointFrame entry) {
 		//  write to log
 		logger.log(Level.FINER, ()->{
 			stringBuilder.setLength(0);
@@ -64,7 +66,7 @@ public class PrologLogger {
 	}
 
 
-	final void jtry(Operation p, Operation next, ChoicePointFrame entry) {
+	public final void jtry(Operation p, Operation next, ChoicePointFrame entry) {
 		entry.ownerPredicate = stackFrame[stackTop];
 		entry.loggerStackTop = stackTop;
 		//  write to log
@@ -78,7 +80,7 @@ public class PrologLogger {
 		});
 	}
 
-	final void retry(Operation p, Operation next, ChoicePointFrame entry) {
+	public final void retry(Operation p, Operation next, ChoicePointFrame entry) {
 		//  write to log
 		logger.log(Level.FINER, ()->{
 			stringBuilder.setLength(0);
@@ -93,7 +95,7 @@ public class PrologLogger {
 		stackFrame[stackTop] = entry.ownerPredicate;
 	}
 
-	final void trust(Operation p, ChoicePointFrame entry) {
+	public final void trust(Operation p, ChoicePointFrame entry) {
 		// write to log
 		logger.log(Level.FINER, ()->{
 			stringBuilder.setLength(0);
@@ -179,7 +181,7 @@ public class PrologLogger {
 		}
 	}
 
-	final void close() {
+	public final void close() {
 		Arrays.fill(stackFrame, stackTop+1, stackFrame.length, null);
 	}
 }
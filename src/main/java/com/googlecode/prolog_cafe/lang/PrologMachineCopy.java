@@ -1,5 +1,13 @@
 package com.googlecode.prolog_cafe.lang;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.IdentityHashMap;
 import java.util.Map;
 
@@ -13,6 +21,15 @@ import java.util.Map;
  * <p>
  * Only the PrologClassLoader, internal hash manager and database are copied.
  * These are sections of an interpreter that relate to what code is available.
+ * Restored interpreters share the saved database and hash tables, and copy a
+ * part of them only when they first modify it.
+ * <p>
+ * A copy can also be written to a file with {@link #writeTo(Path)} and loaded
+ * in another process with {@link #load(Path, PrologClassLoader)}, which skips
+ * running {@code consult(+File)} and initialization goals again. The file
+ * holds the database and hash tables, including the clauses of every dynamic
+ * predicate; the compiled predicates are found again by the class loader
+ * given to {@code load}.
  */
 public class PrologMachineCopy {
   /**
@@ -35,6 +52,34 @@ public class PrologMachineCopy {
     return new PrologMachineCopy(engine);
   }
 
+  /**
+   * Load a copy written by {@link #writeTo(Path)}. The file is memory-mapped
+   * and decoded in one pass; the mapping is not kept afterwards.
+   *
+   * @param file file to read.
+   * @param pcl class loader to find the compiled predicates with.
+   * @return the copy.
+   * @throws IOException the file cannot be read or is not a machine copy.
+   */
+  public static PrologMachineCopy load(Path file, PrologClassLoader pcl) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      return load(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), pcl);
+    }
+  }
+
+  /**
+   * Load a copy from the bytes written by {@link #writeTo(OutputStream)},
+   * starting at the position of {@code buf}.
+   *
+   * @param buf buffer to read.
+   * @param pcl class loader to find the compiled predicates with.
+   * @return the copy.
+   * @throws IOException the buffer does not hold a machine copy.
+   */
+  public static PrologMachineCopy load(ByteBuffer buf, PrologClassLoader pcl) throws IOException {
+    return MachineCopyFormat.read(buf, pcl);
+  }
+
   protected final PrologClassLoader pcl;
   protected final HashtableOfTerm hashManager;
   protected final InternalDatabase internalDB;
@@ -50,43 +95,57 @@ public class PrologMachineCopy {
 //    try {
 //      engine.copyHash.clear();
       IdentityHashMap<VariableTerm,VariableTerm> copyHash = new IdentityHashMap<VariableTerm, VariableTerm>(); 
-      hashManager = copyDeep(engine.getHashManager(), copyHash);
+      hashManager = copyDeep(engine, engine.peekHashManager(), copyHash);
       internalDB = new InternalDatabase(engine.internalDB, true, copyHash);
 //    } finally {
 //      engine.copyHash.clear();
 //    }
   }
 
-  private static HashtableOfTerm copyDeep(HashtableOfTerm src, IdentityHashMap<VariableTerm,VariableTerm> copyHash) {
-    HashtableOfTerm hm = new HashtableOfTerm();
-    for (Map.Entry<Term, Term> e : src.entrySet()) {
-      Term val = e.getValue().copy(copyHash);
+  PrologMachineCopy(PrologClassLoader pcl, HashtableOfTerm hashManager, InternalDatabase internalDB) {
+    this.pcl = pcl;
+    this.hashManager = hashManager;
+    this.internalDB = internalDB;
+  }
 
-      if ((val instanceof JavaObjectTerm)) {
-        JavaObjectTerm o = (JavaObjectTerm) val;
-        if (o.obj instanceof HashtableOfTerm) {
-          val = new JavaObjectTerm(copyDeep((HashtableOfTerm) o.obj, copyHash));
-        }
-      }
+  /**
+   * Write this copy in a compact binary form.
+   *
+   * @param out stream to write to; it is flushed but not closed.
+   * @throws java.io.NotSerializableException the database or a hash table
+   *     holds a Java object other than a hash table, or a closure.
+   * @throws IOException the stream cannot be written.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    MachineCopyFormat.write(this, out);
+  }
 
-      hm.put(e.getKey().copy(copyHash), val);
+  /**
+   * Write this copy to a file, replacing it if it exists.
+   *
+   * @param file file to write.
+   * @throws IOException the file cannot be written, see {@link #writeTo(OutputStream)}.
+   */
+  public void writeTo(Path file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+      writeTo(out);
     }
-    return hm;
   }
 
-  static HashtableOfTerm copyShallow(HashtableOfTerm src) {
+  private static HashtableOfTerm copyDeep(Prolog engine, HashtableOfTerm src, IdentityHashMap<VariableTerm,VariableTerm> copyHash) {
     HashtableOfTerm hm = new HashtableOfTerm();
+    hm.shared = true;
     for (Map.Entry<Term, Term> e : src.entrySet()) {
-      Term val = e.getValue();
+      Term val = e.getValue().copy(copyHash);
 
       if ((val instanceof JavaObjectTerm)) {
         JavaObjectTerm o = (JavaObjectTerm) val;
         if (o.obj instanceof HashtableOfTerm) {
-          val = new JavaObjectTerm(copyShallow((HashtableOfTerm) o.obj));
+          val = new JavaObjectTerm(copyDeep(engine, engine.getHash((HashtableOfTerm) o.obj, false), copyHash));
         }
       }
 
-      hm.put(e.getKey(), val);
+      hm.put(e.getKey().copy(copyHash), val);
     }
     return hm;
   }
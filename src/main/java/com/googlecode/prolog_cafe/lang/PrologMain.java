@@ -48,6 +48,7 @@ public class PrologMain {
 		System.exit(1);
 	    }
 	    p = new BlockingPrologControl();
+	    p.setEnabled(Prolog.Feature.STACK_TRACE, true);
 	    p.setPredicate(Prolog.BUILTIN, "initialization", arg1, arg2);
 	    for (boolean r = p.call(); r; r = p.redo()) {}
 	    System.exit(0);
@@ -0,0 +1,61 @@
+package com.googlecode.prolog_cafe.lang;
+
+/**
+ * <p>Observes the execution of a {@link Prolog} engine.
+ * <p>The engine calls the tracer before every {@link Operation} it executes,
+ * whenever it creates, retries or discards a choice point, on backtracking and
+ * when an exception leaves an operation. All methods do nothing by default;
+ * the default tracer {@link #NONE} does nothing at all, so the calls compile
+ * away when no tracing is wanted.
+ * <p>{@link PrologLogger} is the tracer keeping the Prolog call stack needed for
+ * Prolog stack traces and execution logging. The engine uses it when
+ * {@link Prolog.Feature#STACK_TRACE} is enabled or its logger is loggable at
+ * level FINE; a custom tracer can be installed with
+ * {@link PrologControl#setTracer(PrologTracer)}.
+ *
+ * @see PrologControl#setTracer(PrologTracer)
+ */
+public interface PrologTracer {
+
+	/** A tracer that does nothing. */
+	PrologTracer NONE = new PrologTracer() {};
+
+	/** Called when the engine starts an execution. */
+	default void init(ChoicePointFrame initialChoicePointFrame) {
+	}
+
+	/** Called before <code>code</code> is executed. */
+	default void beforeExec(Operation code) {
+	}
+
+	/** Called when a choice point <code>entry</code> is created to try <code>p</code> and later <code>next</code>. */
+	default void jtry(Operation p, Operation next, ChoicePointFrame entry) {
+	}
+
+	/** Called when the choice point <code>entry</code> tries <code>p</code> and leaves <code>next</code>. */
+	default void retry(Operation p, Operation next, ChoicePointFrame entry) {
+	}
+
+	/** Called when the choice point <code>entry</code> tries its last alternative <code>p</code>. */
+	default void trust(Operation p, ChoicePointFrame entry) {
+	}
+
+	/** Called on backtracking to the choice point <code>entry</code>, which continues at <code>next</code>. */
+	default void fail(Operation next, ChoicePointFrame entry) {
+	}
+
+	/**
+	 * Called when an exception leaves an operation.
+	 * @return the exception to deliver to the Prolog program,
+	 * <code>t</code> wrapped into a {@link JavaException} if it is not a {@link PrologException}.
+	 */
+	default PrologException execThrows(RuntimeException t) {
+		if (t instanceof PrologException)
+			return (PrologException) t;
+		return new JavaException(t);
+	}
+
+	/** Called when the engine leaves an execution. */
+	default void close() {
+	}
+}
@@ -0,0 +1,392 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays representative goals on a {@link PrologEnginePool} before a service
+ * takes traffic.
+ * <p>
+ * The first queries after a start are slow while the generated predicate
+ * classes load and the JIT compiles their {@code exec} methods and the
+ * builtins they call. Warming up runs the same code paths ahead of time:
+ * <pre>
+ *   PrologWarmup warmup = new PrologWarmup();
+ *   warmup.add("user", "route", SymbolTerm.create("checkout"), new VariableTerm());
+ *   PrologWarmup.Report r = warmup.run(pool, 20, 4);
+ *   log.info(r.toString());
+ * </pre>
+ * Goals are either added explicitly or recorded from real traffic with
+ * {@link #record}, which keeps a uniform sample of the goals it sees, so
+ * frequent goals are replayed most. The goals can be listed with
+ * {@link #getGoals()} and added again after the next start.
+ * <p>
+ * Every goal is run on a borrowed interpreter, with a fresh copy of its
+ * arguments, for at most {@link #setMaxSolutions(int) 100 solutions} and
+ * {@link #setReductionLimit(long) a million inferences}, so that a generator
+ * or a goal that loops cannot hang the warm-up; a goal stopped by the
+ * reduction limit counts as an error. Changes a goal makes to the database
+ * are undone when the pool takes the interpreter back. The {@link Report} tells how many classes were loaded, how much time the
+ * JIT spent, and how long each round took; rounds that stop getting faster
+ * show the hot predicates are compiled.
+ */
+public final class PrologWarmup {
+  /** A goal to replay. */
+  public static final class Goal {
+    private final String pkg;
+    private final String functor;
+    private final Term[] args;
+
+    Goal(String pkg, String functor, Term[] args) {
+      this.pkg = pkg;
+      this.functor = functor;
+      this.args = copy(args);
+    }
+
+    /** @return package the functor is declared in. */
+    public String getPackage() {
+      return pkg;
+    }
+
+    /** @return name of the predicate. */
+    public String getFunctor() {
+      return functor;
+    }
+
+    /** @return a copy of the arguments. */
+    public Term[] getArgs() {
+      return copy(args);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(pkg).append(':');
+      Token.toQuotedString(functor, sb);
+      if (args.length > 0) {
+        sb.append('(');
+        for (int i = 0; i < args.length; i++) {
+          if (i > 0)
+            sb.append(',');
+          args[i].toQuotedString(sb);
+        }
+        sb.append(')');
+      }
+      return sb.toString();
+    }
+
+    private static Term[] copy(Term[] args) {
+      IdentityHashMap<VariableTerm, VariableTerm> copyHash = new IdentityHashMap<VariableTerm, VariableTerm>();
+      Term[] c = new Term[args.length];
+      for (int i = 0; i < args.length; i++)
+        c[i] = args[i].dereference().copy(copyHash);
+      return c;
+    }
+  }
+
+  /** Outcome of {@link PrologWarmup#run}. */
+  public static final class Report {
+    private final long executions;
+    private final long solutions;
+    private final long failures;
+    private final long errors;
+    private final RuntimeException firstError;
+    private final long[] roundNanos;
+    private final long loadedClasses;
+    private final long compilationMillis;
+
+    Report(long executions, long solutions, long failures, long errors,
+        RuntimeException firstError, long[] roundNanos, long loadedClasses,
+        long compilationMillis) {
+      this.executions = executions;
+      this.solutions = solutions;
+      this.failures = failures;
+      this.errors = errors;
+      this.firstError = firstError;
+      this.roundNanos = roundNanos;
+      this.loadedClasses = loadedClasses;
+      this.compilationMillis = compilationMillis;
+    }
+
+    /** @return number of goals run, over all rounds. */
+    public long getExecutions() {
+      return executions;
+    }
+
+    /** @return number of solutions found. */
+    public long getSolutions() {
+      return solutions;
+    }
+
+    /** @return number of goals that had no solution. */
+    public long getFailures() {
+      return failures;
+    }
+
+    /** @return number of goals that threw. */
+    public long getErrors() {
+      return errors;
+    }
+
+    /** @return the first exception thrown by a goal, or null. */
+    public RuntimeException getFirstError() {
+      return firstError;
+    }
+
+    /** @return wall time of every round, in nanoseconds. */
+    public long[] getRoundNanos() {
+      return roundNanos.clone();
+    }
+
+    /** @return number of classes the JVM loaded during the warm-up. */
+    public long getLoadedClasses() {
+      return loadedClasses;
+    }
+
+    /**
+     * @return milliseconds the JIT spent compiling during the warm-up, or -1
+     *         if the JVM does not report it.
+     */
+    public long getCompilationMillis() {
+      return compilationMillis;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(executions).append(" goals, ")
+          .append(solutions).append(" solutions, ")
+          .append(failures).append(" failed, ")
+          .append(errors).append(" errors; ")
+          .append(loadedClasses).append(" classes loaded");
+      if (compilationMillis >= 0)
+        sb.append(", ").append(compilationMillis).append(" ms compiling");
+      if (roundNanos.length > 0) {
+        sb.append("; rounds ")
+            .append(roundNanos[0] / 1000).append(" us first, ")
+            .append(roundNanos[roundNanos.length - 1] / 1000).append(" us last");
+      }
+      return sb.toString();
+    }
+  }
+
+  private final int maxRecorded;
+  private int maxSolutions = 100;
+  private long reductionLimit = 1000000;
+  private final List<Goal> goals = new ArrayList<Goal>();
+  private final List<Goal> recorded = new ArrayList<Goal>();
+  private long recordedCount;
+
+  /** Create a warm-up that keeps up to 1000 recorded goals. */
+  public PrologWarmup() {
+    this(1000);
+  }
+
+  /**
+   * Create a warm-up.
+   *
+   * @param maxRecorded number of goals {@link #record} keeps.
+   */
+  public PrologWarmup(int maxRecorded) {
+    if (maxRecorded < 0)
+      throw new IllegalArgumentException("invalid sample size " + maxRecorded);
+    this.maxRecorded = maxRecorded;
+  }
+
+  /**
+   * Add a goal to replay.
+   *
+   * @param pkg package the functor is declared in. Typically "user".
+   * @param functor a prolog predicate to execute.
+   * @param args arguments to pass in; they are copied.
+   */
+  public synchronized void add(String pkg, String functor, Term... args) {
+    goals.add(new Goal(pkg, functor, args));
+  }
+
+  /**
+   * Record a goal seen in production. Cheap enough to call before every
+   * query; once the sample is full, a goal replaces a random one with a
+   * probability that keeps the sample uniform over all recorded goals.
+   *
+   * @param pkg package the functor is declared in. Typically "user".
+   * @param functor a prolog predicate to execute.
+   * @param args arguments to pass in, as before the query runs; they are
+   *        copied only if the goal is kept.
+   */
+  public void record(String pkg, String functor, Term... args) {
+    int slot;
+    synchronized (this) {
+      long n = ++recordedCount;
+      if (recorded.size() < maxRecorded) {
+        slot = recorded.size();
+        recorded.add(null);
+      } else {
+        long r = ThreadLocalRandom.current().nextLong(n);
+        if (r >= maxRecorded)
+          return;
+        slot = (int) r;
+      }
+    }
+    Goal g = new Goal(pkg, functor, args);
+    synchronized (this) {
+      recorded.set(slot, g);
+    }
+  }
+
+  /**
+   * Set how many solutions of a goal are replayed before it is abandoned.
+   *
+   * @param max maximum number of solutions per goal; default 100.
+   */
+  public synchronized void setMaxSolutions(int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException("invalid solution count " + max);
+    maxSolutions = max;
+  }
+
+  /**
+   * Limit the inferences a single replayed goal may perform. The limit of
+   * the interpreter is put back after the goal.
+   *
+   * @param limit maximum number of inferences per goal; default one million,
+   *        {@link Long#MAX_VALUE} for no limit.
+   */
+  public synchronized void setReductionLimit(long limit) {
+    if (limit <= 0)
+      throw new IllegalArgumentException("invalid reduction limit " + limit);
+    reductionLimit = limit;
+  }
+
+  /** @return the goals added and recorded so far. */
+  public synchronized List<Goal> getGoals() {
+    List<Goal> all = new ArrayList<Goal>(goals.size() + recorded.size());
+    all.addAll(goals);
+    for (Goal g : recorded) {
+      if (g != null)
+        all.add(g);
+    }
+    return all;
+  }
+
+  /** @return number of goals passed to {@link #record} so far. */
+  public synchronized long getRecordedCount() {
+    return recordedCount;
+  }
+
+  /**
+   * Replay every goal on interpreters borrowed from a pool.
+   *
+   * @param pool pool to borrow interpreters from.
+   * @param rounds number of times every goal is run.
+   * @param threads number of threads replaying goals at once; each starts at
+   *        a different goal. At most the pool size is useful.
+   * @return what was run, loaded and compiled.
+   * @throws InterruptedException the thread was interrupted while waiting for
+   *         the pool or the replaying threads.
+   */
+  public Report run(final PrologEnginePool pool, int rounds, int threads)
+      throws InterruptedException {
+    if (rounds < 0 || threads <= 0)
+      throw new IllegalArgumentException("invalid rounds or threads");
+    final List<Goal> all = getGoals();
+    final Limits limits;
+    synchronized (this) {
+      limits = new Limits(maxSolutions, reductionLimit);
+    }
+    ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+    CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+    boolean jitTime = jit != null && jit.isCompilationTimeMonitoringSupported();
+    long classesBefore = classes.getTotalLoadedClassCount();
+    long jitBefore = jitTime ? jit.getTotalCompilationTime() : 0;
+
+    final Counters c = new Counters();
+    long[] roundNanos = new long[rounds];
+    pool.prestart(Math.min(threads, pool.getMaxSize()));
+    for (int r = 0; r < rounds && c.interrupted == null; r++) {
+      long start = System.nanoTime();
+      if (threads == 1) {
+        replay(pool, all, 0, limits, c);
+      } else {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+          final int offset = t * all.size() / threads;
+          workers[t] = new Thread(() -> replay(pool, all, offset, limits, c), "prolog-warmup-" + t);
+          workers[t].start();
+        }
+        for (Thread w : workers)
+          w.join();
+      }
+      roundNanos[r] = System.nanoTime() - start;
+    }
+    if (c.interrupted != null)
+      throw c.interrupted;
+
+    return new Report(c.executions.get(), c.solutions.get(), c.failures.get(),
+        c.errors.get(), c.firstError, roundNanos,
+        classes.getTotalLoadedClassCount() - classesBefore,
+        jitTime ? jit.getTotalCompilationTime() - jitBefore : -1);
+  }
+
+  private static final class Limits {
+    final int maxSolutions;
+    final long reductionLimit;
+
+    Limits(int maxSolutions, long reductionLimit) {
+      this.maxSolutions = maxSolutions;
+      this.reductionLimit = reductionLimit;
+    }
+  }
+
+  private static final class Counters {
+    final AtomicLong executions = new AtomicLong();
+    final AtomicLong solutions = new AtomicLong();
+    final AtomicLong failures = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    volatile RuntimeException firstError;
+    volatile InterruptedException interrupted;
+  }
+
+  private static void replay(PrologEnginePool pool, List<Goal> all, int offset,
+      Limits limits, Counters c) {
+    int n = all.size();
+    for (int i = 0; i < n; i++) {
+      Goal g = all.get((offset + i) % n);
+      BufferingPrologControl ctl;
+      try {
+        ctl = pool.borrow();
+      } catch (InterruptedException e) {
+        c.interrupted = e;
+        return;
+      }
+      boolean ok = false;
+      long savedLimit = ctl.getReductionLimit();
+      try {
+        ctl.setReductionLimit(limits.reductionLimit);
+        int[] left = {limits.maxSolutions};
+        int found = ctl.forEach(args -> --left[0] > 0, g.pkg, g.functor, g.getArgs());
+        c.solutions.addAndGet(found);
+        if (found == 0)
+          c.failures.incrementAndGet();
+        ok = true;
+      } catch (RuntimeException e) {
+        c.errors.incrementAndGet();
+        if (c.firstError == null)
+          c.firstError = e;
+      } finally {
+        ctl.setReductionLimit(savedLimit);
+        c.executions.incrementAndGet();
+        if (ok)
+          pool.release(ctl);
+        else
+          pool.invalidate(ctl);
+      }
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.googlecode.prolog_cafe.lang;
+/**
+ * Thrown when a running query is cancelled or passes its deadline.<br>
+ * Unlike other Prolog exceptions it cannot be caught by <code>catch/3</code>;
+ * it always unwinds the whole query and leaves the engine.
+ *
+ * @see PrologControl#cancel()
+ * @see PrologControl#setDeadline(java.time.Instant)
+ */
+public class QueryCancelledException extends PrologException {
+    /** A symbol <code>cancelled</code>. */
+    public static final SymbolTerm CANCELLED = SymbolTerm.intern("cancelled");
+    /** A symbol <code>time_limit_exceeded</code>. */
+    public static final SymbolTerm TIME_LIMIT_EXCEEDED = SymbolTerm.intern("time_limit_exceeded");
+
+    private final boolean deadline;
+
+    /** Constructs a new <code>QueryCancelledException</code>. */
+    public QueryCancelledException(boolean _deadline) {
+	super(_deadline ? "time limit exceeded" : "cancelled");
+	deadline = _deadline;
+    }
+
+    /** @return true if the query ran past its deadline; false if it was cancelled. */
+    public boolean isDeadline() {
+	return deadline;
+    }
+
+    /** Returns <code>time_limit_exceeded</code> or <code>cancelled</code>. */
+    public Term getMessageTerm() {
+	return deadline ? TIME_LIMIT_EXCEEDED : CANCELLED;
+    }
+
+    /** Returns a string representation of this <code>QueryCancelledException</code>. */
+    public String toString() {
+	return "{" + getMessage().toUpperCase() + "}";
+    }
+}
@@ -37,7 +37,7 @@ public class RepresentationException extends BuiltinException {
     public Term getMessageTerm() {
 	Term[] args = {
 	    new JavaObjectTerm(goal), 
-	    new IntegerTerm(argNo), 
+	    IntegerTerm.valueOf(argNo), 
 	    SymbolTerm.create(flag)};
 	return new ErrorTerm(this, REPRESENTATION_ERROR, args);
     }
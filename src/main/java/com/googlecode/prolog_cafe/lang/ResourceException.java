@@ -0,0 +1,32 @@
+package com.googlecode.prolog_cafe.lang;
+/**
+ * Resource error.<br>
+ * There will be a resource error when a query exhausts a resource
+ * or reaches a limit configured on its {@link PrologControl}.
+ */
+public class ResourceException extends PrologException {
+    /** A functor symbol of <code>resource_error/1</code>. */
+    public static final SymbolTerm RESOURCE_ERROR = SymbolTerm.intern("resource_error", 1);
+
+    /* resource ::= inferences */
+    /** Holds the name of the exhausted resource. */
+    public final String resource;
+
+    /** Constructs a new <code>ResourceException</code> for a resource. */
+    public ResourceException(String _resource) {
+	resource = _resource;
+    }
+
+    /** Returns a term representation of this <code>ResourceException</code>:
+     * <code>resource_error(resource)</code>.
+     */
+    public Term getMessageTerm() {
+	Term[] args = {SymbolTerm.intern(resource)};
+	return new ErrorTerm(this, RESOURCE_ERROR, args);
+    }
+
+    /** Returns a string representation of this <code>ResourceException</code>. */
+    public String toString() {
+	return "{RESOURCE ERROR: " + resource + " exhausted}";
+    }
+}
@@ -0,0 +1,47 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Receives the solutions of a goal without copying them.
+ * <p>
+ * The consumer is called while the engine is paused at a solution, with the
+ * arguments of the goal as bound at that point. Nothing is copied unless the
+ * consumer asks for it, so reading a few atoms or numbers out of every
+ * solution costs no allocation:
+ * <pre>
+ * ctl.forEach(args -&gt; {
+ *     counts.merge(args[1].name(), 1, Integer::sum);
+ *     return true;
+ * }, "user", "sale", region, new VariableTerm());
+ * </pre>
+ *
+ * @see BufferingPrologControl#forEach(SolutionConsumer, String, String, Term...)
+ */
+@FunctionalInterface
+public interface SolutionConsumer {
+  /**
+   * Called at every solution.
+   *
+   * @param args the arguments of the goal, dereferenced. They are live views
+   *        of the engine's bindings: they must not be bound or modified, and
+   *        they only hold the solution until this method returns. Use
+   *        {@link #copy(Term)} to keep any part of them.
+   * @return true to continue with the next solution; false to stop.
+   */
+  boolean accept(Term[] args);
+
+  /**
+   * Copy a term or subterm of the current solution, so that it stays valid
+   * after the consumer returns.
+   *
+   * @param t the term to copy.
+   * @return a copy of {@code t}, or {@code t} itself if it is immutable.
+   */
+  static Term copy(Term t) {
+    t = t.dereference();
+    if (t.isImmutable())
+      return t;
+    return t.copy(new IdentityHashMap<VariableTerm, VariableTerm>());
+  }
+}
@@ -0,0 +1,115 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls the solutions of a goal one at a time, on the calling thread.
+ * <p>
+ * The main loop of the engine runs until it reaches a solution and returns,
+ * leaving the choice points of the goal in place. {@link #next()} hands out a
+ * deep copy of the arguments at that solution, and the following
+ * {@link #hasNext()} backtracks into the goal for the next one. Only the
+ * current solution is held, so large or infinite solution sets are consumed
+ * in bounded memory, and a search that is not iterated further costs nothing.
+ * <p>
+ * An iterator that is not exhausted should be closed, which releases the
+ * mutexes and other trail state of the suspended goal. While it is open the
+ * control must not run any other goal.
+ *
+ * @see BufferingPrologControl#iterator(String, String, Term...)
+ */
+public final class SolutionIterator implements Iterator<Term[]>, AutoCloseable {
+  private final PrologControl control;
+  private final Term[] template;
+  private PrologTracer tracer;
+  private boolean started;
+  private boolean done;
+  /** Set when the engine stands at a solution not yet returned by {@link #next()}. */
+  private boolean pending;
+  /** Arguments of the current solution, handed out by {@link #advance()}. */
+  private Term[] view;
+
+  SolutionIterator(PrologControl control, Term[] template) {
+    this.control = control;
+    this.template = template;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (pending)
+      return true;
+    if (done)
+      return false;
+    Operation code;
+    if (started) {
+      code = control.engine.fail();
+    } else {
+      started = true;
+      control.suspendOnSuccess = true;
+      tracer = control.begin();
+      code = control.code;
+    }
+    control.suspended = false;
+    boolean found;
+    try {
+      found = control.solve(code, tracer);
+    } catch (RuntimeException e) {
+      finish();
+      throw e;
+    }
+    if (found)
+      pending = true;
+    else
+      finish();
+    return found;
+  }
+
+  /** @return a deep copy of the goal's arguments at the next solution. */
+  @Override
+  public Term[] next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    pending = false;
+    Term[] r = new Term[template.length];
+    for (int i = 0; i < template.length; i++)
+      r[i] = control.engine.copy(template[i]);
+    return r;
+  }
+
+  /**
+   * Moves to the next solution without copying it.
+   *
+   * @return the goal's arguments, dereferenced and valid until the engine
+   *         moves on; null once there are no more solutions.
+   */
+  Term[] advance() {
+    if (!hasNext())
+      return null;
+    pending = false;
+    if (view == null)
+      view = new Term[template.length];
+    for (int i = 0; i < template.length; i++)
+      view[i] = template[i].dereference();
+    return view;
+  }
+
+  /** Abandon the remaining solutions. */
+  @Override
+  public void close() {
+    if (done)
+      return;
+    if (started)
+      control.engine.unwindAll(); // release mutexes and other undoable state
+    finish();
+  }
+
+  private void finish() {
+    done = true;
+    pending = false;
+    control.suspendOnSuccess = false;
+    control.suspended = false;
+    if (started)
+      control.end(tracer);
+  }
+}
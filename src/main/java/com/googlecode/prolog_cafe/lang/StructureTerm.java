@@ -28,8 +28,12 @@ import com.googlecode.prolog_cafe.lang.Term.TermTreeIterator;
  * @version 1.0
  */
 public class StructureTerm extends Term {
-    /** Holds the functor symbol of this <code>StructureTerm</code>. */
-	private final String name;
+    /**
+     * Holds the functor symbol of this <code>StructureTerm</code>, always the
+     * canonical atom from the symbol table, so functors usually compare by
+     * reference. See {@link #sameFunctor}.
+     */
+	private final SymbolTerm functor;
 
     /** Holds the argument terms of this <code>StructureTerm</code>. */
     private final Term[] args;
@@ -42,7 +46,7 @@ public class StructureTerm extends Term {
      * <code>args</code> is the argument terms respectively.
      */
     public StructureTerm(String name, Term... _args){
-    	this.name = name;
+    	functor = SymbolTerm.intern(name, _args.length);
 		args = _args;
 		int i = args.length-1;
 		while(i>=0 && args[i].isImmutable()){
@@ -59,7 +63,7 @@ public class StructureTerm extends Term {
 	public StructureTerm(SymbolTerm _functor, Term... _args) {
 		if (_functor.arity() != _args.length)
 			throw new InternalException("Invalid argument length in StructureTerm");
-		name = _functor.name();
+		functor = _functor.canonical();
 		args = _args;
 		int i=args.length-1;
 		while(i>=0 && args[i].isImmutable()){
@@ -72,7 +76,7 @@ public class StructureTerm extends Term {
      * @return the value of <code>functor</code>.
      * @see #functor
      */
-    public final SymbolTerm functor(){ return SymbolTerm.intern(name, args.length); }
+    public final SymbolTerm functor(){ return functor; }
 
     /** Returns the arity of this <code>StructureTerm</code>.
      * @return the value of <code>arity</code>.
@@ -91,12 +95,12 @@ public class StructureTerm extends Term {
      * @see #functor
      * @see SymbolTerm#name
      */
-    public final String name(){ return name; }
+    public final String name(){ return functor.name(); }
 
     public final Term arg(int nth) { return args[nth]; }
 
 	public final boolean unify(Term t, Trail trail) {
-		t = t.val; // fast dereference //t = t.dereference();
+		t = t.dereference();
 		if (t instanceof VariableTerm) {
 			return ((VariableTerm) t).bind(this, trail);
 		}
@@ -105,7 +109,7 @@ public class StructureTerm extends Term {
 		}
 			
 		StructureTerm st = (StructureTerm) t;
-		if (args.length!=st.args.length || !name.equals(st.name)){
+		if (!sameFunctor(functor, st.functor)){
 			return false;
 		}
     	for(int i=0; i<args.length; i++) {
@@ -125,7 +129,7 @@ public class StructureTerm extends Term {
 		for (int i = 0; i < len; i++) {
 			a[i] = args[i].copy(copyHash);
 		}
-		return new StructureTerm(name, a);
+		return new StructureTerm(functor, a);
 	}
 
 	@Override
@@ -167,7 +171,7 @@ public class StructureTerm extends Term {
 		if (!(obj instanceof StructureTerm))
 			return false;
 		StructureTerm st = (StructureTerm) obj;
-		if (!name.equals(st.name) || args.length!=st.args.length)
+		if (!sameFunctor(functor, st.functor))
 			return false;
 		for (int i = 0; i < args.length; i++) {
 			if (!args[i].equals(st.args[i].dereference()))
@@ -178,7 +182,7 @@ public class StructureTerm extends Term {
 
 	public int hashCode() {
 		int h = 1;
-		h = 31 * h + name.hashCode();
+		h = 31 * h + functor.hashCode();
 		for (Term arg : args) {
 			h = 31 * h + arg.dereference().hashCode();
 		}
@@ -278,8 +282,8 @@ public class StructureTerm extends Term {
 		}
 		if (args.length != arity2)
 			return (args.length - arity2);
-		functor = functor();
-		if (!functor.equals(functor2))
+		functor = this.functor;
+		if (!sameFunctor(functor, functor2))
 			return functor.compareTo(functor2);
 		for (int i = 0; i < args.length; i++) {
 			rc = args[i].compareTo(args2[i].dereference());
@@ -288,4 +292,14 @@ public class StructureTerm extends Term {
 		}
 		return EQUAL;
 	}
+
+	/**
+	 * Checks two functors for equality. Both are normally the canonical atom,
+	 * so the reference test decides; name and arity are compared only when the
+	 * references differ, so a functor that did not come from the symbol table
+	 * still matches.
+	 */
+	private static boolean sameFunctor(SymbolTerm f1, SymbolTerm f2) {
+		return f1 == f2 || (f1.arity() == f2.arity() && f1.name().equals(f2.name()));
+	}
 }
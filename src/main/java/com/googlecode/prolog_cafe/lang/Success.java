@@ -15,11 +15,18 @@ public class Success implements Operation {
     /**
      * Backtracks and returns a next clause
      * after invoking the <code>PrologControl.success()</code>.
+     * When solutions are pulled by a {@link SolutionIterator}, returns
+     * <code>null</code> instead, suspending the main loop at the solution.
      * @param engine Prolog engine
      * @see PrologControl#success
      */
     public Operation exec(Prolog engine) {
-	engine.control.success();
+	PrologControl c = engine.control;
+	if (c.suspendOnSuccess) {
+	    c.suspended = true;
+	    return null;
+	}
+	c.success();
 	return engine.fail();
     }
 
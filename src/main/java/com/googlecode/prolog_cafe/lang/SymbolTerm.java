@@ -2,12 +2,18 @@ package com.googlecode.prolog_cafe.lang;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 /**
  * Atom.<br>
  * The <code>SymbolTerm</code> class represents a Prolog atom.<br>
+ * Every atom has one canonical instance in the symbol table, which carries a
+ * dense integer {@link #id()}. Atoms made by {@link #create(String)} or
+ * {@link #subsymbol(int)} look up their canonical atom the first time they are
+ * compared, so that unification and equality are a reference comparison.
  *
  * <pre>
  *   Term t = SymbolTerm.makeSymbol("kobe");
@@ -20,39 +26,164 @@ import java.util.logging.Logger;
  */
 public abstract class SymbolTerm extends Term {
     /** Symbol table. */
-    private static final ConcurrentHashMap<Key, InternRef> SYMBOL_TABLE =
-      new ConcurrentHashMap<Key, InternRef>();
+    private static final Table SYMBOL_TABLE = new Table();
 
     private static final ReferenceQueue<Interned> DEAD = new ReferenceQueue<Interned>();
 
-    private static final class Key {
+    /** Next atom id never used. */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    /** Guards {@link #freeIds} and {@link #freeIdCount}. */
+    private static final Object FREE_IDS_LOCK = new Object();
+    /** Ids of reclaimed atoms, reused before new ones. */
+    private static int[] freeIds = new int[64];
+    private static int freeIdCount;
+
+    private static final LongAdder CREATED = new LongAdder();
+    private static final LongAdder RECLAIMED = new LongAdder();
+
+    /**
+     * Thread reclaiming dead atoms, see {@link #stopReaper()}. While it is not
+     * running, {@link #intern} reclaims them instead.
+     */
+    private static volatile Thread reaper = startReaper();
+
+    private static final class InternRef extends WeakReference<Interned> {
+      final int hash;
+      final int id;
+
+      InternRef(Interned sym, int hash) {
+        super(sym, DEAD);
+        this.hash = hash;
+        this.id = sym.id;
+      }
+    }
+
+    /** Entry of a bucket chain; chains are copied, never modified. */
+    private static final class Node {
       final String name;
       final int arity;
+      final int hash;
+      final InternRef ref;
+      final Node next;
+
+      Node(String name, int arity, int hash, InternRef ref, Node next) {
+        this.name = name;
+        this.arity = arity;
+        this.hash = hash;
+        this.ref = ref;
+        this.next = next;
+      }
 
-      Key(String n, int a) {
-        name = n;
-        arity = a;
+      Node(Node n, Node next) {
+        this(n.name, n.arity, n.hash, n.ref, next);
       }
+    }
 
-      @Override
-      public int hashCode() {
-        return name.hashCode();
+    /**
+     * Hash table from name and arity to interned atom, split in segments that
+     * are locked separately for writes. Reads take no lock and allocate
+     * nothing: a reader that misses an atom added concurrently looks again
+     * under the lock before adding it.
+     */
+    private static final class Table {
+      private final Segment[] segments;
+      private final int shift;
+
+      Table() {
+        int n = Integer.highestOneBit(Math.max(16, Runtime.getRuntime().availableProcessors() * 4) - 1) << 1;
+        segments = new Segment[Math.min(n, 256)];
+        for (int i = 0; i < segments.length; i++)
+          segments[i] = new Segment();
+        shift = 32 - Integer.numberOfTrailingZeros(segments.length);
       }
 
-      @Override
-      public boolean equals(Object other) {
-        Key k = (Key) other;
-        return arity == k.arity && name.equals(k.name);
+      static int hash(String name, int arity) {
+        int h = name.hashCode() * 31 + arity;
+        return h ^ (h >>> 16) ^ (h << 7);
       }
-    }
 
-    private static final class InternRef extends WeakReference<Interned> {
-      final Key key;
+      Segment segment(int hash) {
+        return segments[hash >>> shift];
+      }
 
-      InternRef(Key key, Interned sym) {
-        super(sym, DEAD);
-        this.key = key;
+      static Interned get(Node[] b, String name, int arity, int hash) {
+        for (Node n = b[hash & (b.length - 1)]; n != null; n = n.next) {
+          if (n.hash == hash && n.arity == arity && n.name.equals(name)) {
+            Interned sym = n.ref.get();
+            if (sym != null)
+              return sym;
+          }
+        }
+        return null;
       }
+
+      Interned get(String name, int arity, int hash) {
+        return get(segment(hash).buckets, name, arity, hash);
+      }
+
+      Interned intern(String name, int arity, int hash) {
+        Segment seg = segment(hash);
+        synchronized (seg) {
+          Node[] b = seg.buckets;
+          Interned sym = get(b, name, arity, hash);
+          if (sym != null)
+            return sym;
+          sym = new Interned(name, arity, nextId());
+          if (seg.count >= b.length - (b.length >>> 2))
+            b = rehash(b);
+          int i = hash & (b.length - 1);
+          b[i] = new Node(name, arity, hash, new InternRef(sym, hash), b[i]);
+          seg.count++;
+          seg.buckets = b; // publish
+          return sym;
+        }
+      }
+
+      /** Removes the entry of a cleared reference. */
+      boolean remove(InternRef ref) {
+        Segment seg = segment(ref.hash);
+        synchronized (seg) {
+          Node[] b = seg.buckets;
+          int i = ref.hash & (b.length - 1);
+          Node head = b[i];
+          Node n = head;
+          while (n != null && n.ref != ref)
+            n = n.next;
+          if (n == null)
+            return false;
+          Node chain = n.next;
+          for (Node p = head; p != n; p = p.next)
+            chain = new Node(p, chain);
+          b[i] = chain;
+          seg.count--;
+          seg.buckets = b; // publish
+          return true;
+        }
+      }
+
+      private static Node[] rehash(Node[] old) {
+        Node[] b = new Node[old.length << 1];
+        for (Node head : old) {
+          for (Node n = head; n != null; n = n.next) {
+            int i = n.hash & (b.length - 1);
+            b[i] = new Node(n, b[i]);
+          }
+        }
+        return b;
+      }
+
+      int size() {
+        int n = 0;
+        for (Segment seg : segments)
+          n += seg.count;
+        return n;
+      }
+    }
+
+    private static final class Segment {
+      volatile Node[] buckets = new Node[16];
+      /** Number of entries, including cleared ones not yet removed. */
+      volatile int count;
     }
 
     private static final class Dynamic extends SymbolTerm {
@@ -62,8 +193,12 @@ public abstract class SymbolTerm extends Term {
     }
 
     private static final class Interned extends SymbolTerm {
-      Interned(String name, int arity) {
+      final int id;
+
+      Interned(String name, int arity, int id) {
         super(name, arity);
+        this.id = id;
+        canonical = this;
       }
     }
     
@@ -74,26 +209,6 @@ public abstract class SymbolTerm extends Term {
     		super(name, arity, start, finish);
     	}
     	
-        @Override
-        public boolean equals(Object obj) {
-        	if (this==obj){
-        		return true;
-        	} else if (obj instanceof SymbolTerm){
-        		SymbolTerm that = (SymbolTerm) obj;
-        		int thisLength = finish - start;
-        		int thatLength = that.finish - that.start; 		
-        		return this.arity==that.arity && (thisLength==thatLength) &&    				
-        				this.name.regionMatches(start, that.name, that.start, thisLength);
-        	}
-        	return false;        	
-        }
-        
-        @Override
-        public boolean unify(Term t, Trail trail) {
-            t = t.dereference();
-            return (t instanceof VariableTerm) ? ((VariableTerm) t).bind(this, trail) : equals(t);
-        }
-        
         @Override
         public int hashCode() {
             int h = hash;
@@ -168,48 +283,108 @@ public abstract class SymbolTerm extends Term {
 
     /** Returns a Prolog functor for the given name and arity. */
     public static SymbolTerm intern(String _name, int _arity) {
-//      _name = _name.intern();
-      Key key = new Key(_name, _arity);
+      int hash = Table.hash(_name, _arity);
+      Interned sym = SYMBOL_TABLE.get(_name, _arity, hash);
+      if (sym != null)
+        return sym;
+      Thread r = reaper;
+      if (r == null || !r.isAlive())
+        gc();
+      return SYMBOL_TABLE.intern(_name, _arity, hash);
+    }
 
-      Reference<? extends Interned> ref = SYMBOL_TABLE.get(key);
-      if (ref != null) {
-        Interned sym = ref.get();
-        if (sym != null)
-          return sym;
-        SYMBOL_TABLE.remove(key, ref);
-        ref.enqueue();
-      }
+    /**
+     * Removes the atoms that have been garbage collected from the symbol
+     * table. A background thread does this as atoms die; this method is only
+     * needed where that thread is not running.
+     */
+    static void gc() {
+      Reference<? extends Interned> ref;
+      while ((ref = DEAD.poll()) != null)
+        reclaim((InternRef) ref);
+    }
 
-      gc();
+    private static void reclaim(InternRef dead) {
+      if (!SYMBOL_TABLE.remove(dead))
+        return;
+      synchronized (FREE_IDS_LOCK) {
+        if (freeIdCount == freeIds.length)
+          freeIds = Arrays.copyOf(freeIds, freeIdCount << 1);
+        freeIds[freeIdCount++] = dead.id;
+      }
+      RECLAIMED.increment();
+    }
 
-      Interned sym = new Interned(_name, _arity);
-      InternRef nref = new InternRef(key, sym);
-      InternRef oref = SYMBOL_TABLE.putIfAbsent(key, nref);
-      if (oref != null) {
-        SymbolTerm osym = oref.get();
-        if (osym != null)
-          return osym;
+    private static int nextId() {
+      CREATED.increment();
+      synchronized (FREE_IDS_LOCK) {
+        if (freeIdCount > 0)
+          return freeIds[--freeIdCount];
       }
-      return sym;
+      return NEXT_ID.getAndIncrement();
     }
 
-    static void gc() {
-      Reference<? extends Interned> ref;
-      while ((ref = DEAD.poll()) != null) {
-        SYMBOL_TABLE.remove(((InternRef) ref).key, ref);
+    private static Thread startReaper() {
+      try {
+        Thread t = new Thread(() -> {
+          for (;;) {
+            try {
+              reclaim((InternRef) DEAD.remove());
+            } catch (InterruptedException e) {
+              return;
+            } catch (Throwable e) {
+              Logger.getLogger(SymbolTerm.class.getName())
+                  .log(Level.WARNING, "Cannot reclaim atom", e);
+            }
+          }
+        }, "prolog-atom-reaper");
+        t.setDaemon(true);
+        t.setContextClassLoader(null);
+        t.start();
+        return t;
+      } catch (SecurityException | OutOfMemoryError e) {
+        return null;
       }
     }
 
+    /**
+     * Stops the thread that reclaims dead atoms. The thread holds on to the
+     * class loader of Prolog Cafe, so an application that loads it in its own
+     * class loader, such as a web application, should call this when it is
+     * unloaded. Dead atoms are then reclaimed by the threads interning atoms.
+     */
+    public static void stopReaper() {
+      Thread t = reaper;
+      reaper = null;
+      if (t != null)
+        t.interrupt();
+    }
+
+    /**
+     * Returns the number of atoms in the symbol table, including those that
+     * have died but are not yet reclaimed.
+     */
+    public static int getAtomCount() {
+      return SYMBOL_TABLE.size();
+    }
+
+    /**
+     * Returns the number of atoms added to the symbol table since the start;
+     * sampled periodically, its increase gives the creation rate.
+     */
+    public static long getCreatedAtomCount() {
+      return CREATED.sum();
+    }
+
+    /** Returns the number of garbage collected atoms removed from the symbol table. */
+    public static long getReclaimedAtomCount() {
+      return RECLAIMED.sum();
+    }
+
     private static SymbolTerm softReuse(String _name, int _arity) {
-      Key key = new Key(_name, _arity);
-      Reference<? extends Interned> ref = SYMBOL_TABLE.get(key);
-      if (ref != null) {
-        Interned sym = ref.get();
-        if (sym != null)
-          return sym;
-        SYMBOL_TABLE.remove(key, ref);
-        ref.enqueue();
-      }
+      Interned sym = SYMBOL_TABLE.get(_name, _arity, Table.hash(_name, _arity));
+      if (sym != null)
+        return sym;
 
       // If reuse wasn't possible, construct the term dynamically.
       return new Dynamic(_name, _arity);
@@ -225,6 +400,8 @@ public abstract class SymbolTerm extends Term {
     protected final int start;
     /** Holds end Index in name */
     protected final int finish;
+    /** The instance in the symbol table with the same name and arity, once looked up. */
+    SymbolTerm canonical;
 
     /** Constructs a new Prolog atom (or functor) with the given symbol name and arity. */
     protected SymbolTerm(String _name, int _arity) {
@@ -256,6 +433,27 @@ public abstract class SymbolTerm extends Term {
     	return name;
     }
 
+    /**
+     * Returns the atom in the symbol table with the same name and arity as
+     * this one. Two atoms are equal if and only if their canonical atoms are
+     * the same instance.
+     */
+    public final SymbolTerm canonical() {
+      SymbolTerm c = canonical;
+      if (c == null)
+        canonical = c = intern(name(), arity);
+      return c;
+    }
+
+    /**
+     * Returns the integer id of this atom. Equal atoms have the same id, and
+     * ids are dense: an id is reused only after every atom that had it has
+     * been garbage collected.
+     */
+    public final int id() {
+      return ((Interned) canonical()).id;
+    }
+
     public final int start() { return start; }
 
     public final int finish() {return finish; }
@@ -319,11 +517,11 @@ public abstract class SymbolTerm extends Term {
     // TODO startsWith(), endsWith(), indexOf()
 
     /* Term */
-    public boolean unify(Term t, Trail trail) {
-      t = t.val; // fast dereference
-      return (t instanceof VariableTerm) ? ((VariableTerm) t).bind(this, trail) : 
-    	  ((t instanceof Partial) ? t.unify(this, trail) : 
-    		  ((t instanceof SymbolTerm) && (arity==((SymbolTerm)t).arity) && name.equals(((SymbolTerm)t).name)));
+    public final boolean unify(Term t, Trail trail) {
+      t = t.dereference();
+      if (t instanceof SymbolTerm)
+        return this == t || canonical() == ((SymbolTerm) t).canonical();
+      return (t instanceof VariableTerm) && ((VariableTerm) t).bind(this, trail);
     }
 
     @Override
@@ -332,9 +530,9 @@ public abstract class SymbolTerm extends Term {
     }
 
     @Override
-    public boolean equals(Object obj) {
-    	return (obj instanceof Partial) ? ((Partial)obj).equals(this) :
-    		((obj instanceof SymbolTerm) && (arity==((SymbolTerm)obj).arity) && name.equals(((SymbolTerm)obj).name));
+    public final boolean equals(Object obj) {
+      return this == obj
+          || (obj instanceof SymbolTerm && canonical() == ((SymbolTerm) obj).canonical());
     }
 
 //    private static boolean eq(SymbolTerm a, Term b0) {
@@ -396,6 +594,9 @@ public abstract class SymbolTerm extends Term {
 	    return BEFORE;
 	if (this == anotherTerm)
 	    return EQUAL;
+	SymbolTerm c = canonical;
+	if (c != null && c == ((SymbolTerm) anotherTerm).canonical)
+	    return EQUAL;
 	int x = name().compareTo(((SymbolTerm)anotherTerm).name());
 	if (x != 0)
 	    return x;
@@ -44,7 +44,7 @@ public class SyntaxException extends BuiltinException {
     public Term getMessageTerm() {
 	Term[] args = {
 	    new JavaObjectTerm(goal), 
-	    new IntegerTerm(argNo), 
+	    IntegerTerm.valueOf(argNo), 
 	    SymbolTerm.create(type),
 	    culprit,
 	    SymbolTerm.create(message) };
@@ -26,7 +26,9 @@ public abstract class Term implements Comparable<Term> {
     /** Holds an integer value <code>-1</code>. */
     public static final int BEFORE = -1;
     
-    /** Holds a term to which this variable is bound. Initial value is <code>this</code> (self-reference). 
+    /** Holds a term to which this variable is bound. Initial value is <code>this</code> (self-reference).
+     * A bound variable may refer to another variable, forming a reference chain
+     * which {@link #dereference()} follows to its end.
      * Moved from VariableTerm here in order to force inlining of method {@link #dereference()}*/
     protected Term val = this;
 
@@ -150,8 +152,16 @@ public abstract class Term implements Comparable<Term> {
     /** Returns a copy of this object. */
     protected Term copy(IdentityHashMap<VariableTerm,VariableTerm> copyHash) { return this; }
 
-    /** Returns the dereference value of this term. */
-    public final Term    dereference() { return val; }
+    /**
+     * Returns the dereference value of this term: the end of its reference
+     * chain, which is either an unbound variable or a non-variable term.
+     */
+    public final Term    dereference() {
+        Term t = this, v;
+        while ((v = t.val) != t)
+            t = v;
+        return t;
+    }
 
     /**
      * Check whether this term is a ground term.
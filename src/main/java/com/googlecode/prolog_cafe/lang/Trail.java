@@ -1,6 +1,7 @@
 package com.googlecode.prolog_cafe.lang;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
 
 /**
@@ -26,6 +27,12 @@ public final class Trail {
 
 	private int base;
 
+	/** Highest top seen before the trail last shrank, see {@link #peak()}. */
+	private int peak;
+
+	/** Maximum number of entries, checked whenever a page is added. */
+	private int max = Integer.MAX_VALUE;
+
 	/** Current timestamp of the top of {@link ChoicePointStack}. */
 	long timeStamp;
 
@@ -41,6 +48,7 @@ public final class Trail {
 		buffer = new Undoable[pageSize];
 		top = -1;
 		base = 0;
+		peak = -1;
 	}
 
 	/** Constructs a new trail stack with the given page size and initial number of pages. */
@@ -50,6 +58,7 @@ public final class Trail {
 		buffer = new Undoable[pageSize];
 		top = -1;
 		base = 0;
+		peak = -1;
 	}
 
 	/** Discards all entries. */
@@ -58,16 +67,30 @@ public final class Trail {
 	/** Pushs an entry to this <code>Trail</code>. */
 	public void push(Undoable t) {
 		if (++top >= pageSize) {
-			buffersList.addLast(buffer);
-			buffer = new Undoable[pageSize];
-			top = 0;
-			base+=pageSize;
+			addPage(t);
+			return;
 		}
 		buffer[top] = t;
 	}
 
+	/**
+	 * Starts a new page with <code>t</code> as its first entry. The entry is
+	 * recorded before the limit is enforced, so that the binding it undoes is
+	 * still reverted when the <code>resource_error</code> is handled.
+	 */
+	private void addPage(Undoable t) {
+		buffersList.addLast(buffer);
+		buffer = new Undoable[pageSize];
+		top = 0;
+		base+=pageSize;
+		buffer[0] = t;
+		if (base >= max)
+			throw new ResourceException("trail");
+	}
+
 	/** Pops an entry from this <code>Trail</code>. */
 	public Undoable pop() {
+		if (base + top > peak) peak = base + top;
 		Undoable t = buffer[top];
 		buffer[top--] = null;
 		if (top<0 && base>0){
@@ -78,12 +101,18 @@ public final class Trail {
 		return t;
 	}
 
-	/** Discards all entries. */
+	/** Discards all entries, keeping only the first page allocated. */
 	private void deleteAll() {
-		buffersList.clear();
-		buffer = new Undoable[buffer.length];
+		if (buffersList.isEmpty()) {
+			Arrays.fill(buffer, 0, top + 1, null);
+		} else {
+			buffer = buffersList.peekFirst();
+			buffersList.clear();
+			Arrays.fill(buffer, null);
+		}
 		top = -1;
 		base = 0;
+		peak = -1;
 	}
 
 	/** Tests if this stack has no entry. */
@@ -94,13 +123,31 @@ public final class Trail {
 	/** Current allocation of the trail storage array.  */
 	public int max() { return base+pageSize; }
 
+	/**
+	 * Limits the number of entries. The limit is enforced whenever a new page
+	 * is needed, so it is rounded up to a whole number of pages; exceeding it
+	 * raises <code>resource_error(trail)</code>.
+	 */
+	void setMax(int max) { this.max = max; }
+
+	/** Returns the limit set by {@link #setMax(int)}. */
+	int getMax() { return max; }
+
 	/** Returns the value of <code>top</code>.
 	 * @see #top
 	 */
 	public int top() { return base + top; }
 
+	/**
+	 * Returns the highest value <code>top</code> has reached since the
+	 * last {@link #init()}. The mark is only updated when entries are
+	 * removed, so {@link #push(Undoable)} stays unchanged.
+	 */
+	public int peak() { return Math.max(peak, top()); }
+
 	/** Unwinds all entries after the value of <code>i</code>. */
 	public void unwind(int i) {
+		if (base + top > peak) peak = base + top;
 		while (base + top > i) {
 			Undoable t = buffer[top];
 			buffer[top--] = null;
@@ -1,12 +1,8 @@
 package com.googlecode.prolog_cafe.lang;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.List;
 
 /**
  * Variable.<br>
@@ -15,6 +11,9 @@ import java.util.List;
  * <pre>
  *   Term t = new VariableTerm();
  * </pre>
+ * A variable bound to another variable refers to it through <code>val</code>,
+ * as in the WAM: binding and undoing a binding each write a single field,
+ * and {@link #dereference()} follows the reference chain.
  *
  * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
@@ -23,10 +22,6 @@ import java.util.List;
 public class VariableTerm extends Term implements Undoable {
     /** A CPF time stamp when this object is newly constructed. */
     private final long timeStamp;
-    /** Variable terms, that reference to (use value of) this one */  
-    private List<VariableTerm> upRef = null;
-    /** Opposite reference to upRef */
-    private VariableTerm downRef = null;
 
     /** Constructs a new logical variable so that
      * the <code>timeStamp</code> field is set to <code>Long.MIN_VALUE</code>.
@@ -56,7 +51,7 @@ public class VariableTerm extends Term implements Undoable {
      * If this is an unbound variable, the <code>unify</code> method binds this to 
      * the dereferenced value of argument term: <code>bind(t.dereference(), trail)</code>,
      * and returns <code>true</code>.
-     * Otherwise, it returns a <code>boolean</code> whose value is <code>val.unify(t, trail)</code>.
+     * Otherwise, it returns a <code>boolean</code> whose value is <code>dereference().unify(t, trail)</code>.
      * @param t the term to be unified with.
      * @param trail Trail Stack.
      * @return <code>true</code> if succeeds, otherwise <code>false</code>.
@@ -65,63 +60,37 @@ public class VariableTerm extends Term implements Undoable {
      * @see Trail
      */
 	public final boolean unify(Term t, Trail trail) {
-		return (val instanceof VariableTerm) ? ((VariableTerm) val).bind(t.dereference(), trail) : val.unify(t, trail);
+		Term d = dereference();
+		return (d instanceof VariableTerm) ? ((VariableTerm) d).bind(t.dereference(), trail) : d.unify(t, trail);
 	}
-	
-	private void updateUpRef(Term value) {
-		if (upRef==null || upRef.isEmpty()){ // short cut
-			val = value;
-			return;
-		}
-		Deque<VariableTerm> queue = new ArrayDeque<VariableTerm>();
-		queue.add(this);
-		while (!queue.isEmpty()){
-			VariableTerm v = queue.poll();			
-			v.val = value;
-			if (v.upRef!=null) {
-				for (VariableTerm u: v.upRef){
-					if (u.val!=value){ // queue only not visited variable terms
-						queue.add(u);
-					}
-				}
-			}
-		}		
-	}
-	
-	private void bindUpRef(VariableTerm upVariable){
-		if (this.upRef==null){
-			this.upRef = new ArrayList<VariableTerm>(4);
-		}
-		this.upRef.add(upVariable);
-		upVariable.downRef = this;
-		upVariable.updateUpRef(this.val);
-	}
-	
+
     /** 
      * Binds this variable to a given term. 
      * And pushs this variable to trail stack if necessary. 
+     * This variable must be unbound, and <code>p</code> dereferenced.
+     * When <code>p</code> is an unbound variable, the newer of the two
+     * variables is bound to the older one, which avoids trailing variables
+     * created after the last choice point. Between variables of the same age
+     * this one is bound to <code>p</code>, so that chains of unifications
+     * such as those of difference lists extend the reference chain at its end.
      * @param p a term to be bound.
      * @param trail Trail Stack
      * @see Trail
      */
 	public final boolean bind(Term p, Trail trail) {
+		VariableTerm t = this;
 		if (p instanceof VariableTerm){
-			VariableTerm v = (VariableTerm) p, t = this;
-			if (v.timeStamp >= this.timeStamp){
+			if (p == this)
+				return true;
+			VariableTerm v = (VariableTerm) p;
+			if (v.timeStamp > this.timeStamp){
 				t = v;
-				v = this;
-			}
-			v.bindUpRef(t);
-			if (t.timeStamp < trail.timeStamp){
-				trail.push(t);
+				p = this;
 			}
-			return true;
 		}
-		// update upRefs to use value t
-		updateUpRef(p);
-		downRef = null;
-		if (timeStamp < trail.timeStamp){
-			trail.push(this);
+		t.val = p;
+		if (t.timeStamp < trail.timeStamp){
+			trail.push(t);
 		}
 		return true;
 	}
@@ -136,29 +105,32 @@ public class VariableTerm extends Term implements Undoable {
      * @see #val
      */
 	public final boolean convertible(Class type) {
-		return (val != this)?val.convertible(type):convertible(this.getClass(), type);
+		Term d = dereference();
+		return (d != this) ? d.convertible(type) : convertible(this.getClass(), type);
 	}
 
     /** 
      * Returns a copy of this object if unbound variable.
-     * Otherwise, returns the value of <code>val.copy(engine)</code>.
+     * Otherwise, returns the value of <code>dereference().copy(engine)</code>.
      * @see #val
      */
 	protected Term copy(IdentityHashMap<VariableTerm,VariableTerm> copyHash) {
-		if (val instanceof VariableTerm) {
-			VariableTerm co = copyHash.get(val);
+		Term d = dereference();
+		if (d instanceof VariableTerm) {
+			VariableTerm co = copyHash.get(d);
 			if (co == null) {
 				co = new VariableTerm();
-				copyHash.put((VariableTerm) val, co);
+				copyHash.put((VariableTerm) d, co);
 			}
 			return co;
 		} else {
-			return val.copy(copyHash);
+			return d.copy(copyHash);
 		}
 	}
 
 	public final boolean isGround() {
-		return (val != this) && val.isGround();
+		Term d = dereference();
+		return !(d instanceof VariableTerm) && d.isGround();
 	}
 
 	public final String name() {
@@ -173,7 +145,8 @@ public class VariableTerm extends Term implements Undoable {
      * @see #val
      */
 	public Object toJava() {
-		return (val != this) ? val.toJava() : this;
+		Term d = dereference();
+		return (d != this) ? d.toJava() : this;
 	}
 
     /**
@@ -184,7 +157,8 @@ public class VariableTerm extends Term implements Undoable {
      */
     @Override
     public String toQuotedString() {
-    	return (val instanceof VariableTerm) ? variableName() : val.toQuotedString();
+    	Term d = dereference();
+    	return (d instanceof VariableTerm) ? ((VariableTerm) d).variableName() : d.toQuotedString();
     }
     /**
      * Adds a quoted string representation of this term if unbound.
@@ -194,10 +168,11 @@ public class VariableTerm extends Term implements Undoable {
      */
     @Override
     public void toQuotedString(StringBuilder sb) {
-		if (val instanceof VariableTerm) {
-			sb.append(variableName());
+		Term d = dereference();
+		if (d instanceof VariableTerm) {
+			sb.append(((VariableTerm) d).variableName());
 		} else {
-			val.toQuotedString(sb);
+			d.toQuotedString(sb);
 		} 
     }
     /* Object */
@@ -213,12 +188,14 @@ public class VariableTerm extends Term implements Undoable {
      * @see #compareTo
     */
 	public boolean equals(Object obj) {
-		return (val == this) ? this == obj : val.equals(obj);
+		Term d = dereference();
+		return (d == this) ? this == obj : d.equals(obj);
 	}
 
 	@Override
 	public int hashCode() {
-		return (val==this) ? System.identityHashCode(this) : val.hashCode();
+		Term d = dereference();
+		return (d == this) ? System.identityHashCode(this) : d.hashCode();
 	}
 
 	/**
@@ -229,7 +206,8 @@ public class VariableTerm extends Term implements Undoable {
      */
     @Override
     public String toString() {
-    	return (val instanceof VariableTerm) ? variableName() : val.toString();
+    	Term d = dereference();
+    	return (d instanceof VariableTerm) ? ((VariableTerm) d).variableName() : d.toString();
     }
     /**
      * Adds a string representation of this term if unbound.
@@ -239,10 +217,11 @@ public class VariableTerm extends Term implements Undoable {
      */
     @Override
     public void toString(StringBuilder sb) {
-		if (val instanceof VariableTerm) {
-			sb.append(variableName());
+		Term d = dereference();
+		if (d instanceof VariableTerm) {
+			sb.append(((VariableTerm) d).variableName());
 		} else {
-			val.toString(sb);
+			d.toString(sb);
 		} 
     }
     
@@ -251,25 +230,13 @@ public class VariableTerm extends Term implements Undoable {
      */
     @Override
     public Iterator<Term> iterator(){
-    	return (val instanceof VariableTerm) ? Collections.emptyIterator() : val.iterator();
+    	Term d = dereference();
+    	return (d instanceof VariableTerm) ? Collections.emptyIterator() : d.iterator();
     }
 
     /* Undoable */
     public void undo() { 
-    	// remove self from references of bound variable
-    	if (downRef!=null){
-    		// do not use downRef.upRef.remove(this), because it uses equals() which is overriden and is not equivalent to ==
-    		Iterator<VariableTerm> it = downRef.upRef.iterator();
-    		while(it.hasNext()){
-    			if (it.next()==this){
-    				it.remove();
-    				break;
-    			}
-    		}
-    		downRef = null;
-    	}
-    	// update references 
-    	updateUpRef(this);    	
+    	val = this;
     }
 
     /* Comparable */
@@ -283,8 +250,9 @@ public class VariableTerm extends Term implements Undoable {
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
 	public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
-		if (val != this)
-			return val.compareTo(anotherTerm);
+		Term d = dereference();
+		if (d != this)
+			return d.compareTo(anotherTerm);
 		if (!(anotherTerm instanceof VariableTerm))
 			return BEFORE;
 		if (this == anotherTerm)
@@ -283,7 +283,7 @@ write_java0(put_int(I,X), _, Out) :- !,
 	tab(Out, 4),
 	write(Out, 'private static final IntegerTerm '),
 	write_reg(X, Out),
-	write(Out, ' = new IntegerTerm('),
+	write(Out, ' = IntegerTerm.valueOf('),
 	(java_integer(I) -> true; write(Out, 'new java.math.BigInteger("')),
 	write(Out, I),
 	(java_integer(I) -> true; write(Out, '")')),
@@ -756,7 +756,7 @@ write_inline_end(Out) :-
 write_inline0(fail, _, Out) :- !,
 	tab(Out, 8), write(Out, 'return engine.fail();'), nl(Out).
 write_inline0('$get_level'(X), _, Out) :- !,
-	write_if_fail(op('!', unify(X,#('new IntegerTerm'('engine.B0')))), [], 8, Out).
+	write_if_fail(op('!', unify(X,#('IntegerTerm.valueOf'('engine.B0')))), [], 8, Out).
 write_inline0('$neck_cut', _, Out)     :- !,
 	tab(Out, 8), write(Out, 'engine.neckCut();'), nl(Out).
 write_inline0('$cut'(X), _, Out)       :- !,
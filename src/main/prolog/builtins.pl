@@ -153,6 +153,62 @@ on_exception(Catch, Goal, Recovery) :-
 '$catch_and_throw'(Msg, _, _) :-
 	raise_exception(Msg).
 
+%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+% Execution limits
+%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+:- public call_with_inference_limit/3.
+:- public call_with_time_limit/2.
+
+% Result is ! if Goal succeeded without leaving choice points, true if it
+% left choice points, and inference_limit_exceeded if it ran out of
+% inferences. The limit is lifted when Goal exits, and applies again on
+% backtracking into Goal.
+call_with_inference_limit(Goal, Limit, Result) :-
+	var(Goal),
+	!,
+	illarg(var, call_with_inference_limit(Goal,Limit,Result), 1).
+call_with_inference_limit(Goal, Limit, Result) :-
+	\+(callable(Goal)),
+	!,
+	illarg(type(callable), call_with_inference_limit(Goal,Limit,Result), 1).
+call_with_inference_limit(Goal, Limit, Result) :-
+	'$begin_inference_limit'(Limit, Scope),
+	catch('$call_inference_limit'(Goal, Scope, Result0), Ball,
+	      '$inference_limit_caught'(Ball, Scope, Result0)),
+	Result = Result0.
+
+'$call_inference_limit'(Goal, Scope, Result) :-
+	'$get_current_B'(B0),
+	call(Goal),
+	'$get_current_B'(B),
+	'$end_limit'(Scope),
+	(B == B0 -> Result = (!) ; Result = true).
+
+'$inference_limit_caught'(Ball, Scope, Result) :-
+	Ball == resource_error(inferences),
+	'$limit_exceeded'(Scope),
+	!,
+	'$end_limit'(Scope),
+	Result = inference_limit_exceeded.
+'$inference_limit_caught'(Ball, _, _) :-
+	raise_exception(Ball).
+
+% Raises time_limit_exceeded if Goal does not succeed within Time seconds.
+% Like once/1, only the first solution of Goal is computed.
+call_with_time_limit(Time, Goal) :-
+	var(Goal),
+	!,
+	illarg(var, call_with_time_limit(Time,Goal), 2).
+call_with_time_limit(Time, Goal) :-
+	\+(callable(Goal)),
+	!,
+	illarg(type(callable), call_with_time_limit(Time,Goal), 2).
+call_with_time_limit(Time, Goal) :-
+	'$begin_time_limit'(Time, Scope),
+	call(Goal),
+	!,
+	'$end_limit'(Scope).
+
 %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
 % Term unification
 %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
@@ -598,6 +654,8 @@ retractall(_).
 '$builtin_meta_predicates'(catch, 3, [:,?,:]).
 '$builtin_meta_predicates'(synchronized, 2, [?,:]).
 '$builtin_meta_predicates'(freeze, 2, [?,:]).
+'$builtin_meta_predicates'(call_with_inference_limit, 3, [:,?,?]).
+'$builtin_meta_predicates'(call_with_time_limit, 2, [?,:]).
 
 % clause --> term (for retract)
 '$clause_to_term'(Cl, T, Pkg:F/A, Goal) :-
@@ -2519,6 +2577,8 @@ print_message(warning, Message) :- !,
 	'$fast_write'(user_error,'}'), nl(user_error),flush_output(user_error).
 '$error_message'(system_error(Message)) :- !,
 	'$fast_write'(user_error,'{SYSTEM ERROR: '), write(user_error,Message), '$fast_write'(user_error,'}'), nl(user_error),flush_output(user_error).
+'$error_message'(resource_error(Resource)) :- !,
+	'$fast_write'(user_error,'{RESOURCE ERROR: '), '$fast_write'(user_error,Resource), '$fast_write'(user_error,' exhausted}'), nl(user_error),flush_output(user_error).
 '$error_message'(internal_error(Message)) :- !,
 	'$fast_write'(user_error,'{INTERNAL ERROR: '), write(user_error,Message), '$fast_write'(user_error,'}'), nl(user_error),flush_output(user_error).
 '$error_message'(java_error(Goal,ArgNo,Exception)) :- !,
@@ -2566,6 +2626,8 @@ illarg(syntax(Type,Culprit,Message), Goal, ArgNo) :-
 	raise_exception(syntax_error(Goal,ArgNo,Type,Culprit,Message)).
 illarg(system(Message), _, _) :-
 	raise_exception(system_error(Message)).
+illarg(resource(Resource), _, _) :-
+	raise_exception(resource_error(Resource)).
 illarg(internal(Message), _, _) :-
 	raise_exception(internal_error(Message)).
 illarg(java(Exception), Goal, ArgNo) :-
@@ -0,0 +1,201 @@
+package com.googlecode.prolog_cafe.builtin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.junit.Test;
+
+import com.googlecode.prolog_cafe.lang.BufferingPrologControl;
+import com.googlecode.prolog_cafe.lang.DoubleTerm;
+import com.googlecode.prolog_cafe.lang.Goals;
+import com.googlecode.prolog_cafe.lang.IntegerTerm;
+import com.googlecode.prolog_cafe.lang.JavaObjectTerm;
+import com.googlecode.prolog_cafe.lang.Operation;
+import com.googlecode.prolog_cafe.lang.Prolog;
+import com.googlecode.prolog_cafe.lang.ResourceException;
+import com.googlecode.prolog_cafe.lang.SolutionIterator;
+import com.googlecode.prolog_cafe.lang.StructureTerm;
+import com.googlecode.prolog_cafe.lang.Success;
+import com.googlecode.prolog_cafe.lang.SymbolTerm;
+import com.googlecode.prolog_cafe.lang.Term;
+import com.googlecode.prolog_cafe.lang.TermException;
+import com.googlecode.prolog_cafe.lang.VariableTerm;
+
+/**
+ * {@code call_with_inference_limit/3} and {@code call_with_time_limit/2}.
+ * <p>
+ * The clauses of builtins.pl are compiled here by hand, the way am2j lays them
+ * out, over the {@code '$'} builtins they call. A goal is given as a function
+ * from its continuation to its code.
+ */
+public class InferenceLimitTest {
+  private static final SymbolTerm NONE = SymbolTerm.intern("$none");
+  private static final Term INFERENCES = new StructureTerm(ResourceException.RESOURCE_ERROR,
+      SymbolTerm.intern("inferences"));
+  private static final SymbolTerm DET = SymbolTerm.intern("!");
+  private static final SymbolTerm TRUE = SymbolTerm.intern("true");
+  private static final SymbolTerm EXCEEDED = SymbolTerm.intern("inference_limit_exceeded");
+
+  @Test
+  public void deterministicGoal() {
+    VariableTerm r = new VariableTerm();
+    assertEquals("! ", run(cwil(k -> Goals.spin(100, k), 1000, r, Success.SUCCESS), r));
+  }
+
+  @Test
+  public void runawayGoal() {
+    VariableTerm r = new VariableTerm();
+    assertEquals("inference_limit_exceeded ",
+        run(cwil(k -> Goals.spin(100000, k), 1000, r, Success.SUCCESS), r));
+  }
+
+  @Test
+  public void nondeterministicGoal() {
+    VariableTerm x = new VariableTerm(), r = new VariableTerm();
+    assertEquals("1 true 2 true 3 ! ", run(cwil(gen(x, 10), 1000, r, Success.SUCCESS), x, r));
+  }
+
+  @Test
+  public void inferencesAfterExitDoNotCount() {
+    // Each solution costs 400 of the 1000 inferences. The 5000 spent after
+    // the goal exits are not charged when backtracking into it.
+    VariableTerm x = new VariableTerm(), r = new VariableTerm();
+    assertEquals("1 true 2 true _ inference_limit_exceeded ",
+        run(cwil(gen(x, 400), 1000, r, Goals.spin(5000, Success.SUCCESS)), x, r));
+  }
+
+  @Test
+  public void otherErrorsPassThrough() {
+    VariableTerm r = new VariableTerm();
+    try {
+      run(cwil(k -> new PRED_raise_exception_1(SymbolTerm.intern("boom"), k), 1000, r, Success.SUCCESS), r);
+      fail("error swallowed");
+    } catch (TermException e) {
+      assertEquals(SymbolTerm.intern("boom"), e.getMessageTerm());
+    }
+  }
+
+  @Test
+  public void timeLimitNotReached() {
+    VariableTerm y = new VariableTerm();
+    assertEquals("1 ", run(cwtl(0.5, gen(y, 10), Success.SUCCESS), y));
+  }
+
+  @Test
+  public void timeLimitExceeded() {
+    try {
+      run(cwtl(0.05, k -> Goals.forever(), Success.SUCCESS));
+      fail("time limit not enforced");
+    } catch (TermException e) {
+      assertEquals(SymbolTerm.intern("time_limit_exceeded"), e.getMessageTerm());
+    }
+  }
+
+  /** @return the solutions, each argument followed by a space; _ if unbound. */
+  private static String run(Operation goal, Term... template) {
+    BufferingPrologControl c = new BufferingPrologControl();
+    StringBuilder sb = new StringBuilder();
+    try (SolutionIterator it = Goals.iterate(c, goal, template)) {
+      while (it.hasNext()) {
+        for (Term t : it.next())
+          sb.append(t instanceof VariableTerm ? "_" : t).append(' ');
+      }
+    } catch (RuntimeException e) {
+      if (sb.length() > 0)
+        throw new AssertionError("after " + sb, e);
+      throw e;
+    }
+    return sb.toString();
+  }
+
+  /**
+   * call_with_inference_limit(G, L, R) :-
+   *     '$begin_inference_limit'(L, S), '$call_inference_limit_on_exception'(G, S, R0), R = R0.
+   */
+  private static Operation cwil(UnaryOperator<Operation> goal, int limit, Term result, Operation cont) {
+    VariableTerm scope = new VariableTerm(), r0 = new VariableTerm();
+    Operation after = e -> result.unify(r0, e.trail) ? cont : e.fail();
+    return new PRED_$begin_inference_limit_2(IntegerTerm.valueOf(limit), scope,
+        onException(goal, scope, r0, after));
+  }
+
+  private static Operation onException(UnaryOperator<Operation> goal, Term scope, Term r0, Operation cont) {
+    return e -> {
+      e.setB0();
+      e.areg1 = scope;
+      e.areg2 = r0;
+      e.areg3 = new JavaObjectTerm(goal);
+      e.cont = cont;
+      return e.jtry3(InferenceLimitTest::clause1, x -> x.trust(InferenceLimitTest::clause2));
+    };
+  }
+
+  /** '$set_exception'('$none'), catch('$call_inference_limit'(G, S, R0), ...). */
+  @SuppressWarnings("unchecked")
+  private static Operation clause1(Prolog e) {
+    Term scope = e.areg1, r0 = e.areg2;
+    UnaryOperator<Operation> goal = (UnaryOperator<Operation>) ((JavaObjectTerm) e.areg3.dereference()).object();
+    Operation cont = e.cont;
+    VariableTerm l = new VariableTerm();
+    return new PRED_$set_exception_1(NONE, new PRED_$begin_exception_1(l,
+        callInferenceLimit(goal, scope, r0, new PRED_$end_exception_1(l, cont))));
+  }
+
+  /** '$call_inference_limit'(G, S, R) :- '$get_current_B'(B0), G, '$get_current_B'(B), '$end_limit'(S), (B == B0 -> R = ! ; R = true). */
+  private static Operation callInferenceLimit(UnaryOperator<Operation> goal, Term scope, Term r0, Operation cont) {
+    return e -> {
+      int b0 = e.stack.top();
+      return goal.apply(x -> {
+        int b = x.stack.top();
+        return new PRED_$end_limit_1(scope, y -> r0.unify(b == b0 ? DET : TRUE, y.trail) ? cont : y.fail());
+      });
+    };
+  }
+
+  /** The handler: the limit error of this scope becomes a result, other errors are raised again. */
+  private static Operation clause2(Prolog e) {
+    Term scope = e.areg1, r0 = e.areg2;
+    Operation cont = e.cont;
+    Term msg = e.getException();
+    if (msg == null || msg.dereference() == NONE)
+      return e.fail();
+    e.setException(NONE);
+    if (msg.equals(INFERENCES)) {
+      return new PRED_$limit_exceeded_1(scope, new PRED_$end_limit_1(scope,
+          y -> r0.unify(EXCEEDED, y.trail) ? cont : y.fail()));
+    }
+    return new PRED_raise_exception_1(msg, cont);
+  }
+
+  /** call_with_time_limit(T, G) :- '$begin_time_limit'(T, S), call(G), !, '$end_limit'(S). */
+  private static Operation cwtl(double seconds, UnaryOperator<Operation> goal, Operation cont) {
+    VariableTerm s = new VariableTerm();
+    return new PRED_$begin_time_limit_2(new DoubleTerm(seconds), s, e -> {
+      int b = e.stack.top();
+      return goal.apply(x -> {
+        x.cut(b);
+        return new PRED_$end_limit_1(s, cont);
+      });
+    });
+  }
+
+  /** gen(X): X = 1 ; X = 2 ; X = 3, each after spending {@code cost} inferences. */
+  private static UnaryOperator<Operation> gen(VariableTerm x, int cost) {
+    return k -> e -> {
+      e.setB0();
+      e.areg1 = x;
+      e.cont = k;
+      return e.jtry1(g -> Goals.spin(cost, unify(g, 1)),
+          g -> g.retry(h -> Goals.spin(cost, unify(h, 2)),
+              h -> h.trust(t -> Goals.spin(cost, unify(t, 3)))));
+    };
+  }
+
+  private static Operation unify(Prolog e, int i) {
+    return e.areg1.unify(IntegerTerm.valueOf(i), e.trail) ? e.cont : e.fail();
+  }
+}
@@ -0,0 +1,95 @@
+package com.googlecode.prolog_cafe.builtin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.googlecode.prolog_cafe.lang.BufferingPrologControl;
+import com.googlecode.prolog_cafe.lang.Goals;
+import com.googlecode.prolog_cafe.lang.IntegerTerm;
+import com.googlecode.prolog_cafe.lang.JavaObjectTerm;
+import com.googlecode.prolog_cafe.lang.Operation;
+import com.googlecode.prolog_cafe.lang.SolutionIterator;
+import com.googlecode.prolog_cafe.lang.Success;
+import com.googlecode.prolog_cafe.lang.Term;
+import com.googlecode.prolog_cafe.lang.VariableTerm;
+
+/** Backtracking into {@code synchronized/2} takes the lock again. */
+public class SynchronizedTest {
+  private final Object lock = new Object();
+
+  /** Fails the query unless this thread holds the lock. */
+  private Operation locked(Operation cont) {
+    return e -> {
+      if (!Thread.holdsLock(lock))
+        throw new IllegalStateException("lock not held");
+      return cont;
+    };
+  }
+
+  private Operation sync(Term ref, Operation body) {
+    return new PRED_$begin_sync_2(new JavaObjectTerm(lock), ref, body);
+  }
+
+  @Test
+  public void lockHeldOnRedo() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm(), ref = new VariableTerm();
+    Operation goal = sync(ref, Goals.between(1, 3, x, locked(new PRED_$end_sync_1(ref, Success.SUCCESS))));
+    List<Term> r = new ArrayList<>();
+    try (SolutionIterator it = Goals.iterate(c, goal, x)) {
+      while (it.hasNext()) {
+        assertFalse("lock held at solution", Thread.holdsLock(lock));
+        r.add(it.next()[0]);
+      }
+    }
+    assertEquals(3, r.size());
+    assertEquals(IntegerTerm.valueOf(3), r.get(2));
+  }
+
+  @Test
+  public void lockHeldOnRedoOfNestedGoals() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm(), y = new VariableTerm(), ref = new VariableTerm();
+    Operation goal = sync(ref, Goals.between(1, 3, x, locked(Goals.between(1, 3, y,
+        locked(new PRED_$end_sync_1(ref, Success.SUCCESS))))));
+    int n = 0;
+    try (SolutionIterator it = Goals.iterate(c, goal, x, y)) {
+      while (it.hasNext()) {
+        assertFalse("lock held at solution", Thread.holdsLock(lock));
+        it.next();
+        n++;
+      }
+    }
+    assertEquals(9, n);
+  }
+
+  @Test
+  public void abandonedQueryReleasesLock() throws Exception {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm(), ref = new VariableTerm();
+    // synchronized(Lock, between(1, 3, X)) leaving the lock to its caller
+    Operation goal = sync(ref, Goals.between(1, 3, x, Success.SUCCESS));
+    SolutionIterator it = Goals.iterate(c, goal, x);
+    it.next();
+    it.close();
+    assertFalse(Thread.holdsLock(lock));
+
+    CountDownLatch taken = new CountDownLatch(1);
+    Thread t = new Thread(() -> {
+      synchronized (lock) {
+        taken.countDown();
+      }
+    });
+    t.start();
+    assertTrue("lock free for other threads", taken.await(10, TimeUnit.SECONDS));
+    t.join();
+  }
+}
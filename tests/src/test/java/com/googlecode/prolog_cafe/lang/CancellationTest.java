@@ -0,0 +1,79 @@
+package com.googlecode.prolog_cafe.lang;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CancellationTest {
+  @Test
+  public void cancelBeforeStart() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.cancel();
+    try {
+      Goals.once(c, Goals.forever());
+      fail("not cancelled");
+    } catch (QueryCancelledException e) {
+      assertFalse(e.isDeadline());
+    }
+    assertTrue("request dropped once the execution ends",
+        Goals.once(c, Goals.spin(100000, Success.SUCCESS)));
+  }
+
+  @Test
+  public void cancelFromOtherThread() throws Exception {
+    BufferingPrologControl c = new BufferingPrologControl();
+    Thread t = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        return;
+      }
+      c.cancel();
+    });
+    t.start();
+    try {
+      Goals.once(c, Goals.forever());
+      fail("not cancelled");
+    } catch (QueryCancelledException e) {
+      assertFalse(e.isDeadline());
+    } finally {
+      t.join();
+    }
+  }
+
+  @Test
+  public void timeoutPerExecution() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.setTimeout(100, TimeUnit.MILLISECONDS);
+    for (int i = 0; i < 3; i++)
+      assertTrue(Goals.once(c, Goals.sleep(60)));
+    try {
+      Goals.once(c, Goals.forever());
+      fail("timeout not enforced");
+    } catch (QueryCancelledException e) {
+      assertTrue(e.isDeadline());
+    }
+    c.setTimeout(0, TimeUnit.MILLISECONDS);
+    assertTrue(Goals.once(c, Goals.sleep(150)));
+  }
+
+  @Test
+  public void deadline() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.setDeadline(Instant.now().plusMillis(100));
+    try {
+      Goals.once(c, Goals.forever());
+      fail("deadline not enforced");
+    } catch (QueryCancelledException e) {
+      assertTrue(e.isDeadline());
+    }
+    c.setDeadline(null);
+    assertTrue(Goals.once(c, Goals.sleep(150)));
+  }
+
+}
@@ -0,0 +1,111 @@
+package com.googlecode.prolog_cafe.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorPrologControlTest {
+  private Thread interrupter;
+
+  @After
+  public void tearDown() throws InterruptedException {
+    if (interrupter != null)
+      interrupter.join();
+    Thread.interrupted();
+  }
+
+  @Test
+  public void callAndRedo() {
+    ExecutorPrologControl p = new ExecutorPrologControl();
+    for (int round = 0; round < 3; round++) {
+      VariableTerm x = new VariableTerm();
+      p.setPredicate(Goals.between(1, 3, x, null));
+      List<Term> r = new ArrayList<>();
+      for (boolean more = p.call(); more; more = p.redo())
+        r.add(x.dereference());
+      assertEquals(Arrays.asList(IntegerTerm.valueOf(1), IntegerTerm.valueOf(2), IntegerTerm.valueOf(3)), r);
+      assertFalse(p.redo());
+    }
+  }
+
+  @Test
+  public void stopAbandonsRemainingSolutions() {
+    ExecutorPrologControl p = new ExecutorPrologControl();
+    VariableTerm x = new VariableTerm();
+    p.setPredicate(Goals.between(1, 3, x, null));
+    assertTrue(p.call());
+    assertEquals(IntegerTerm.valueOf(1), x.dereference());
+    p.stop();
+    x = new VariableTerm();
+    p.setPredicate(Goals.between(5, 6, x, null));
+    assertTrue(p.call());
+    assertEquals(IntegerTerm.valueOf(5), x.dereference());
+    p.stop();
+  }
+
+  @Test
+  public void interruptStopsRunningQuery() {
+    ExecutorPrologControl p = new ExecutorPrologControl();
+    p.setPredicate(Goals.start(Goals.forever()));
+    interruptIn(50);
+    try {
+      p.call();
+      fail("not interrupted");
+    } catch (JavaInterruptedException e) {
+      // expected
+    }
+    Thread.interrupted();
+    p.setPredicate(Goals.start(Goals.spin(100000, Success.SUCCESS)));
+    assertTrue(p.call());
+    p.stop();
+  }
+
+  @Test
+  public void stopBeforeTaskStarts() throws Exception {
+    AtomicBoolean ran = new AtomicBoolean();
+    Executor slow = r -> new Thread(() -> {
+      try {
+        Thread.sleep(300);
+      } catch (InterruptedException e) {
+        return;
+      }
+      r.run();
+    }).start();
+    ExecutorPrologControl p = new ExecutorPrologControl(slow);
+    p.setPredicate(Goals.start(e -> {
+      ran.set(true);
+      return Goals.forever();
+    }));
+    interruptIn(50);
+    try {
+      p.call();
+      fail("not interrupted");
+    } catch (JavaInterruptedException e) {
+      // stop() has waited for the task to end
+      assertFalse("goal ran after stop", ran.get());
+    }
+  }
+
+  private void interruptIn(long millis) {
+    Thread caller = Thread.currentThread();
+    interrupter = new Thread(() -> {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        return;
+      }
+      caller.interrupt();
+    });
+    interrupter.start();
+  }
+}
@@ -0,0 +1,116 @@
+package com.googlecode.prolog_cafe.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-compiled goals for the tests, laid out the way am2j generates code.
+ */
+public final class Goals {
+  private Goals() {
+  }
+
+  /** Runs {@code goal} as the body of a query. */
+  public static Predicate start(Operation goal) {
+    return new Start(goal);
+  }
+
+  /** Spends {@code n} inferences, then continues with {@code cont}. */
+  public static Operation spin(long n, Operation cont) {
+    return n <= 0 ? cont : e -> spin(n - 1, cont);
+  }
+
+  /** Loops until the query is stopped. */
+  public static Operation forever() {
+    return e -> forever();
+  }
+
+  /** Runs for {@code millis} milliseconds, then succeeds. */
+  public static Operation sleep(long millis) {
+    long until = System.nanoTime() + millis * 1000000L;
+    return new Operation() {
+      @Override
+      public Operation exec(Prolog e) {
+        return System.nanoTime() - until >= 0 ? Success.SUCCESS : this;
+      }
+    };
+  }
+
+  /** {@code between(From, To, X)}: X = From ; From < To, between(From+1, To, X). */
+  public static Predicate between(int from, int to, Term x, Operation cont) {
+    return new Between(IntegerTerm.valueOf(from), IntegerTerm.valueOf(to), x, cont);
+  }
+
+  /** Iterates over the solutions of {@code goal}, copying {@code template}. */
+  public static SolutionIterator iterate(BufferingPrologControl c, Operation goal, Term... template) {
+    c.setPredicate(start(goal));
+    return new SolutionIterator(c, template);
+  }
+
+  /** @return the solutions of {@code goal}, one array of copies of {@code template} each. */
+  public static List<Term[]> solutions(BufferingPrologControl c, Operation goal, Term... template) {
+    List<Term[]> r = new ArrayList<>();
+    try (SolutionIterator it = iterate(c, goal, template)) {
+      while (it.hasNext())
+        r.add(it.next());
+    }
+    return r;
+  }
+
+  /** @return true if {@code goal} has a solution. */
+  public static boolean once(BufferingPrologControl c, Operation goal) {
+    try (SolutionIterator it = iterate(c, goal)) {
+      return it.hasNext();
+    }
+  }
+
+  /** @return the engine of a control. */
+  public static Prolog engine(PrologControl c) {
+    return c.engine;
+  }
+
+  private static final class Start extends Predicate.P1 {
+    private final Operation goal;
+
+    Start(Operation goal) {
+      this.goal = goal;
+      arg1 = SymbolTerm.intern("goal");
+    }
+
+    @Override
+    public Operation exec(Prolog engine) {
+      return goal;
+    }
+  }
+
+  private static final class Between extends Predicate.P3 {
+    Between(Term a1, Term a2, Term a3, Operation cont) {
+      arg1 = a1;
+      arg2 = a2;
+      arg3 = a3;
+      this.cont = cont;
+    }
+
+    @Override
+    public Operation exec(Prolog engine) {
+      engine.setB0();
+      engine.areg1 = arg1;
+      engine.areg2 = arg2;
+      engine.areg3 = arg3;
+      engine.cont = cont;
+      return engine.jtry3(Between::first, e -> e.trust(Between::rest));
+    }
+
+    private static Operation first(Prolog engine) {
+      return engine.areg3.unify(engine.areg1, engine.trail) ? engine.cont : engine.fail();
+    }
+
+    private static Operation rest(Prolog engine) {
+      int n = ((IntegerTerm) engine.areg1.dereference()).intValue();
+      int to = ((IntegerTerm) engine.areg2.dereference()).intValue();
+      if (n >= to)
+        return engine.fail();
+      return new Between(IntegerTerm.valueOf(n + 1), engine.areg2, engine.areg3, engine.cont);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.googlecode.prolog_cafe.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrologAsyncExecutorTest {
+  private PrologEnginePool pool;
+  private ExecutorService executor;
+  private PrologAsyncExecutor async;
+
+  @Before
+  public void setUp() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.prepare();
+    pool = new PrologEnginePool(PrologMachineCopy.save(c), 1);
+    executor = Executors.newFixedThreadPool(2);
+    async = new PrologAsyncExecutor(pool, executor);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+    pool.close();
+  }
+
+  @Test
+  public void runsWork() throws Exception {
+    CompletableFuture<Boolean> f = async.submit(0, null, ctl -> Goals.once(ctl, Goals.spin(1000, Success.SUCCESS)));
+    assertTrue(f.get(10, TimeUnit.SECONDS));
+    awaitIdle();
+    assertEquals(0, pool.getActiveCount());
+  }
+
+  @Test
+  public void queuedQueryTimesOutOnTime() throws Exception {
+    CompletableFuture<Boolean> busy = async.submit(0, null, ctl -> Goals.once(ctl, Goals.sleep(1000)));
+    long t0 = System.nanoTime();
+    CompletableFuture<Boolean> queued = async.submit(100, TimeUnit.MILLISECONDS,
+        ctl -> Goals.once(ctl, Goals.spin(10, Success.SUCCESS)));
+    try {
+      queued.get(10, TimeUnit.SECONDS);
+      fail("queued query not timed out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+    assertTrue("failed before the busy query ended", (System.nanoTime() - t0) / 1000000 < 900);
+    assertFalse(busy.isDone());
+    assertEquals(0, async.getQueuedCount());
+    assertTrue(busy.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void oneDeadlinePerWork() throws Exception {
+    CompletableFuture<Boolean> two = async.submit(300, TimeUnit.MILLISECONDS,
+        ctl -> Goals.once(ctl, Goals.sleep(200)) && Goals.once(ctl, Goals.sleep(200)));
+    try {
+      two.get(10, TimeUnit.SECONDS);
+      fail("deadline applied per execution");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+      assertEquals("query ran too long", e.getCause().getMessage());
+    }
+    awaitIdle();
+    BufferingPrologControl ctl = pool.borrow();
+    try {
+      assertFalse("deadline restored on release", ctl.engine.hasDeadline);
+    } finally {
+      pool.release(ctl);
+    }
+  }
+
+  @Test
+  public void cancelStopsRunningQuery() throws Exception {
+    CompletableFuture<Boolean> f = async.submit(0, null, ctl -> Goals.once(ctl, Goals.forever()));
+    CompletableFuture<Boolean> next = async.submit(0, null, ctl -> Goals.once(ctl, Goals.spin(10, Success.SUCCESS)));
+    while (async.getRunningCount() == 0)
+      Thread.sleep(10);
+    assertEquals(1, async.getQueuedCount());
+    f.cancel(true);
+    assertTrue(next.get(10, TimeUnit.SECONDS));
+    awaitIdle();
+    assertEquals(0, pool.getActiveCount());
+  }
+
+  @Test
+  public void cancelQueuedQuery() throws Exception {
+    CompletableFuture<Boolean> busy = async.submit(0, null, ctl -> Goals.once(ctl, Goals.sleep(200)));
+    CompletableFuture<Boolean> queued = async.submit(0, null, ctl -> Goals.once(ctl, Goals.forever()));
+    queued.cancel(true);
+    assertEquals(0, async.getQueuedCount());
+    assertTrue(busy.get(10, TimeUnit.SECONDS));
+    awaitIdle();
+  }
+
+  private void awaitIdle() throws InterruptedException {
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (async.getRunningCount() > 0 || async.getQueuedCount() > 0) {
+      if (System.nanoTime() - end > 0)
+        fail("queries still running");
+      Thread.sleep(10);
+    }
+  }
+}
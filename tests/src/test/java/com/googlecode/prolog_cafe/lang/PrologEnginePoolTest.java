@@ -0,0 +1,147 @@
+package com.googlecode.prolog_cafe.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrologEnginePoolTest {
+  private static final SymbolTerm SEED = SymbolTerm.intern("seed");
+
+  private PrologMachineCopy pmc;
+  private PrologEnginePool pool;
+
+  @Before
+  public void setUp() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.prepare();
+    c.engine.internalDB.insert(SEED);
+    pmc = PrologMachineCopy.save(c);
+    pool = new PrologEnginePool(pmc, 1, ctl -> {
+      ctl.setReductionLimit(1000);
+      ctl.setMaxChoicePoints(500);
+    });
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void releaseRestoresInterpreter() throws Exception {
+    BufferingPrologControl x = pool.borrow();
+    int top = x.engine.internalDB.top;
+    x.setReductionLimit(5);
+    x.setMaxChoicePoints(7);
+    x.setTimeout(1, TimeUnit.SECONDS);
+    x.setDeadline(Instant.now());
+    x.setEnabled(Prolog.Feature.STACK_TRACE, true);
+    x.engine.internalDB.insert(SymbolTerm.intern("leak"));
+    x.engine.getHashManager().put(SymbolTerm.intern("g"), SymbolTerm.intern("v"));
+    pool.release(x);
+
+    BufferingPrologControl y = pool.borrow();
+    assertSame(x, y);
+    assertEquals(1000, y.getReductionLimit());
+    assertEquals(500, y.getMaxChoicePoints());
+    assertEquals(0, y.engine.timeout);
+    assertFalse(y.engine.hasDeadline);
+    assertFalse(y.isEnabled(Prolog.Feature.STACK_TRACE));
+    assertEquals(top, y.engine.internalDB.top);
+    assertEquals(SEED, y.engine.internalDB.get(0));
+    assertNull(y.engine.peekHashManager().get(SymbolTerm.intern("g")));
+    pool.release(y);
+  }
+
+  @Test
+  public void writesDoNotReachOtherInterpreters() throws Exception {
+    PrologEnginePool two = new PrologEnginePool(pmc, 2);
+    try {
+      BufferingPrologControl a = two.borrow();
+      BufferingPrologControl b = two.borrow();
+      int top = pmc.internalDB.top;
+      a.engine.internalDB.insert(SymbolTerm.intern("mine"));
+      assertEquals(top + 1, a.engine.internalDB.top);
+      assertEquals(top, b.engine.internalDB.top);
+      assertEquals(top, pmc.internalDB.top);
+      two.release(a);
+      two.release(b);
+    } finally {
+      two.close();
+    }
+  }
+
+  @Test
+  public void borrowTimesOutWhenExhausted() throws Exception {
+    BufferingPrologControl x = pool.borrow();
+    assertNull(pool.borrow(50, TimeUnit.MILLISECONDS));
+    pool.release(x);
+    assertSame(x, pool.borrow(50, TimeUnit.MILLISECONDS));
+    pool.release(x);
+  }
+
+  @Test
+  public void rejectDoubleRelease() throws Exception {
+    BufferingPrologControl x = pool.borrow();
+    pool.release(x);
+    try {
+      pool.release(x);
+      fail("double release accepted");
+    } catch (IllegalStateException e) {
+      assertEquals(0, pool.getActiveCount());
+      assertEquals(1, pool.getIdleCount());
+    }
+  }
+
+  @Test
+  public void rejectForeignRelease() throws Exception {
+    PrologEnginePool other = new PrologEnginePool(pmc, 1);
+    BufferingPrologControl x = other.borrow();
+    try {
+      pool.release(x);
+      fail("foreign release accepted");
+    } catch (IllegalArgumentException e) {
+      other.release(x);
+    } finally {
+      other.close();
+    }
+    try {
+      pool.release(new BufferingPrologControl());
+      fail("stranger accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void invalidateDropsInterpreter() throws Exception {
+    BufferingPrologControl x = pool.borrow();
+    pool.invalidate(x);
+    assertEquals(0, pool.getActiveCount());
+    assertEquals(0, pool.getIdleCount());
+    try {
+      pool.release(x);
+      fail("invalidated interpreter accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    BufferingPrologControl y = pool.borrow();
+    assertFalse(x == y);
+    pool.release(y);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void borrowAfterClose() throws Exception {
+    pool.close();
+    pool.borrow();
+  }
+}
@@ -0,0 +1,125 @@
+package com.googlecode.prolog_cafe.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrologMachineCopyTest {
+  private static final int CLAUSES = 50;
+
+  private PrologMachineCopy pmc;
+
+  @Before
+  public void setUp() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.prepare();
+    Prolog e = c.engine;
+    Term refs = Prolog.Nil;
+    for (int i = 0; i < CLAUSES; i++) {
+      VariableTerm x = new VariableTerm();
+      Term head = new StructureTerm("fact", IntegerTerm.valueOf(i), SymbolTerm.create("atom" + (i % 7)), x,
+          new ListTerm(x, new ListTerm(new DoubleTerm(i / 3.0), Prolog.Nil)));
+      Term body = new StructureTerm("is", x, new LongTerm(1L << 40));
+      refs = new ListTerm(IntegerTerm.valueOf(e.internalDB.insert(new StructureTerm(":-", head, body))), refs);
+    }
+    e.internalDB.erase(3);
+    HashtableOfTerm index = new HashtableOfTerm();
+    index.put(SymbolTerm.intern("all"), refs);
+    HashtableOfTerm pkg = new HashtableOfTerm();
+    pkg.put(new StructureTerm("/", SymbolTerm.intern("fact"), IntegerTerm.valueOf(4)), new JavaObjectTerm(index));
+    e.getHashManager().put(SymbolTerm.intern("user"), new JavaObjectTerm(pkg));
+    pmc = PrologMachineCopy.save(c);
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    PrologMachineCopy back = PrologMachineCopy.load(ByteBuffer.wrap(bytes(pmc)), new PrologClassLoader());
+    assertEquals(pmc.internalDB.top, back.internalDB.top);
+    assertArrayEquals(pmc.internalDB.reusableIndices(), back.internalDB.reusableIndices());
+    assertNull(back.internalDB.get(3));
+    for (int i = 0; i <= pmc.internalDB.top; i++)
+      assertVariant(pmc.internalDB.get(i), back.internalDB.get(i));
+
+    BufferingPrologControl c = new BufferingPrologControl(back);
+    c.prepare();
+    HashtableOfTerm pkg = (HashtableOfTerm) ((JavaObjectTerm) c.engine.peekHashManager()
+        .get(SymbolTerm.intern("user"))).object();
+    HashtableOfTerm index = (HashtableOfTerm) ((JavaObjectTerm) pkg
+        .get(new StructureTerm("/", SymbolTerm.intern("fact"), IntegerTerm.valueOf(4)))).object();
+    assertEquals(CLAUSES, ((ListTerm) index.get(SymbolTerm.intern("all"))).length());
+  }
+
+  @Test
+  public void sharedVariablesStayShared() throws IOException {
+    PrologMachineCopy back = PrologMachineCopy.load(ByteBuffer.wrap(bytes(pmc)), null);
+    StructureTerm clause = (StructureTerm) back.internalDB.get(0);
+    StructureTerm head = (StructureTerm) clause.args()[0];
+    StructureTerm body = (StructureTerm) clause.args()[1];
+    Term x = head.args()[2];
+    assertTrue(x instanceof VariableTerm);
+    assertTrue(x == ((ListTerm) head.args()[3]).car());
+    assertTrue(x == body.args()[0]);
+  }
+
+  @Test
+  public void fileRoundTrip() throws IOException {
+    Path f = Files.createTempFile("pmc", ".bin");
+    try {
+      pmc.writeTo(f);
+      PrologMachineCopy back = PrologMachineCopy.load(f, null);
+      assertVariant(pmc.internalDB.get(CLAUSES - 1), back.internalDB.get(CLAUSES - 1));
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  @Test
+  public void rejectTruncatedInput() throws IOException {
+    byte[] b = bytes(pmc);
+    try {
+      PrologMachineCopy.load(ByteBuffer.wrap(b, 0, b.length / 2), null);
+      fail("truncated input accepted");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void rejectForeignInput() {
+    try {
+      PrologMachineCopy.load(ByteBuffer.wrap("not a machine copy".getBytes()), null);
+      fail("foreign input accepted");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private static byte[] bytes(PrologMachineCopy pmc) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    pmc.writeTo(out);
+    return out.toByteArray();
+  }
+
+  private static void assertVariant(Term expected, Term actual) {
+    if (expected == null) {
+      assertNull(actual);
+      return;
+    }
+    assertEquals(anonymous(expected), anonymous(actual));
+  }
+
+  private static String anonymous(Term t) {
+    return t.toString().replaceAll("_[0-9A-F]+", "_");
+  }
+}
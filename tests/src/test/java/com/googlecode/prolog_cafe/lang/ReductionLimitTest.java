@@ -0,0 +1,53 @@
+package com.googlecode.prolog_cafe.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ReductionLimitTest {
+  @Test
+  public void countsInferences() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    assertTrue(Goals.once(c, Goals.spin(1000, Success.SUCCESS)));
+    assertTrue(c.getInferences() >= 1000);
+    assertTrue(c.getInferences() < 1100);
+  }
+
+  @Test
+  public void stopsRunawayQuery() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.setReductionLimit(500);
+    assertEquals(500, c.getReductionLimit());
+    try {
+      Goals.once(c, Goals.forever());
+      fail("limit not enforced");
+    } catch (ResourceException e) {
+      assertEquals("inferences", e.resource);
+      assertEquals(new StructureTerm(ResourceException.RESOURCE_ERROR, SymbolTerm.intern("inferences")),
+          e.getMessageTerm());
+    }
+  }
+
+  @Test
+  public void limitAppliesPerExecution() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.setReductionLimit(1500);
+    for (int i = 0; i < 3; i++)
+      assertTrue(Goals.once(c, Goals.spin(1000, Success.SUCCESS)));
+  }
+
+  @Test
+  public void removeLimit() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    c.setReductionLimit(10);
+    c.setReductionLimit(Long.MAX_VALUE);
+    assertTrue(Goals.once(c, Goals.spin(100000, Success.SUCCESS)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectNonPositiveLimit() {
+    new BufferingPrologControl().setReductionLimit(0);
+  }
+}
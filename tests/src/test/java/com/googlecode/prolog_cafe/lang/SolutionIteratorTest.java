@@ -0,0 +1,89 @@
+package com.googlecode.prolog_cafe.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class SolutionIteratorTest {
+  @Test
+  public void allSolutions() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm();
+    try (SolutionIterator it = Goals.iterate(c, Goals.between(1, 3, x, Success.SUCCESS), x)) {
+      for (int i = 1; i <= 3; i++) {
+        assertTrue(it.hasNext());
+        assertEquals(IntegerTerm.valueOf(i), it.next()[0]);
+      }
+      assertFalse(it.hasNext());
+      try {
+        it.next();
+        fail("no more solutions");
+      } catch (NoSuchElementException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void lazy() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm();
+    int n = 0;
+    try (SolutionIterator it = Goals.iterate(c, Goals.between(1, Integer.MAX_VALUE, x, Success.SUCCESS), x)) {
+      while (n < 100000) {
+        assertEquals(IntegerTerm.valueOf(++n), it.next()[0]);
+      }
+    }
+    assertTrue("search stopped at the last solution taken", c.getInferences() < 10 * n);
+  }
+
+  @Test
+  public void hasNextDoesNotAdvance() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm();
+    try (SolutionIterator it = Goals.iterate(c, Goals.between(1, 3, x, Success.SUCCESS), x)) {
+      assertTrue(it.hasNext());
+      assertTrue(it.hasNext());
+      assertEquals(IntegerTerm.valueOf(1), it.next()[0]);
+    }
+  }
+
+  @Test
+  public void closeUndoesBindings() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm();
+    SolutionIterator it = Goals.iterate(c, Goals.between(1, 3, x, Success.SUCCESS), x);
+    it.next();
+    assertEquals(IntegerTerm.valueOf(1), x.dereference());
+    it.close();
+    assertTrue(x.dereference() instanceof VariableTerm);
+    assertFalse(it.hasNext());
+    it.close();
+  }
+
+  @Test
+  public void errorsPropagate() {
+    BufferingPrologControl c = new BufferingPrologControl();
+    VariableTerm x = new VariableTerm();
+    Operation check = e -> {
+      if (((IntegerTerm) x.dereference()).intValue() == 3)
+        throw new IllegalTypeException("atom", x.dereference());
+      return Success.SUCCESS;
+    };
+    SolutionIterator it = Goals.iterate(c, Goals.between(1, 5, x, check), x);
+    assertEquals(IntegerTerm.valueOf(1), it.next()[0]);
+    assertEquals(IntegerTerm.valueOf(2), it.next()[0]);
+    try {
+      it.hasNext();
+      fail("error swallowed");
+    } catch (IllegalTypeException e) {
+      assertFalse(it.hasNext());
+    }
+    assertTrue("control usable again", Goals.once(c, Goals.spin(10, Success.SUCCESS)));
+  }
+}